@@ -0,0 +1,34 @@
+package io.vertx.rxcore;
+
+/** Raised when an HTTP request misses one of its deadlines */
+public class HttpTimeoutException extends RuntimeException {
+
+  /** Serial version */
+  private final static long serialVersionUID=1L;
+
+  /** Phase that timed out */
+  public enum Phase { CONNECT, FIRST_BYTE, TOTAL };
+
+  /** Phase */
+  private final Phase phase;
+
+  /** Timeout (ms) */
+  private final long timeout;
+
+  /** Create new HttpTimeoutException */
+  public HttpTimeoutException(Phase phase, long timeout) {
+    super("HTTP request timed out (phase="+phase+",timeout="+timeout+"ms)");
+    this.phase=phase;
+    this.timeout=timeout;
+  }
+
+  /** Return the phase */
+  public Phase phase() {
+    return this.phase;
+  }
+
+  /** Return the timeout (ms) */
+  public long timeout() {
+    return this.timeout;
+  }
+}
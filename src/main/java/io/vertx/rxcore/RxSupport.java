@@ -1,10 +1,21 @@
 package io.vertx.rxcore;
 
-import java.io.UnsupportedEncodingException;
-import java.util.concurrent.atomic.AtomicLong;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
 
-import io.vertx.rxcore.java.impl.SingleSubscriptionHandler;
-import org.vertx.java.core.Handler;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.rxcore.java.impl.AggregateOperator;
+import io.vertx.rxcore.java.impl.BufferPool;
+import io.vertx.rxcore.java.impl.CompressOperator;
+import io.vertx.rxcore.java.impl.FrameOperator;
+import io.vertx.rxcore.java.impl.JsonEncodeOperator;
+import io.vertx.rxcore.java.impl.JsonStreamOperator;
+import io.vertx.rxcore.java.impl.ReadStreamHandler;
+import io.vertx.rxcore.java.impl.SizeLimitOperator;
+import io.vertx.rxcore.java.impl.WriteStreamSubscriber;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.eventbus.Message;
 import org.vertx.java.core.json.JsonObject;
@@ -19,7 +30,11 @@ public class RxSupport {
   
   // Streams
 
-  /** Accumulator that merges buffers */
+  /** Accumulator that merges buffers
+   *
+   * <p>Each merge grows and copies the first buffer - prefer {@link #aggregateBuffers(long)} for large streams</p>
+   *
+   **/
   public static Func2<Buffer, Buffer, Buffer> mergeBuffers=new Func2<Buffer,Buffer,Buffer>() {
     public Buffer call(Buffer b1, Buffer b2) {
       b1.appendBuffer(b2);
@@ -27,97 +42,198 @@ public class RxSupport {
     }
   };
     
+  /** Aggregate a stream of Buffers into a single Buffer without copying
+   *
+   * <p>Use with lift(). The result is backed by a composite of the received chunks and fails fast with
+   * {@link SizeLimitExceededException} once more than maxSize bytes are received. Use {@link #flattenBuffer}
+   * or pooled() if the consumer needs a contiguous Buffer.</p>
+   *
+   **/
+  public static AggregateOperator aggregateBuffers(long maxSize) {
+    return new AggregateOperator(maxSize);
+  }
+
+  /** Pass a stream of Buffers through unchanged, failing with {@link SizeLimitExceededException} once more than maxSize bytes are received */
+  public static SizeLimitOperator limitBuffers(long maxSize) {
+    return new SizeLimitOperator(maxSize);
+  }
+
+  /** Copy a (composite) Buffer into a single contiguous Buffer from pool */
+  public static Func1<Buffer,Buffer> flattenBuffer(final BufferPool pool) {
+    return new Func1<Buffer,Buffer>() {
+      public Buffer call(Buffer in) {
+        return pool.copy(in);
+      }
+    };
+  }
+
+  /** Copy a (composite) Buffer into a single contiguous Buffer */
+  public static Func1<Buffer,Buffer> flattenBuffer=new Func1<Buffer,Buffer>() {
+    public Buffer call(Buffer in) {
+      ByteBuf buf=in.getByteBuf();
+      // Already contiguous
+      if (!(buf instanceof CompositeByteBuf) || (((CompositeByteBuf)buf).numComponents()<2))
+        return in;
+      return new Buffer(Unpooled.copiedBuffer(buf));
+    }
+  };
+
+  // Framing
+
+  /** Length prefix encoded as a base-128 varint (see {@link #frameLengthPrefixed}) */
+  public static final int VARINT=FrameOperator.VARINT;
+
+  /** Split a stream of Buffers into records ending with delimiter (which is removed)
+   *
+   * <p>Use with lift(). Records are sliced from the received chunks without copying and may span chunks. Fails
+   * with {@link SizeLimitExceededException} if a record grows beyond maxFrame. Use pooled() to copy records that span
+   * chunks into contiguous Buffers from a {@link BufferPool}.</p>
+   *
+   **/
+  public static FrameOperator frameDelimited(String delim, int maxFrame) {
+    return FrameOperator.delimited(delim.getBytes(StandardCharsets.UTF_8),maxFrame);
+  }
+
+  /** Split a stream of Buffers into records ending with delimiter (which is removed) */
+  public static FrameOperator frameDelimited(byte[] delim, int maxFrame) {
+    return FrameOperator.delimited(delim,maxFrame);
+  }
+
+  /** Split a stream of Buffers into fixed size records */
+  public static FrameOperator frameFixed(int size) {
+    return FrameOperator.fixed(size);
+  }
+
+  /** Split a stream of Buffers into records with a big-endian length prefix of 1, 2 or 4 bytes or {@link #VARINT} (which is removed) */
+  public static FrameOperator frameLengthPrefixed(int lengthBytes, int maxFrame) {
+    return FrameOperator.lengthPrefixed(lengthBytes,maxFrame);
+  }
+
+  // Compression
+
+  /** Compress a stream of Buffers as zlib deflate (HTTP "deflate")
+   *
+   * <p>Use with lift(). Output is produced in chunks of up to {@link CompressOperator#DEFAULT_CHUNK_SIZE} bytes as
+   * they are requested. Deflaters are reused across streams.</p>
+   *
+   **/
+  public static CompressOperator deflate() {
+    return deflate(Deflater.DEFAULT_COMPRESSION,CompressOperator.DEFAULT_CHUNK_SIZE);
+  }
+
+  /** Compress a stream of Buffers as zlib deflate with the given level and output chunk size */
+  public static CompressOperator deflate(int level, int chunkSize) {
+    return CompressOperator.compress(CompressOperator.Format.DEFLATE,level,chunkSize);
+  }
+
+  /** Compress a stream of Buffers as gzip */
+  public static CompressOperator gzip() {
+    return gzip(Deflater.DEFAULT_COMPRESSION,CompressOperator.DEFAULT_CHUNK_SIZE);
+  }
+
+  /** Compress a stream of Buffers as gzip with the given level and output chunk size */
+  public static CompressOperator gzip(int level, int chunkSize) {
+    return CompressOperator.compress(CompressOperator.Format.GZIP,level,chunkSize);
+  }
+
+  /** Decompress a stream of zlib deflate Buffers
+   *
+   * <p>Use with lift(). Output is handed out in chunks of up to {@link CompressOperator#DEFAULT_CHUNK_SIZE} bytes
+   * only as they are requested, so memory stays bounded however much the input expands. Inflaters are reused
+   * across streams.</p>
+   *
+   **/
+  public static CompressOperator inflate() {
+    return inflate(CompressOperator.DEFAULT_CHUNK_SIZE);
+  }
+
+  /** Decompress a stream of zlib deflate Buffers with the given output chunk size */
+  public static CompressOperator inflate(int chunkSize) {
+    return CompressOperator.decompress(CompressOperator.Format.DEFLATE,chunkSize);
+  }
+
+  /** Decompress a stream of gzip Buffers (including multiple members) */
+  public static CompressOperator gunzip() {
+    return gunzip(CompressOperator.DEFAULT_CHUNK_SIZE);
+  }
+
+  /** Decompress a stream of gzip Buffers with the given output chunk size */
+  public static CompressOperator gunzip(int chunkSize) {
+    return CompressOperator.decompress(CompressOperator.Format.GZIP,chunkSize);
+  }
+
+  /** Default minimum bytes between progress updates from stream() */
+  public static final long DEFAULT_PROGRESS_INTERVAL=64*1024;
+
   /** Stream Observable<Buffer> to WriteStream.
    *
-   * <p>This method does not handle writeQueueFull condition</p>  
-   * 
+   * <p>Requests one Buffer at a time and stops requesting while the WriteStream is full (resuming on drain), so
+   * sources that honour demand (eg {@link #toObservable}) are paused rather than flooding the write queue.</p>
+   *
+   * <p>Returns the running total, at most once every {@link #DEFAULT_PROGRESS_INTERVAL} bytes and once on
+   * completion</p>
+   *
    **/
   public static Observable<Long> stream(Observable<Buffer> src, final WriteStream out) {
-    final PublishSubject<Long> rx=PublishSubject.create();
-    final AtomicLong total=new AtomicLong();
+    return stream(src,out,DEFAULT_PROGRESS_INTERVAL);
+  }
 
-    // Trap write errors
-    out.exceptionHandler(new Handler<Throwable>() {
-      public void handle(Throwable t) {
-        rx.onError(t);
-      }
-    });
-
-    src.subscribe(
-      new Action1<Buffer>() {
-        public void call(Buffer buffer) {
-          out.write(buffer);
-          total.addAndGet(buffer.length());
-          // Output the total each buffer
-          rx.onNext(total.get());
-        }
-      },
-      new Action1<Throwable>() {
-        public void call(Throwable t) {
-          rx.onError(t);
-        }
-      },
-      new Action0() {
-        public void call() {
-          rx.onCompleted();
-        }
-      }
-    );
+  /** Stream Observable<Buffer> to WriteStream reporting the total at most once every progressInterval bytes */
+  public static Observable<Long> stream(Observable<Buffer> src, final WriteStream out, long progressInterval) {
+    final PublishSubject<Long> rx=PublishSubject.create();
+    src.subscribe(new WriteStreamSubscriber(out,rx,progressInterval));
     return rx;
   }
 
-  /** Convert ReadStream to Observable */
+  /** Pump ReadStream to WriteStream
+   *
+   * <p>The ReadStream is paused while the WriteStream is full. Buffers are passed through without copying.</p>
+   *
+   **/
+  public static Observable<Long> stream(ReadStream rs, WriteStream out) {
+    return stream(toObservable(rs),out);
+  }
+
+  /** Convert ReadStream to Observable
+   *
+   * <p>The ReadStream is paused when the Subscriber has no outstanding demand (see {@link ReadStreamHandler})</p>
+   *
+   **/
   public static Observable<Buffer> toObservable(final ReadStream rs) {
-    final SingleSubscriptionHandler<Buffer, Buffer> rh=new SingleSubscriptionHandler<Buffer, Buffer>() {
-      @Override public void execute() {
-        rs.dataHandler(this);
-        rs.exceptionHandler(new Handler<Throwable>() {
-          public void handle(Throwable t) {
-            fireError(t);
-          }
-        });
-        rs.endHandler(new Handler<Void>() {
-          public void handle(Void v) {
-            fireComplete();
-          }
-        });
-      }
-      @Override public void onUnsubscribed() {
-        try {
-          rs.dataHandler(null);
-          rs.exceptionHandler(null);
-          rs.endHandler(null);
-        }
-        catch(Exception e) {
-          // Clearing handlers after stream closed causes issues for some (eg AsyncFile) so silently drop errors
-        }
-      }
-    };
-    
-    return Observable.create(rh);
+    return Observable.create(new ReadStreamHandler(rs));
   }
   
   // JSON 
 	
-  /** Simple JSON encode */
-  public static Func1<JsonObject, Buffer> encodeJson(final String charset) {
+  /** Simple JSON encode (written straight into the Buffer) */
+  public static Func1<JsonObject, Buffer> encodeJson(String charset) {
+    final Charset cs=Charset.forName(charset);
     return new Func1<JsonObject,Buffer>() {
       public Buffer call(JsonObject in) {
-        try {
-          return new Buffer(in.encode().getBytes(charset));
-        }
-        catch (UnsupportedEncodingException e) {
-          throw new RuntimeException("Unable to encode JSON (charset="+charset+")",e);
-        }
+        return JsonEncodeOperator.encode(in,cs);
       }
     };
   }
-  
-  /** Simple JSON decode */
+
+  /** Encode a stream of JsonObjects as NDJSON in UTF-8
+   *
+   * <p>Use with lift(). Objects are batched into Buffers of at least batchSize bytes (flushing on completion), so
+   * use 0 for one Buffer per object on streams that do not complete. Use pooled() to take the Buffers from a
+   * {@link BufferPool}.</p>
+   *
+   **/
+  public static JsonEncodeOperator encodeJsonStream(int batchSize) {
+    return new JsonEncodeOperator(batchSize);
+  }
+
+  /** Simple JSON decode (UTF-8 is parsed directly from the bytes) */
   public static Func1<Buffer,JsonObject> decodeJson(final String charset) {
+    final boolean utf8=Charset.forName(charset).equals(StandardCharsets.UTF_8);
     return new Func1<Buffer,JsonObject>() {
       public JsonObject call(Buffer in) {
         try {
+          if (utf8)
+            return JsonStreamOperator.parse(in.getByteBuf());
           return new JsonObject(in.toString(charset));
         }
         catch(Exception e) {
@@ -127,6 +243,21 @@ public class RxSupport {
     };
   }
 
+  /** Incrementally decode a stream of Buffers into JsonObjects
+   *
+   * <p>Use with lift(). Accepts NDJSON (or concatenated objects) and top-level arrays of objects in UTF-8. Each
+   * object is emitted as soon as it is complete, so only the current element is held in memory.</p>
+   *
+   **/
+  public static Observable.Operator<JsonObject,Buffer> decodeJsonStream() {
+    return decodeJsonStream(Long.MAX_VALUE);
+  }
+
+  /** Incrementally decode a stream of Buffers into JsonObjects (fails with SizeLimitExceededException if an element exceeds maxElementSize) */
+  public static Observable.Operator<JsonObject,Buffer> decodeJsonStream(long maxElementSize) {
+    return new JsonStreamOperator(maxElementSize);
+  }
+
   // EventBus
   
   /** Message */
@@ -0,0 +1,31 @@
+package io.vertx.rxcore;
+
+/** Raised when a stream or body exceeds its configured maximum size */
+public class SizeLimitExceededException extends RuntimeException {
+
+  /** Serial version */
+  private final static long serialVersionUID=1L;
+
+  /** Limit */
+  private final long limit;
+
+  /** Size (at the point the limit was exceeded) */
+  private final long size;
+
+  /** Create new SizeLimitExceededException */
+  public SizeLimitExceededException(long limit, long size) {
+    super("Size limit exceeded (limit="+limit+",size="+size+")");
+    this.limit=limit;
+    this.size=size;
+  }
+
+  /** Return the limit */
+  public long limit() {
+    return this.limit;
+  }
+
+  /** Return the size */
+  public long size() {
+    return this.size;
+  }
+}
@@ -0,0 +1,75 @@
+package io.vertx.rxcore.java;
+
+/** Limits retries to a share of the traffic so failures do not turn into retry storms
+ *
+ * <p>Over a sliding window of {@link #WINDOW} seconds the retries may not exceed percent of the requests plus
+ * minPerSecond for each second (so a trickle of traffic can still retry). A budget can be shared by several
+ * {@link RetryPolicy} instances and threads.</p>
+ *
+ **/
+public class RetryBudget {
+
+  // Definitions
+
+  /** Window (seconds) */
+  public final static int WINDOW=10;
+
+  // Instance variables
+
+  /** Retries allowed per request */
+  private final double ratio;
+
+  /** Retries always allowed per second */
+  private final int minPerSecond;
+
+  /** Requests per second */
+  private final long[] requests=new long[WINDOW];
+
+  /** Retries per second */
+  private final long[] retries=new long[WINDOW];
+
+  /** Current second */
+  private long second;
+
+  // Public methods
+
+  /** Create new RetryBudget */
+  public RetryBudget(double percent, int minPerSecond) {
+    this.ratio=percent/100;
+    this.minPerSecond=minPerSecond;
+    this.second=System.currentTimeMillis()/1000;
+  }
+
+  /** Record a request */
+  public synchronized void deposit() {
+    advance();
+    requests[(int)(second%WINDOW)]++;
+  }
+
+  /** Record a retry if the budget allows it, returning false if not */
+  public synchronized boolean tryWithdraw() {
+    advance();
+    long totalRequests=0, totalRetries=0;
+    for (int i=0;i<WINDOW;i++) {
+      totalRequests+=requests[i];
+      totalRetries+=retries[i];
+    }
+    if (totalRetries+1>totalRequests*ratio+minPerSecond*WINDOW)
+      return false;
+    retries[(int)(second%WINDOW)]++;
+    return true;
+  }
+
+  // Implementation
+
+  /** Clear the seconds that have left the window */
+  protected void advance() {
+    long now=System.currentTimeMillis()/1000;
+    for (long s=Math.max(second+1,now-WINDOW+1);s<=now;s++) {
+      requests[(int)(s%WINDOW)]=0;
+      retries[(int)(s%WINDOW)]=0;
+    }
+    if (now>second)
+      second=now;
+  }
+}
@@ -0,0 +1,269 @@
+package io.vertx.rxcore.java;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.vertx.rxcore.java.http.RxHttpClientResponse;
+import org.vertx.java.core.buffer.Buffer;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.subscriptions.SerialSubscription;
+
+/** Re-subscribes to a source that fails, with exponential backoff and jitter
+ *
+ * <p>The source must be lazy so that each subscription repeats the work (eg
+ * {@link io.vertx.rxcore.java.http.RxHttpClient#observeRequest} or
+ * {@link io.vertx.rxcore.java.eventbus.RxEventBus#observeSend}). A failure is retried if it is one of the
+ * retryOn exception types (any exception if none are set), or if the first item is an RxHttpClientResponse with
+ * one of the retryOnStatus codes (its body is discarded). Nothing is retried once an item has been passed on.</p>
+ *
+ * <p>Retry n waits a random time up to min(maxDelay,baseDelay*2^(n-1)) on the scheduler (eg
+ * {@link RxVertx#contextScheduler()}) so the retry runs on the calling context. If a {@link RetryBudget} is set
+ * every subscription counts as a request and a retry is only made if the budget allows it; otherwise the failure
+ * is passed on.</p>
+ *
+ **/
+public class RetryPolicy {
+
+  // Definitions
+
+  /** Default maximum retries */
+  public final static int DEFAULT_MAX_RETRIES=3;
+
+  /** Default base delay (ms) */
+  public final static long DEFAULT_BASE_DELAY=50;
+
+  /** Default maximum delay (ms) */
+  public final static long DEFAULT_MAX_DELAY=5000;
+
+  // Instance variables
+
+  /** Scheduler */
+  private final Scheduler scheduler;
+
+  /** Maximum retries */
+  private int maxRetries=DEFAULT_MAX_RETRIES;
+
+  /** Base delay (ms) */
+  private long baseDelay=DEFAULT_BASE_DELAY;
+
+  /** Maximum delay (ms) */
+  private long maxDelay=DEFAULT_MAX_DELAY;
+
+  /** Budget (or null) */
+  private RetryBudget budget;
+
+  /** Retryable exceptions (empty for all) */
+  private List<Class<? extends Throwable>> exceptions=new ArrayList<>();
+
+  /** Retryable status codes */
+  private Set<Integer> statuses=new HashSet<>();
+
+  /** Stats */
+  private final AtomicLong retries=new AtomicLong();
+  private final AtomicLong denied=new AtomicLong();
+
+  // Public methods
+
+  /** Create new RetryPolicy */
+  public RetryPolicy(Scheduler scheduler) {
+    this.scheduler=scheduler;
+  }
+
+  /** Set maximum retries */
+  public RetryPolicy setMaxRetries(int maxRetries) {
+    this.maxRetries=maxRetries;
+    return this;
+  }
+
+  /** Set the base and maximum delay (ms) */
+  public RetryPolicy setBackoff(long baseDelay, long maxDelay) {
+    this.baseDelay=baseDelay;
+    this.maxDelay=maxDelay;
+    return this;
+  }
+
+  /** Set budget */
+  public RetryPolicy setBudget(RetryBudget budget) {
+    this.budget=budget;
+    return this;
+  }
+
+  /** Only retry these exceptions (and their subclasses) */
+  @SafeVarargs
+  public final RetryPolicy retryOn(Class<? extends Throwable>... exceptions) {
+    this.exceptions=new ArrayList<>();
+    for (Class<? extends Throwable> exception : exceptions)
+      this.exceptions.add(exception);
+    return this;
+  }
+
+  /** Retry HTTP responses with these status codes */
+  public RetryPolicy retryOnStatus(int... statuses) {
+    this.statuses=new HashSet<>();
+    for (int status : statuses)
+      this.statuses.add(status);
+    return this;
+  }
+
+  /** Return the number of retries made */
+  public long retries() {
+    return this.retries.get();
+  }
+
+  /** Return the number of retries refused by the budget */
+  public long denied() {
+    return this.denied.get();
+  }
+
+  /** Return Observable that retries src according to the policy */
+  public <T> Observable<T> apply(final Observable<T> src) {
+    return Observable.create(new Observable.OnSubscribe<T>() {
+      public void call(Subscriber<? super T> child) {
+        if (budget!=null)
+          budget.deposit();
+        new Retrier<T>(src,child).attempt(0);
+      }
+    });
+  }
+
+  // Implementation
+
+  /** Return true if the exception can be retried */
+  protected boolean isRetryable(Throwable t) {
+    if (exceptions.isEmpty())
+      return true;
+    for (Class<? extends Throwable> c : exceptions) {
+      if (c.isInstance(t))
+        return true;
+    }
+    return false;
+  }
+
+  /** Return true if the item is a failure that can be retried */
+  protected boolean isRetryableItem(Object item) {
+    return (item instanceof RxHttpClientResponse) && statuses.contains(((RxHttpClientResponse)item).statusCode());
+  }
+
+  /** Return true if retry n (from 1) is allowed */
+  protected boolean allow(int n) {
+    if (n>maxRetries)
+      return false;
+    if ((budget!=null) && !budget.tryWithdraw()) {
+      denied.incrementAndGet();
+      return false;
+    }
+    return true;
+  }
+
+  /** Return the delay before retry n (ms) */
+  protected long delay(int n) {
+    long cap=Math.min(maxDelay,baseDelay<<Math.min(n-1,30));
+    return (cap>0)?ThreadLocalRandom.current().nextLong(cap+1):0;
+  }
+
+  /** Drop an item that will be retried */
+  protected void discard(Object item) {
+    if (item instanceof RxHttpClientResponse) {
+      // Read the body so the connection can be reused
+      ((RxHttpClientResponse)item).asObservable().subscribe(
+        new Action1<Buffer>() {
+          public void call(Buffer buf) {
+          }
+        },
+        new Action1<Throwable>() {
+          public void call(Throwable t) {
+          }
+        });
+    }
+  }
+
+  /** Attempts for a single subscription */
+  protected class Retrier<T> {
+
+    /** Source */
+    private final Observable<T> src;
+
+    /** Child */
+    private final Subscriber<? super T> child;
+
+    /** Worker */
+    private final Scheduler.Worker worker;
+
+    /** Current attempt */
+    private final SerialSubscription current=new SerialSubscription();
+
+    Retrier(Observable<T> src, Subscriber<? super T> child) {
+      this.src=src;
+      this.child=child;
+      this.worker=scheduler.createWorker();
+      child.add(worker);
+      child.add(current);
+    }
+
+    /** Subscribe for attempt n (0 for the first) */
+    void attempt(final int n) {
+      if (child.isUnsubscribed())
+        return;
+
+      Subscriber<T> s=new Subscriber<T>() {
+
+        /** Passed an item on */
+        private boolean emitted;
+
+        /** Retrying (ignore the rest) */
+        private boolean retrying;
+
+        public void onNext(T item) {
+          if (retrying)
+            return;
+          if (!emitted && isRetryableItem(item) && allow(n+1)) {
+            retrying=true;
+            unsubscribe();
+            discard(item);
+            retry(n+1);
+            return;
+          }
+          emitted=true;
+          child.onNext(item);
+        }
+
+        public void onError(Throwable t) {
+          if (retrying)
+            return;
+          if (!emitted && isRetryable(t) && allow(n+1)) {
+            retrying=true;
+            retry(n+1);
+            return;
+          }
+          child.onError(t);
+        }
+
+        public void onCompleted() {
+          if (!retrying)
+            child.onCompleted();
+        }
+      };
+      current.set(s);
+      src.subscribe(s);
+    }
+
+    /** Schedule retry n */
+    void retry(final int n) {
+      retries.incrementAndGet();
+      worker.schedule(new Action0() {
+        public void call() {
+          attempt(n);
+        }
+      },delay(n),TimeUnit.MILLISECONDS);
+    }
+  }
+}
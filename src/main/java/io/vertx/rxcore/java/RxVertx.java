@@ -3,15 +3,25 @@ package io.vertx.rxcore.java;
 import io.vertx.rxcore.java.eventbus.RxEventBus;
 import io.vertx.rxcore.java.http.RxHttpClient;
 import io.vertx.rxcore.java.http.RxHttpServer;
+import io.vertx.rxcore.java.impl.BlockingScheduler;
+import io.vertx.rxcore.java.impl.BufferPool;
+import io.vertx.rxcore.java.impl.ContextPoolScheduler;
 import io.vertx.rxcore.java.impl.ContextScheduler;
 import io.vertx.rxcore.java.net.RxNetClient;
 import io.vertx.rxcore.java.net.RxNetServer;
 import io.vertx.rxcore.java.timer.RxTimer;
 import org.vertx.java.core.Vertx;
 import rx.Observable;
+import rx.functions.Func0;
 
 /** RxVertx */
 public class RxVertx {
+
+  /** Default number of concurrent blocking actions */
+  public final static int DEFAULT_BLOCKING_POOL_SIZE=20;
+
+  /** Default number of queued blocking actions */
+  public final static int DEFAULT_BLOCKING_QUEUE_SIZE=1000;
   
   /** Core */
   private Vertx core;
@@ -24,6 +34,12 @@ public class RxVertx {
 
   /** Scheduler */
   private ContextScheduler ctxScheduler;
+
+  /** Event loop pool Scheduler */
+  private ContextPoolScheduler eventLoopScheduler;
+
+  /** Blocking Scheduler */
+  private BlockingScheduler blockingScheduler;
   
   /** Create RxVertx from Core */
   public RxVertx(Vertx vertx) {
@@ -47,6 +63,66 @@ public class RxVertx {
     return this.ctxScheduler;
   }
 
+  /** Return scheduler that spreads Workers round-robin over one context per available processor
+   *
+   * <p>Use observeOn(contextScheduler()) to return the results to this Verticle</p>
+   *
+   **/
+  public ContextPoolScheduler eventLoopScheduler() {
+    if (this.eventLoopScheduler==null) {
+      this.eventLoopScheduler=createEventLoopScheduler(Runtime.getRuntime().availableProcessors(),ContextPoolScheduler.Strategy.ROUND_ROBIN);
+    }
+    return this.eventLoopScheduler;
+  }
+
+  /** Create scheduler that spreads Workers over a pool of event loop contexts */
+  public ContextPoolScheduler createEventLoopScheduler(int size, ContextPoolScheduler.Strategy strategy) {
+    return new ContextPoolScheduler(core,size,strategy);
+  }
+
+  /** Return scheduler for blocking work
+   *
+   * <p>Pool of {@link #DEFAULT_BLOCKING_POOL_SIZE} threads (virtual threads on JDK 21+) created on first use and owned
+   * by this RxVertx, so share the RxVertx rather than creating one per use and {@link #close} it when done. Use
+   * observeOn(contextScheduler()) to return results to this Verticle or use {@link #executeBlocking}</p>
+   *
+   **/
+  public BlockingScheduler blockingScheduler() {
+    if (this.blockingScheduler==null) {
+      this.blockingScheduler=createBlockingScheduler(DEFAULT_BLOCKING_POOL_SIZE,DEFAULT_BLOCKING_QUEUE_SIZE);
+    }
+    return this.blockingScheduler;
+  }
+
+  /** Create scheduler for blocking work with a bounded pool (the caller must close it) */
+  public BlockingScheduler createBlockingScheduler(int poolSize, int queueSize) {
+    return new BlockingScheduler(core,poolSize,queueSize);
+  }
+
+  /** Execute a blocking function on the blockingScheduler and return the result on this context
+   *
+   * <p>The function is called on subscribe</p>
+   *
+   **/
+  public <T> Observable<T> executeBlocking(Func0<T> fn) {
+    return blockingScheduler().execute(fn);
+  }
+
+  /** Shutdown the blockingScheduler pool (if created) */
+  public void close() {
+    if (this.blockingScheduler!=null) {
+      this.blockingScheduler.close();
+      this.blockingScheduler=null;
+    }
+  }
+
+  // Buffers
+
+  /** Return the pool of reusable Buffers for the current Context */
+  public BufferPool bufferPool() {
+    return BufferPool.forContext(core);
+  }
+
   // Services 
   
   /** Create NetServer */
@@ -61,12 +137,12 @@ public class RxVertx {
 
   /** Create HttpServer */
   public RxHttpServer createHttpServer() {
-    return new RxHttpServer(core.createHttpServer());
+    return new RxHttpServer(core.createHttpServer(),core);
   }
 
   /** Create HttpClient */
   public RxHttpClient createHttpClient() {
-    return new RxHttpClient(core.createHttpClient());
+    return new RxHttpClient(core.createHttpClient(),core);
   }
 
   // TODO: createFileSystem 
@@ -0,0 +1,60 @@
+package io.vertx.rxcore.java.http;
+
+/** Deadlines for an HTTP client request (ms from when the request is made, 0 for none)
+ *
+ * <ul>
+ *   <li>connect - until the request has a connection, including any wait for one from the pool (ignored if the
+ *   connection of a request cannot be found)</li>
+ *   <li>firstByte - until the response headers arrive</li>
+ *   <li>total - until the response body has been read</li>
+ * </ul>
+ *
+ **/
+public class HttpDeadlines {
+
+  // Instance variables
+
+  /** Connect deadline */
+  private long connect;
+
+  /** First byte deadline */
+  private long firstByte;
+
+  /** Total deadline */
+  private long total;
+
+  // Public methods
+
+  /** Set connect deadline */
+  public HttpDeadlines setConnect(long connect) {
+    this.connect=connect;
+    return this;
+  }
+
+  /** Set first byte deadline */
+  public HttpDeadlines setFirstByte(long firstByte) {
+    this.firstByte=firstByte;
+    return this;
+  }
+
+  /** Set total deadline */
+  public HttpDeadlines setTotal(long total) {
+    this.total=total;
+    return this;
+  }
+
+  /** Return connect deadline */
+  public long connect() {
+    return this.connect;
+  }
+
+  /** Return first byte deadline */
+  public long firstByte() {
+    return this.firstByte;
+  }
+
+  /** Return total deadline */
+  public long total() {
+    return this.total;
+  }
+}
@@ -0,0 +1,115 @@
+package io.vertx.rxcore.java.http;
+
+import java.util.Arrays;
+
+/** Snapshot of the connection pool of an HTTP client
+ *
+ * <p>The gauges are -1 if the pool could not be inspected. The connect histogram counts the connects with a
+ * latency (from the request for a connection until it is established) up to each of {@link #CONNECT_BUCKETS},
+ * with a final bucket for anything slower.</p>
+ *
+ **/
+public class HttpPoolStats {
+
+  // Definitions
+
+  /** Upper bounds of the connect latency buckets (ms) */
+  public final static long[] CONNECT_BUCKETS={1,2,5,10,25,50,100,250,500,1000,2500,5000};
+
+  // Instance variables
+
+  /** Time taken (ms) */
+  private final long time;
+
+  /** Maximum pool size */
+  private final int maxPoolSize;
+
+  /** Gauges */
+  private final int connections, connecting, idle, inUse, waiting;
+
+  /** Connect histogram */
+  private final long[] connectHistogram;
+
+  // Public methods
+
+  /** Create new HttpPoolStats */
+  public HttpPoolStats(long time, int maxPoolSize, int connections, int connecting, int idle, int inUse, int waiting, long[] connectHistogram) {
+    this.time=time;
+    this.maxPoolSize=maxPoolSize;
+    this.connections=connections;
+    this.connecting=connecting;
+    this.idle=idle;
+    this.inUse=inUse;
+    this.waiting=waiting;
+    this.connectHistogram=connectHistogram;
+  }
+
+  /** Return the time the snapshot was taken (ms) */
+  public long time() {
+    return this.time;
+  }
+
+  /** Return the maximum pool size */
+  public int maxPoolSize() {
+    return this.maxPoolSize;
+  }
+
+  /** Return the number of open connections */
+  public int connections() {
+    return this.connections;
+  }
+
+  /** Return the number of connections being established */
+  public int connecting() {
+    return this.connecting;
+  }
+
+  /** Return the number of open connections with no outstanding requests */
+  public int idle() {
+    return this.idle;
+  }
+
+  /** Return the number of open connections with outstanding requests */
+  public int inUse() {
+    return this.inUse;
+  }
+
+  /** Return the number of requests waiting for a connection */
+  public int waiting() {
+    return this.waiting;
+  }
+
+  /** Return the number of connects recorded */
+  public long connects() {
+    long n=0;
+    for (long count : connectHistogram)
+      n+=count;
+    return n;
+  }
+
+  /** Return the connect histogram (one more entry than CONNECT_BUCKETS) */
+  public long[] connectHistogram() {
+    return this.connectHistogram.clone();
+  }
+
+  /** Return the upper bound of the bucket holding the connect latency percentile p (0-100, Long.MAX_VALUE if it is
+   * beyond the last bucket and 0 if there are no connects)
+   **/
+  public long connectPercentile(double p) {
+    long n=connects();
+    if (n==0)
+      return 0;
+    long rank=Math.max(1,(long)Math.ceil(n*p/100));
+    for (int i=0;i<CONNECT_BUCKETS.length;i++) {
+      rank-=connectHistogram[i];
+      if (rank<=0)
+        return CONNECT_BUCKETS[i];
+    }
+    return Long.MAX_VALUE;
+  }
+
+  @Override public String toString() {
+    return "HttpPoolStats[max="+maxPoolSize+",connections="+connections+",connecting="+connecting+",idle="+idle
+      +",inUse="+inUse+",waiting="+waiting+",connect="+Arrays.toString(connectHistogram)+"]";
+  }
+}
@@ -0,0 +1,187 @@
+package io.vertx.rxcore.java.http;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action1;
+
+/** Operator that limits the number of requests in flight on an RxHttpServer request stream
+ *
+ * <p>A request is in flight from the time it is passed downstream until its response is finished (see
+ * {@link RxHttpServerResponse#asFinishedObservable()}). Requests over the limit are paused and held in a small
+ * queue, and are admitted in order as earlier responses finish. Once the queue is full further requests are shed
+ * straight away with 503 (Service Unavailable) and a Retry-After header.</p>
+ *
+ * <p>If a target latency is set the limit adapts between 1 and maxConcurrent: it is cut by 10% whenever a response
+ * takes longer than the target and grows by one (per limit responses) otherwise.</p>
+ *
+ * <p>The counters may be read from any thread, but the operator itself must only be used by a single server
+ * (event loop)</p>
+ *
+ **/
+public class RxAdmissionControl implements Observable.Operator<RxHttpServerRequest,RxHttpServerRequest> {
+
+  // Definitions
+
+  /** Default Retry-After (seconds) */
+  public final static int DEFAULT_RETRY_AFTER=1;
+
+  // Instance variables
+
+  /** Maximum concurrent requests */
+  private final int maxConcurrent;
+
+  /** Maximum queued requests */
+  private final int maxQueued;
+
+  /** Retry-After (seconds) */
+  private int retryAfter=DEFAULT_RETRY_AFTER;
+
+  /** Target latency (ns, or 0 for a fixed limit) */
+  private long targetLatency;
+
+  /** Current limit */
+  private volatile double limit;
+
+  /** Queue */
+  private final ArrayDeque<RxHttpServerRequest> queue=new ArrayDeque<>();
+
+  /** In flight */
+  private volatile int inFlight;
+
+  /** Stats */
+  private final AtomicLong accepted=new AtomicLong();
+  private final AtomicLong queued=new AtomicLong();
+  private final AtomicLong shed=new AtomicLong();
+
+  // Public methods
+
+  /** Create new RxAdmissionControl */
+  public RxAdmissionControl(int maxConcurrent, int maxQueued) {
+    if (maxConcurrent<1)
+      throw new IllegalArgumentException("Invalid concurrency (maxConcurrent="+maxConcurrent+")");
+    this.maxConcurrent=maxConcurrent;
+    this.maxQueued=maxQueued;
+    this.limit=maxConcurrent;
+  }
+
+  /** Set the Retry-After sent with 503 (seconds) */
+  public RxAdmissionControl setRetryAfter(int retryAfter) {
+    this.retryAfter=retryAfter;
+    return this;
+  }
+
+  /** Adapt the limit to keep response times below targetLatency (ms) */
+  public RxAdmissionControl setTargetLatency(long targetLatency) {
+    this.targetLatency=targetLatency*1000000L;
+    return this;
+  }
+
+  /** Return the current limit */
+  public int limit() {
+    return (int)this.limit;
+  }
+
+  /** Return the number of requests in flight */
+  public int inFlight() {
+    return this.inFlight;
+  }
+
+  /** Return the number of requests admitted (straight away or after queueing) */
+  public long accepted() {
+    return this.accepted.get();
+  }
+
+  /** Return the number of requests that were queued */
+  public long queued() {
+    return this.queued.get();
+  }
+
+  /** Return the number of requests shed with 503 */
+  public long shed() {
+    return this.shed.get();
+  }
+
+  // Operator implementation
+
+  /** Add Subscriber */
+  public Subscriber<? super RxHttpServerRequest> call(final Subscriber<? super RxHttpServerRequest> child) {
+    return new Subscriber<RxHttpServerRequest>(child) {
+
+      public void onNext(final RxHttpServerRequest req) {
+        if ((inFlight<limit()) && queue.isEmpty()) {
+          admit(req,child);
+          return;
+        }
+
+        if (queue.size()<maxQueued) {
+          // Hold the body until admitted
+          req.pause();
+          queue.addLast(req);
+          queued.incrementAndGet();
+
+          // Drop if the client gives up while queued
+          req.response().asFinishedObservable().subscribe(new Action1<Integer>() {
+            public void call(Integer status) {
+              queue.remove(req);
+            }
+          });
+          return;
+        }
+
+        shed.incrementAndGet();
+        req.response()
+          .setStatusCode(503)
+          .setStatusMessage("Service Unavailable")
+          .putHeader("Retry-After",Integer.toString(retryAfter))
+          .end();
+      }
+
+      public void onError(Throwable e) {
+        child.onError(e);
+      }
+
+      public void onCompleted() {
+        child.onCompleted();
+      }
+    };
+  }
+
+  // Implementation
+
+  /** Pass request downstream and release it once the response is finished */
+  protected void admit(RxHttpServerRequest req, final Subscriber<? super RxHttpServerRequest> child) {
+    inFlight++;
+    accepted.incrementAndGet();
+
+    final long start=System.nanoTime();
+    req.response().asFinishedObservable().subscribe(new Action1<Integer>() {
+      public void call(Integer status) {
+        release(System.nanoTime()-start,child);
+      }
+    });
+
+    child.onNext(req);
+  }
+
+  /** Release a request and admit any queued requests that now fit */
+  protected void release(long latency, Subscriber<? super RxHttpServerRequest> child) {
+    inFlight--;
+
+    if (targetLatency>0) {
+      if (latency>targetLatency)
+        limit=Math.max(1,limit*0.9);
+      else
+        limit=Math.min(maxConcurrent,limit+1/limit);
+    }
+
+    while ((inFlight<limit()) && !queue.isEmpty()) {
+      RxHttpServerRequest next=queue.pollFirst();
+      // Resume first as the Subscriber may pause again
+      next.resume();
+      admit(next,child);
+    }
+  }
+}
@@ -0,0 +1,424 @@
+package io.vertx.rxcore.java.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.http.HttpClient;
+import org.vertx.java.core.http.HttpClientRequest;
+import org.vertx.java.core.http.WebSocketVersion;
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action1;
+import rx.subjects.AsyncSubject;
+
+/** RxHttpClient that spreads requests over a set of backends
+ *
+ * <p>Each backend is a core HttpClient (with its own host, port and pool). A request is outstanding on its
+ * backend until the response headers arrive, which is also when the latency is sampled into an EWMA.
+ * Backends are chosen by one of two strategies:</p>
+ *
+ * <ul>
+ *   <li>{@link Strategy#LEAST_OUTSTANDING} - the backend with the fewest outstanding requests (ties are taken in
+ *   turn)</li>
+ *   <li>{@link Strategy#POWER_OF_TWO} (the default) - the cheaper of two backends picked at random, where the cost
+ *   is the latency EWMA scaled by the outstanding requests</li>
+ * </ul>
+ *
+ * <p>Requests are only sent (and a backend chosen) on subscribe, so each subscription (eg a retry) makes a new
+ * choice. Errors and 5xx responses count as failures. A backend with maxFailures consecutive failures is ejected for
+ * ejectTime and then tried again. If every backend is ejected they are all used, so the client never fails
+ * outright because of ejection. Per-backend metrics are available from {@link #backends()}.</p>
+ *
+ * <p>The client must only be used from a single event loop, but the metrics may be read from any thread</p>
+ *
+ **/
+public class RxBalancedHttpClient {
+
+  // Definitions
+
+  /** Selection strategy */
+  public enum Strategy { LEAST_OUTSTANDING, POWER_OF_TWO };
+
+  /** Default consecutive failures before a backend is ejected */
+  public final static int DEFAULT_MAX_FAILURES=5;
+
+  /** Default ejection time (ms) */
+  public final static long DEFAULT_EJECT_TIME=10000;
+
+  /** Default weight of each latency sample in the EWMA */
+  public final static double DEFAULT_EWMA_WEIGHT=0.2;
+
+  /** Backend */
+  public static class Backend {
+
+    /** Client */
+    private final RxHttpClient client;
+
+    /** Outstanding requests */
+    private volatile int outstanding;
+
+    /** Latency EWMA (ms, or 0 if not sampled yet) */
+    private volatile double latency;
+
+    /** Consecutive failures */
+    private int consecutiveFailures;
+
+    /** Ejected until (ms) */
+    private volatile long ejectedUntil;
+
+    /** Stats */
+    private final AtomicLong requests=new AtomicLong();
+    private final AtomicLong failures=new AtomicLong();
+    private final AtomicLong ejections=new AtomicLong();
+
+    /** Create new Backend */
+    protected Backend(RxHttpClient client) {
+      this.client=client;
+    }
+
+    /** Return client */
+    public RxHttpClient client() {
+      return this.client;
+    }
+
+    /** Return host */
+    public String host() {
+      return client.coreHttpClient().getHost();
+    }
+
+    /** Return port */
+    public int port() {
+      return client.coreHttpClient().getPort();
+    }
+
+    /** Return the number of outstanding requests */
+    public int outstanding() {
+      return this.outstanding;
+    }
+
+    /** Return the latency EWMA (ms) */
+    public double latency() {
+      return this.latency;
+    }
+
+    /** Return the number of requests sent */
+    public long requests() {
+      return this.requests.get();
+    }
+
+    /** Return the number of failures */
+    public long failures() {
+      return this.failures.get();
+    }
+
+    /** Return the number of times the backend has been ejected */
+    public long ejections() {
+      return this.ejections.get();
+    }
+
+    /** Return a snapshot of the connection pool */
+    public HttpPoolStats poolStats() {
+      return client.poolStats();
+    }
+
+    /** Return true if currently ejected */
+    public boolean isEjected() {
+      return System.currentTimeMillis()<ejectedUntil;
+    }
+
+    @Override public String toString() {
+      return host()+":"+port();
+    }
+  }
+
+  // Instance variables
+
+  /** Vertx (or null) */
+  private final Vertx vertx;
+
+  /** Deadlines (or null) */
+  private HttpDeadlines deadlines;
+
+  /** Record connect latencies */
+  private boolean monitorPool;
+
+  /** Backends */
+  private final List<Backend> backends=new ArrayList<>();
+
+  /** Strategy */
+  private Strategy strategy=Strategy.POWER_OF_TWO;
+
+  /** Consecutive failures before ejection */
+  private int maxFailures=DEFAULT_MAX_FAILURES;
+
+  /** Ejection time (ms) */
+  private long ejectTime=DEFAULT_EJECT_TIME;
+
+  /** EWMA weight */
+  private double ewmaWeight=DEFAULT_EWMA_WEIGHT;
+
+  /** Next backend to try first (for LEAST_OUTSTANDING ties) */
+  private int next;
+
+  /** Random */
+  private final Random random=new Random();
+
+  // Public methods
+
+  /** Create new RxBalancedHttpClient */
+  public RxBalancedHttpClient(HttpClient... clients) {
+    this(null,clients);
+  }
+
+  /** Create new RxBalancedHttpClient whose backends can have deadlines */
+  public RxBalancedHttpClient(Vertx vertx, HttpClient... clients) {
+    this.vertx=vertx;
+    for (HttpClient client : clients)
+      addBackend(client);
+  }
+
+  /** Add backend */
+  public RxBalancedHttpClient addBackend(HttpClient client) {
+    RxHttpClient backend=new RxHttpClient(client,vertx).setDeadlines(deadlines);
+    if (monitorPool)
+      backend.monitorPool();
+    backends.add(new Backend(backend));
+    return this;
+  }
+
+  /** Set the deadlines for every request on every backend (requires a Vertx) */
+  public RxBalancedHttpClient setDeadlines(HttpDeadlines deadlines) {
+    this.deadlines=deadlines;
+    for (Backend backend : backends)
+      backend.client.setDeadlines(deadlines);
+    return this;
+  }
+
+  /** Record connect latencies in the pool stats of every backend
+   *
+   * @see RxHttpClient#monitorPool
+   *
+   **/
+  public RxBalancedHttpClient monitorPool() {
+    this.monitorPool=true;
+    for (Backend backend : backends)
+      backend.client.monitorPool();
+    return this;
+  }
+
+  /** Set the selection strategy */
+  public RxBalancedHttpClient setStrategy(Strategy strategy) {
+    this.strategy=strategy;
+    return this;
+  }
+
+  /** Set the consecutive failures before a backend is ejected */
+  public RxBalancedHttpClient setMaxFailures(int maxFailures) {
+    this.maxFailures=maxFailures;
+    return this;
+  }
+
+  /** Set how long a backend is ejected for (ms) */
+  public RxBalancedHttpClient setEjectTime(long ejectTime) {
+    this.ejectTime=ejectTime;
+    return this;
+  }
+
+  /** Set the weight (0-1) of each latency sample in the EWMA */
+  public RxBalancedHttpClient setEwmaWeight(double ewmaWeight) {
+    this.ewmaWeight=ewmaWeight;
+    return this;
+  }
+
+  /** Return the backends */
+  public List<Backend> backends() {
+    return Collections.unmodifiableList(backends);
+  }
+
+  /** Open keep-alive connections to every backend, emitting the pool stats of each backend (in
+   * order) once its warm-up has completed
+   *
+   * @see RxHttpClient#warmUp
+   *
+   **/
+  public Observable<HttpPoolStats> warmUp(int connections, String uri) {
+    List<Observable<HttpPoolStats>> stats=new ArrayList<>();
+    for (Backend backend : backends)
+      stats.add(backend.client.warmUp(connections,uri));
+    return Observable.concat(Observable.from(stats));
+  }
+
+  /** Close every backend */
+  public void close() {
+    for (Backend backend : backends)
+      backend.client.close();
+  }
+
+  // Rx extensions
+
+  public Observable<RxWebSocket> connectWebsocket(String uri) {
+    return choose().client.connectWebsocket(uri);
+  }
+
+  public Observable<RxWebSocket> connectWebsocket(String uri, WebSocketVersion wsVersion) {
+    return choose().client.connectWebsocket(uri,wsVersion);
+  }
+
+  public Observable<RxWebSocket> connectWebsocket(String uri, WebSocketVersion wsVersion, MultiMap headers) {
+    return choose().client.connectWebsocket(uri,wsVersion,headers);
+  }
+
+  public Observable<RxHttpClientResponse> getNow(String uri) {
+    return getNow(uri,null);
+  }
+
+  public Observable<RxHttpClientResponse> getNow(final String uri, final MultiMap headers) {
+    return Observable.create(new Observable.OnSubscribe<RxHttpClientResponse>() {
+      /** Choose a backend and send for each subscription */
+      public void call(Subscriber<? super RxHttpClientResponse> subscriber) {
+        Backend backend=choose();
+        track(backend,backend.client.getNow(uri,headers)).subscribe(subscriber);
+      }
+    });
+  }
+
+  public Observable<RxHttpClientResponse> options(String uri, Action1<HttpClientRequest> requestBuilder) {
+    return request("OPTIONS",uri,requestBuilder);
+  }
+
+  public Observable<RxHttpClientResponse> get(String uri, Action1<HttpClientRequest> requestBuilder) {
+    return request("GET",uri,requestBuilder);
+  }
+
+  public Observable<RxHttpClientResponse> post(String uri, Action1<HttpClientRequest> requestBuilder) {
+    return request("POST",uri,requestBuilder);
+  }
+
+  public Observable<RxHttpClientResponse> put(String uri, Action1<HttpClientRequest> requestBuilder) {
+    return request("PUT",uri,requestBuilder);
+  }
+
+  public Observable<RxHttpClientResponse> delete(String uri, Action1<HttpClientRequest> requestBuilder) {
+    return request("DELETE",uri,requestBuilder);
+  }
+
+  public Observable<RxHttpClientResponse> trace(String uri, Action1<HttpClientRequest> requestBuilder) {
+    return request("TRACE",uri,requestBuilder);
+  }
+
+  public Observable<RxHttpClientResponse> connect(String uri, Action1<HttpClientRequest> requestBuilder) {
+    return request("CONNECT",uri,requestBuilder);
+  }
+
+  public Observable<RxHttpClientResponse> patch(String uri, Action1<HttpClientRequest> requestBuilder) {
+    return request("PATCH",uri,requestBuilder);
+  }
+
+  public Observable<RxHttpClientResponse> request(final String method, final String uri, final Action1<HttpClientRequest> requestBuilder) {
+    return Observable.create(new Observable.OnSubscribe<RxHttpClientResponse>() {
+      /** Choose a backend and send for each subscription */
+      public void call(Subscriber<? super RxHttpClientResponse> subscriber) {
+        Backend backend=choose();
+        track(backend,backend.client.request(method,uri,requestBuilder)).subscribe(subscriber);
+      }
+    });
+  }
+
+  // Implementation
+
+  /** Choose a backend */
+  protected Backend choose() {
+    if (backends.isEmpty())
+      throw new IllegalStateException("No backends");
+
+    // Skip ejected backends (unless that is all of them)
+    List<Backend> healthy=backends;
+    for (Backend backend : backends) {
+      if (backend.isEjected()) {
+        healthy=new ArrayList<>();
+        for (Backend b : backends) {
+          if (!b.isEjected())
+            healthy.add(b);
+        }
+        if (healthy.isEmpty())
+          healthy=backends;
+        break;
+      }
+    }
+
+    int n=healthy.size();
+    if (n==1)
+      return healthy.get(0);
+
+    if (strategy==Strategy.POWER_OF_TWO) {
+      Backend a=healthy.get(random.nextInt(n));
+      Backend b=healthy.get(random.nextInt(n-1));
+      if (b==a)
+        b=healthy.get(n-1);
+      return (cost(b)<cost(a))?b:a;
+    }
+
+    int start=(next++&Integer.MAX_VALUE)%n;
+    Backend best=null;
+    for (int i=0;i<n;i++) {
+      Backend backend=healthy.get((start+i)%n);
+      if ((best==null) || (backend.outstanding<best.outstanding))
+        best=backend;
+    }
+    return best;
+  }
+
+  /** Return the cost of sending a request to backend */
+  protected double cost(Backend backend) {
+    // Unsampled backends are cheap so they get tried
+    return backend.latency*(backend.outstanding+1);
+  }
+
+  /** Account for a request on backend */
+  protected Observable<RxHttpClientResponse> track(final Backend backend, Observable<RxHttpClientResponse> src) {
+    backend.outstanding++;
+    backend.requests.incrementAndGet();
+    final long start=System.nanoTime();
+    final AsyncSubject<RxHttpClientResponse> rx=AsyncSubject.create();
+    src.subscribe(
+      new Action1<RxHttpClientResponse>() {
+        public void call(RxHttpClientResponse resp) {
+          done(backend,start,resp.statusCode()<500);
+          rx.onNext(resp);
+          rx.onCompleted();
+        }
+      },
+      new Action1<Throwable>() {
+        public void call(Throwable t) {
+          done(backend,start,false);
+          rx.onError(t);
+        }
+      });
+    return rx;
+  }
+
+  /** Record the outcome of a request */
+  protected void done(Backend backend, long start, boolean ok) {
+    backend.outstanding--;
+
+    double sample=(System.nanoTime()-start)/1000000.0;
+    backend.latency=(backend.latency==0)?sample:backend.latency+ewmaWeight*(sample-backend.latency);
+
+    if (ok) {
+      backend.consecutiveFailures=0;
+      return;
+    }
+
+    backend.failures.incrementAndGet();
+    if (++backend.consecutiveFailures>=maxFailures) {
+      backend.consecutiveFailures=0;
+      backend.ejectedUntil=System.currentTimeMillis()+ejectTime;
+      backend.ejections.incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,235 @@
+package io.vertx.rxcore.java.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import io.vertx.rxcore.RxSupport;
+import io.vertx.rxcore.java.impl.CompressOperator;
+import io.vertx.rxcore.java.impl.ResponseCompressOperator;
+import org.vertx.java.core.buffer.Buffer;
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action1;
+
+/** Operator that negotiates response compression for an RxHttpServer request stream
+ *
+ * <p>The Accept-Encoding of each request is matched against gzip and deflate (honouring q-values, gzip is
+ * preferred on a tie). Bodies streamed with {@link RxHttpServerRequest#respond} are then compressed on the fly if
+ * the response Content-type is in the allow-list and the body is at least minSize bytes (the start of the body is
+ * held until that is known). Compressible responses always carry Vary: Accept-Encoding. Deflaters are pooled
+ * (see {@link CompressOperator}).</p>
+ *
+ * <p>Fixed payloads can be sent with {@link #respond(RxHttpServerRequest,String,Buffer)}, which keeps each
+ * compressed variant in a small LRU cache so it is only compressed once</p>
+ *
+ **/
+public class RxCompression implements Observable.Operator<RxHttpServerRequest,RxHttpServerRequest> {
+
+  // Definitions
+
+  /** Default minimum size */
+  public final static int DEFAULT_MIN_SIZE=1024;
+
+  /** Default compressible Content-types (prefixes) */
+  public final static String[] DEFAULT_CONTENT_TYPES={
+    "text/","application/json","application/x-ndjson","application/javascript","application/xml","image/svg+xml"
+  };
+
+  /** Default variant cache size */
+  public final static int DEFAULT_CACHE_SIZE=100;
+
+  // Instance variables
+
+  /** Minimum size */
+  private int minSize=DEFAULT_MIN_SIZE;
+
+  /** Compression level */
+  private int level=Deflater.DEFAULT_COMPRESSION;
+
+  /** Compressible Content-types (prefixes) */
+  private String[] contentTypes=DEFAULT_CONTENT_TYPES;
+
+  /** Compressed variants (by encoding and key) */
+  private final LinkedHashMap<String,Buffer> cache=new LinkedHashMap<String,Buffer>(16,0.75f,true) {
+    @Override protected boolean removeEldestEntry(Map.Entry<String,Buffer> eldest) {
+      return size()>cacheSize;
+    }
+  };
+
+  /** Variant cache size */
+  private int cacheSize=DEFAULT_CACHE_SIZE;
+
+  // Public methods
+
+  /** Set the minimum size to compress */
+  public RxCompression setMinSize(int minSize) {
+    this.minSize=minSize;
+    return this;
+  }
+
+  /** Set the compression level */
+  public RxCompression setLevel(int level) {
+    this.level=level;
+    return this;
+  }
+
+  /** Set the compressible Content-types (prefixes, eg "text/") */
+  public RxCompression setContentTypes(String... contentTypes) {
+    this.contentTypes=contentTypes;
+    return this;
+  }
+
+  /** Set the maximum number of cached compressed variants */
+  public RxCompression setCacheSize(int cacheSize) {
+    this.cacheSize=cacheSize;
+    return this;
+  }
+
+  /** Return the preferred encoding for Accept-Encoding (or null for identity) */
+  public static CompressOperator.Format negotiate(String acceptEncoding) {
+    if (acceptEncoding==null)
+      return null;
+
+    // -1 until listed, as * only applies to codings that are not listed explicitly
+    double gzip=-1, deflate=-1, any=0;
+    for (String item : acceptEncoding.split(",")) {
+      String[] parts=item.split(";");
+      String coding=parts[0].trim().toLowerCase();
+      double q=1;
+      for (int i=1;i<parts.length;i++) {
+        String param=parts[i].trim();
+        if (param.startsWith("q=")) {
+          try {
+            q=Double.parseDouble(param.substring(2));
+          }
+          catch(NumberFormatException e) {
+            q=0;
+          }
+        }
+      }
+      if (coding.equals("gzip") || coding.equals("x-gzip"))
+        gzip=q;
+      else if (coding.equals("deflate"))
+        deflate=q;
+      else if (coding.equals("*"))
+        any=q;
+    }
+    if (gzip<0)
+      gzip=any;
+    if (deflate<0)
+      deflate=any;
+
+    if ((gzip>0) && (gzip>=deflate))
+      return CompressOperator.Format.GZIP;
+    if (deflate>0)
+      return CompressOperator.Format.DEFLATE;
+    return null;
+  }
+
+  /** Return true if the Content-type is compressible */
+  public boolean isCompressible(String contentType) {
+    if (contentType==null)
+      return false;
+    contentType=contentType.trim().toLowerCase();
+    for (String prefix : contentTypes) {
+      if (contentType.startsWith(prefix))
+        return true;
+    }
+    return false;
+  }
+
+  /** Send a fixed payload (compressed variants are cached under key)
+   *
+   * <p>The Content-type should be set on the response first</p>
+   *
+   **/
+  public void respond(RxHttpServerRequest req, String key, Buffer payload) {
+    RxHttpServerResponse resp=req.response();
+    CompressOperator.Format format=req.responseEncoding();
+    String contentType=resp.headers().get("Content-Type");
+
+    if ((format==null) || !isCompressible(contentType) || (payload.length()<minSize)) {
+      if (isCompressible(contentType))
+        resp.putHeader("Vary","Accept-Encoding");
+      resp.end(payload);
+      return;
+    }
+
+    String cacheKey=format+":"+key;
+    Buffer variant=cache.get(cacheKey);
+    if (variant==null) {
+      variant=compress(format,payload);
+      cache.put(cacheKey,variant);
+    }
+
+    resp.putHeader("Vary","Accept-Encoding");
+    resp.putHeader("Content-Encoding",encoding(format));
+    resp.end(variant);
+  }
+
+  // Operator implementation
+
+  /** Add Subscriber */
+  public Subscriber<? super RxHttpServerRequest> call(final Subscriber<? super RxHttpServerRequest> child) {
+    return new Subscriber<RxHttpServerRequest>(child) {
+
+      public void onNext(RxHttpServerRequest req) {
+        req.setResponseCompression(RxCompression.this,negotiate(req.headers().get("Accept-Encoding")));
+        child.onNext(req);
+      }
+
+      public void onError(Throwable e) {
+        child.onError(e);
+      }
+
+      public void onCompleted() {
+        child.onCompleted();
+      }
+    };
+  }
+
+  // Implementation
+
+  /** Return the body to send for a streamed response (compressed if required) */
+  protected Observable<Buffer> encode(RxHttpServerRequest req, Observable<Buffer> src) {
+    final RxHttpServerResponse resp=req.response();
+    final CompressOperator.Format format=req.responseEncoding();
+    if (!isCompressible(resp.headers().get("Content-Type")))
+      return src;
+
+    resp.putHeader("Vary","Accept-Encoding");
+    if ((format==null) || resp.headers().contains("Content-Encoding"))
+      return src;
+
+    // Known to be too small
+    String len=resp.headers().get("Content-Length");
+    if ((len!=null) && (Long.parseLong(len.trim())<minSize))
+      return src;
+
+    return src.lift(new ResponseCompressOperator(format,level,CompressOperator.DEFAULT_CHUNK_SIZE,minSize,new Action1<Boolean>() {
+      public void call(Boolean compress) {
+        if (!compress)
+          return;
+        resp.headers().remove("Content-Length");
+        resp.setChunked(true);
+        resp.putHeader("Content-Encoding",encoding(format));
+      }
+    }));
+  }
+
+  /** Return the Content-Encoding for format */
+  protected static String encoding(CompressOperator.Format format) {
+    return (format==CompressOperator.Format.GZIP)?"gzip":"deflate";
+  }
+
+  /** Compress payload (synchronously) */
+  protected Buffer compress(CompressOperator.Format format, Buffer payload) {
+    return Observable.just(payload)
+      .lift(CompressOperator.compress(format,level,CompressOperator.DEFAULT_CHUNK_SIZE))
+      .lift(RxSupport.aggregateBuffers(Long.MAX_VALUE))
+      .map(RxSupport.flattenBuffer)
+      .toBlocking()
+      .single();
+  }
+}
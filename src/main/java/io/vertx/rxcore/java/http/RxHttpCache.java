@@ -0,0 +1,483 @@
+package io.vertx.rxcore.java.http;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.vertx.rxcore.java.impl.CachedHttpClientResponse;
+import io.vertx.rxcore.java.impl.PrefixedHttpClientResponse;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
+import org.vertx.java.core.http.HttpClientResponse;
+import rx.Observable;
+import rx.functions.Action1;
+import rx.subjects.AsyncSubject;
+
+/** In-memory HTTP cache for GET requests made with an RxHttpClient
+ *
+ * <p>Responses (200 and 203) are stored by uri unless they are marked no-store or Vary: *. Freshness follows
+ * Cache-Control max-age (less any Age), then Expires, then 10% of the time since Last-Modified (at most a day).
+ * Fresh entries are served from memory. Stale entries with an ETag or Last-Modified are revalidated with a
+ * conditional request, and a 304 refreshes the entry without resending the body. Within the stale-while-revalidate
+ * window a stale entry is served straight away while it is revalidated in the background. Requests that send
+ * Cache-Control: no-cache (or no-store) always go to the network.</p>
+ *
+ * <p>The body of a cacheable response is read in full before the response is emitted, unless it is larger than
+ * maxEntrySize, in which case the response is passed on uncached as soon as that is known. Entries are evicted
+ * least recently used first to keep the total size (bodies and headers) below maxBytes. The cache must only be
+ * used from the event loop of its client, but the counters may be read from any thread.</p>
+ *
+ **/
+public class RxHttpCache {
+
+  // Definitions
+
+  /** Maximum heuristic freshness (ms) */
+  public final static long MAX_HEURISTIC_LIFETIME=24*60*60*1000L;
+
+  /** Cached response */
+  protected static class Entry {
+
+    /** Status */
+    int status;
+
+    /** Status message */
+    String statusMessage;
+
+    /** Headers */
+    MultiMap headers;
+
+    /** Body */
+    Buffer body;
+
+    /** Request header values the response varies on (or null) */
+    Map<String,String> vary;
+
+    /** Fresh until (ms) */
+    long freshUntil;
+
+    /** Stale responses may be served until (ms) */
+    long staleUntil;
+
+    /** Size (bytes) */
+    int size;
+
+    /** Revalidation in progress */
+    boolean revalidating;
+
+    /** Return true if the entry can be revalidated */
+    boolean hasValidators() {
+      return headers.contains("ETag") || headers.contains("Last-Modified");
+    }
+
+    /** Return true if the request matches the Vary headers */
+    boolean matches(MultiMap req) {
+      if (vary==null)
+        return true;
+      for (Map.Entry<String,String> e : vary.entrySet()) {
+        String value=(req!=null)?req.get(e.getKey()):null;
+        if ((value==null)?(e.getValue()!=null):!value.equals(e.getValue()))
+          return false;
+      }
+      return true;
+    }
+
+    /** Return a response that replays the entry */
+    RxHttpClientResponse response() {
+      return new RxHttpClientResponse(new CachedHttpClientResponse(status,statusMessage,headers,body));
+    }
+  }
+
+  // Instance variables
+
+  /** Client */
+  private final RxHttpClient client;
+
+  /** Maximum total size (bytes) */
+  private final long maxBytes;
+
+  /** Maximum body size (bytes) */
+  private long maxEntrySize;
+
+  /** Entries by uri (in access order) */
+  private final LinkedHashMap<String,Entry> entries=new LinkedHashMap<>(16,0.75f,true);
+
+  /** Total size (bytes) */
+  private volatile long bytes;
+
+  /** Stats */
+  private final AtomicLong hits=new AtomicLong();
+  private final AtomicLong staleHits=new AtomicLong();
+  private final AtomicLong misses=new AtomicLong();
+  private final AtomicLong revalidations=new AtomicLong();
+  private final AtomicLong notModified=new AtomicLong();
+  private final AtomicLong evictions=new AtomicLong();
+
+  // Public methods
+
+  /** Create new RxHttpCache */
+  public RxHttpCache(RxHttpClient client, long maxBytes) {
+    this.client=client;
+    this.maxBytes=maxBytes;
+    this.maxEntrySize=maxBytes/8;
+  }
+
+  /** Set the largest body that is stored (bytes) */
+  public RxHttpCache setMaxEntrySize(long maxEntrySize) {
+    this.maxEntrySize=maxEntrySize;
+    return this;
+  }
+
+  /** Return client */
+  public RxHttpClient client() {
+    return this.client;
+  }
+
+  /** GET uri (from the cache if possible) */
+  public Observable<RxHttpClientResponse> getNow(String uri) {
+    return getNow(uri,null);
+  }
+
+  /** GET uri with headers (from the cache if possible) */
+  public Observable<RxHttpClientResponse> getNow(String uri, MultiMap headers) {
+    String cc=(headers!=null)?headers.get("Cache-Control"):null;
+    if ((directive(cc,"no-cache")!=null) || (directive(cc,"no-store")!=null)) {
+      misses.incrementAndGet();
+      return fetch(uri,headers,null);
+    }
+
+    Entry entry=entries.get(uri);
+    if ((entry!=null) && entry.matches(headers)) {
+      long now=System.currentTimeMillis();
+      if (now<entry.freshUntil) {
+        hits.incrementAndGet();
+        return Observable.just(entry.response());
+      }
+      if (now<entry.staleUntil) {
+        staleHits.incrementAndGet();
+        if (!entry.revalidating)
+          revalidate(uri,headers,entry);
+        return Observable.just(entry.response());
+      }
+      if (entry.hasValidators()) {
+        revalidations.incrementAndGet();
+        return fetch(uri,headers,entry);
+      }
+    }
+
+    misses.incrementAndGet();
+    return fetch(uri,headers,null);
+  }
+
+  /** Remove uri from the cache */
+  public void invalidate(String uri) {
+    Entry entry=entries.remove(uri);
+    if (entry!=null)
+      bytes-=entry.size;
+  }
+
+  /** Remove everything */
+  public void clear() {
+    entries.clear();
+    bytes=0;
+  }
+
+  /** Return the number of entries */
+  public int size() {
+    return entries.size();
+  }
+
+  /** Return the total size of the entries (bytes) */
+  public long bytes() {
+    return this.bytes;
+  }
+
+  /** Return the number of fresh responses served from the cache */
+  public long hits() {
+    return this.hits.get();
+  }
+
+  /** Return the number of stale responses served while revalidating */
+  public long staleHits() {
+    return this.staleHits.get();
+  }
+
+  /** Return the number of requests that went to the network without a cached response */
+  public long misses() {
+    return this.misses.get();
+  }
+
+  /** Return the number of conditional requests sent */
+  public long revalidations() {
+    return this.revalidations.get();
+  }
+
+  /** Return the number of conditional requests answered with 304 */
+  public long notModified() {
+    return this.notModified.get();
+  }
+
+  /** Return the number of entries evicted to make room */
+  public long evictions() {
+    return this.evictions.get();
+  }
+
+  // Implementation
+
+  /** Revalidate in the background */
+  protected void revalidate(String uri, MultiMap headers, final Entry entry) {
+    revalidations.incrementAndGet();
+    entry.revalidating=true;
+    fetch(uri,headers,entry).subscribe(
+      new Action1<RxHttpClientResponse>() {
+        public void call(RxHttpClientResponse resp) {
+          entry.revalidating=false;
+          // Discard anything that was not stored
+          resp.asObservable().subscribe(new Action1<Buffer>() {
+            public void call(Buffer buf) {
+            }
+          });
+        }
+      },
+      new Action1<Throwable>() {
+        public void call(Throwable t) {
+          // Keep serving the stale entry until the window closes
+          entry.revalidating=false;
+        }
+      });
+  }
+
+  /** GET from the network (conditionally if entry is set), storing the response if possible */
+  protected Observable<RxHttpClientResponse> fetch(final String uri, final MultiMap headers, final Entry entry) {
+    MultiMap req=new CaseInsensitiveMultiMap();
+    if (headers!=null)
+      req.add(headers);
+    if (entry!=null) {
+      String etag=entry.headers.get("ETag");
+      if (etag!=null)
+        req.set("If-None-Match",etag);
+      String lastModified=entry.headers.get("Last-Modified");
+      if (lastModified!=null)
+        req.set("If-Modified-Since",lastModified);
+    }
+
+    final long requestTime=System.currentTimeMillis();
+    final AsyncSubject<RxHttpClientResponse> rx=AsyncSubject.create();
+    client.getNow(uri,req).subscribe(
+      new Action1<RxHttpClientResponse>() {
+        public void call(final RxHttpClientResponse resp) {
+          if ((resp.statusCode()==304) && (entry!=null)) {
+            notModified.incrementAndGet();
+            resp.asObservable().subscribe(new Action1<Buffer>() {
+              public void call(Buffer buf) {
+              }
+            });
+            refresh(entry,resp.headers(),requestTime);
+            // Re-account the merged headers, re-adding the entry if evicted (or invalidated) while revalidating
+            Entry current=entries.get(uri);
+            if ((current==null) || (current==entry)) {
+              if (current!=null) {
+                entries.remove(uri);
+                bytes-=entry.size;
+              }
+              entry.size=sizeOf(entry);
+              put(uri,entry);
+            }
+            complete(rx,entry.response());
+            return;
+          }
+
+          if (!isCacheable(resp)) {
+            complete(rx,resp);
+            return;
+          }
+
+          // Read the body (which may have no Content-length) only as far as maxEntrySize
+          final HttpClientResponse core=resp.coreHttpClientResponse();
+          final Buffer body=new Buffer();
+          core.dataHandler(new Handler<Buffer>() {
+            public void handle(Buffer buf) {
+              body.appendBuffer(buf);
+              if (body.length()<=maxEntrySize)
+                return;
+              // Too big to store so pass on what has been read and the rest
+              core.pause();
+              core.dataHandler(null);
+              core.endHandler(null);
+              core.exceptionHandler(null);
+              complete(rx,new RxHttpClientResponse(new PrefixedHttpClientResponse(core,body)));
+            }
+          });
+          core.endHandler(new Handler<Void>() {
+            public void handle(Void v) {
+              Entry stored=store(uri,headers,resp,body,requestTime);
+              complete(rx,stored.response());
+            }
+          });
+          core.exceptionHandler(new Handler<Throwable>() {
+            public void handle(Throwable t) {
+              rx.onError(t);
+            }
+          });
+        }
+      },
+      new Action1<Throwable>() {
+        public void call(Throwable t) {
+          rx.onError(t);
+        }
+      });
+    return rx;
+  }
+
+  /** Return true if the response may be stored */
+  protected boolean isCacheable(RxHttpClientResponse resp) {
+    if ((resp.statusCode()!=200) && (resp.statusCode()!=203))
+      return false;
+    if (directive(resp.headers().get("Cache-Control"),"no-store")!=null)
+      return false;
+    String vary=resp.headers().get("Vary");
+    if ((vary!=null) && vary.trim().equals("*"))
+      return false;
+    String len=resp.headers().get("Content-Length");
+    try {
+      return (len==null) || (Long.parseLong(len.trim())<=maxEntrySize);
+    }
+    catch(NumberFormatException e) {
+      return false;
+    }
+  }
+
+  /** Store response (if it fits), returning the entry */
+  protected Entry store(String uri, MultiMap headers, RxHttpClientResponse resp, Buffer body, long requestTime) {
+    Entry entry=new Entry();
+    entry.status=resp.statusCode();
+    entry.statusMessage=resp.statusMessage();
+    entry.headers=new CaseInsensitiveMultiMap().add(resp.headers());
+    entry.body=body;
+
+    String vary=resp.headers().get("Vary");
+    if (vary!=null) {
+      entry.vary=new HashMap<>();
+      for (String name : vary.split(",")) {
+        name=name.trim();
+        if (!name.isEmpty())
+          entry.vary.put(name,(headers!=null)?headers.get(name):null);
+      }
+    }
+
+    refresh(entry,null,requestTime);
+    if (body.length()>maxEntrySize)
+      return entry;
+
+    entry.size=sizeOf(entry);
+    put(uri,entry);
+    return entry;
+  }
+
+  /** Return the size of an entry (body and headers) */
+  protected static int sizeOf(Entry entry) {
+    int size=entry.body.length();
+    for (Map.Entry<String,String> header : entry.headers)
+      size+=header.getKey().length()+header.getValue().length();
+    return size;
+  }
+
+  /** Add entry, evicting others to make room */
+  protected void put(String uri, Entry entry) {
+    Entry old=entries.put(uri,entry);
+    if (old!=null)
+      bytes-=old.size;
+    bytes+=entry.size;
+
+    // Evict least recently used
+    for (Iterator<Entry> it=entries.values().iterator();(bytes>maxBytes) && it.hasNext();) {
+      Entry eldest=it.next();
+      if (eldest==entry)
+        continue;
+      it.remove();
+      bytes-=eldest.size;
+      evictions.incrementAndGet();
+    }
+  }
+
+  /** Merge any updated headers (eg from a 304) and recalculate freshness */
+  protected void refresh(Entry entry, MultiMap updated, long requestTime) {
+    if (updated!=null) {
+      for (String name : new String[] {"Cache-Control","Expires","Date","Age","ETag","Last-Modified"}) {
+        String value=updated.get(name);
+        if (value!=null)
+          entry.headers.set(name,value);
+      }
+    }
+    entry.freshUntil=requestTime+lifetime(entry.headers,requestTime);
+    entry.staleUntil=entry.freshUntil;
+    String swr=directive(entry.headers.get("Cache-Control"),"stale-while-revalidate");
+    if (swr!=null)
+      entry.staleUntil+=seconds(swr);
+  }
+
+  /** Return the freshness lifetime (ms) */
+  protected static long lifetime(MultiMap headers, long now) {
+    String cc=headers.get("Cache-Control");
+    if (directive(cc,"no-cache")!=null)
+      return 0;
+
+    long age=(headers.contains("Age"))?seconds(headers.get("Age")):0;
+    String maxAge=directive(cc,"max-age");
+    if (maxAge!=null)
+      return Math.max(0,seconds(maxAge)-age);
+
+    Date date=RxStaticFiles.parseDate(headers.get("Date"));
+    long base=(date!=null)?date.getTime():now;
+    if (headers.contains("Expires")) {
+      Date expires=RxStaticFiles.parseDate(headers.get("Expires"));
+      return (expires!=null)?Math.max(0,expires.getTime()-base-age):0;
+    }
+
+    Date lastModified=RxStaticFiles.parseDate(headers.get("Last-Modified"));
+    if (lastModified!=null)
+      return Math.max(0,Math.min(MAX_HEURISTIC_LIFETIME,(base-lastModified.getTime())/10)-age);
+    return 0;
+  }
+
+  /** Return the value of a Cache-Control directive ("" if it has none, null if absent) */
+  protected static String directive(String cacheControl, String name) {
+    if (cacheControl==null)
+      return null;
+    for (String item : cacheControl.split(",")) {
+      item=item.trim();
+      int eq=item.indexOf('=');
+      String key=(eq<0)?item:item.substring(0,eq).trim();
+      if (key.equalsIgnoreCase(name)) {
+        if (eq<0)
+          return "";
+        String value=item.substring(eq+1).trim();
+        if (value.startsWith("\"") && value.endsWith("\"") && (value.length()>1))
+          value=value.substring(1,value.length()-1);
+        return value;
+      }
+    }
+    return null;
+  }
+
+  /** Parse delta-seconds (as ms, 0 if invalid) */
+  protected static long seconds(String value) {
+    try {
+      return Math.max(0,Long.parseLong(value.trim()))*1000L;
+    }
+    catch(NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /** Emit single response */
+  protected static void complete(AsyncSubject<RxHttpClientResponse> rx, RxHttpClientResponse resp) {
+    rx.onNext(resp);
+    rx.onCompleted();
+  }
+}
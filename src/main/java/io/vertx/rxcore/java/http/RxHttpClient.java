@@ -2,11 +2,23 @@ package io.vertx.rxcore.java.http;
 
 import io.vertx.rxcore.RxSupport;
 import io.vertx.rxcore.java.impl.MemoizeHandler;
+import io.vertx.rxcore.java.impl.PoolMonitor;
+import io.vertx.rxcore.java.impl.RequestDeadline;
+import io.vertx.rxcore.java.impl.TimingWheel;
+import io.vertx.rxcore.java.timer.RxTimer;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.*;
 import rx.Observable;
+import rx.Subscriber;
 import rx.functions.Action1;
+import rx.functions.Func1;
+import rx.subjects.AsyncSubject;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /** Rx wrapper for HttpClient 
  * @author <a href="http://github.com/petermd">Peter McDonnell</a>
@@ -15,10 +27,28 @@ public class RxHttpClient {
   
   /** Nested */
   private final HttpClient core;
+
+  /** Vertx (used for deadlines) */
+  private final Vertx vertx;
+
+  /** Default deadlines (or null) */
+  private HttpDeadlines deadlines;
   
   /** Create new RxHttpClient */
   public RxHttpClient(HttpClient nested) {
+    this(nested,null);
+  }
+
+  /** Create new RxHttpClient */
+  public RxHttpClient(HttpClient nested, Vertx vertx) {
     this.core=nested;
+    this.vertx=vertx;
+  }
+
+  /** Set the deadlines for every request (requires a Vertx) */
+  public RxHttpClient setDeadlines(HttpDeadlines deadlines) {
+    this.deadlines=deadlines;
+    return this;
   }
   
   /** Return core */
@@ -30,6 +60,68 @@ public class RxHttpClient {
   public void close() {
     this.core.close();
   }
+
+  /** Record connect latencies in the pool stats
+   *
+   * <p>Vert.x does not expose its pool, so this replaces the client's (private final) pool with a proxy by
+   * reflection. Every request for a connection then goes through a reflective call. Call it before the client is
+   * used; connects before then are not in the histogram. If the pool cannot be replaced no connects are
+   * recorded.</p>
+   *
+   **/
+  public RxHttpClient monitorPool() {
+    PoolMonitor.forClient(core).monitorConnects();
+    return this;
+  }
+
+  /** Return a snapshot of the connection pool (read by reflection, the connect histogram is empty unless
+   * monitorPool() has been called)
+   **/
+  public HttpPoolStats poolStats() {
+    return PoolMonitor.forClient(core).snapshot();
+  }
+
+  /** Emit a snapshot of the connection pool every interval (ms) until unsubscribed (requires a Vertx) */
+  public Observable<HttpPoolStats> observePoolStats(long interval) {
+    if (vertx==null)
+      throw new IllegalStateException("Pool stats stream needs an RxHttpClient created with a Vertx");
+    final PoolMonitor monitor=PoolMonitor.forClient(core);
+    return new RxTimer(vertx).setPeriodic(interval).map(new Func1<Long,HttpPoolStats>() {
+      public HttpPoolStats call(Long id) {
+        return monitor.snapshot();
+      }
+    });
+  }
+
+  /** Open keep-alive connections ahead of traffic
+   *
+   * <p>Sends connections concurrent GETs of uri (eg a health check) and reads the responses, which leaves up to
+   * connections (limited by the maximum pool size) idle in the pool. Failed requests are ignored. The request is
+   * started immediately and the pool stats are emitted once every response has completed.</p>
+   *
+   **/
+  public Observable<HttpPoolStats> warmUp(int connections, String uri) {
+    final PoolMonitor monitor=PoolMonitor.forClient(core);
+    List<Observable<List<Buffer>>> reqs=new ArrayList<>();
+    for (int i=0;i<connections;i++) {
+      reqs.add(getNow(uri)
+        .flatMap(new Func1<RxHttpClientResponse,Observable<List<Buffer>>>() {
+          public Observable<List<Buffer>> call(RxHttpClientResponse resp) {
+            return resp.asObservable().toList();
+          }
+        })
+        .onErrorResumeNext(Observable.<List<Buffer>>empty()));
+    }
+
+    final AsyncSubject<HttpPoolStats> rx=AsyncSubject.create();
+    Observable.merge(reqs).toList().subscribe(new Action1<List<List<Buffer>>>() {
+      public void call(List<List<Buffer>> bodies) {
+        rx.onNext(monitor.snapshot());
+        rx.onCompleted();
+      }
+    });
+    return rx;
+  }
   
   // Rx extensions
   
@@ -56,7 +148,17 @@ public class RxHttpClient {
     return getNow(uri,null);
   }
 
-  public Observable<RxHttpClientResponse> getNow(String uri, MultiMap headers) {
+  public Observable<RxHttpClientResponse> getNow(String uri, final MultiMap headers) {
+    if (deadlines!=null) {
+      return request("GET",uri,new Action1<HttpClientRequest>() {
+        public void call(HttpClientRequest req) {
+          if (headers!=null)
+            req.headers().add(headers);
+          req.end();
+        }
+      });
+    }
+
     final MemoizeHandler<RxHttpClientResponse,HttpClientResponse> rh=new MemoizeHandler<RxHttpClientResponse,HttpClientResponse>() {
       @Override
       public void handle(HttpClientResponse r) {
@@ -67,6 +169,33 @@ public class RxHttpClient {
     return Observable.create(rh.subscribe);
   }
 
+  /** Create an Observable that executes getNow() on subscribe. Each new subscribe() will re-send the request */
+  public Observable<RxHttpClientResponse> observeGetNow(String uri) {
+    return observeGetNow(uri,null);
+  }
+
+  /** Create an Observable that executes getNow() with headers on subscribe */
+  public Observable<RxHttpClientResponse> observeGetNow(final String uri, final MultiMap headers) {
+    return Observable.create(new Observable.OnSubscribe<RxHttpClientResponse>() {
+      /** Send request for each subscription */
+      public void call(Subscriber<? super RxHttpClientResponse> subscriber) {
+        getNow(uri,headers).subscribe(subscriber);
+      }
+    });
+  }
+
+  /** Create an Observable that executes request() on subscribe. Each new subscribe() will re-send the request
+   * (so the builder must be able to build it more than once)
+   **/
+  public Observable<RxHttpClientResponse> observeRequest(final String method, final String uri, final Action1<HttpClientRequest> requestBuilder) {
+    return Observable.create(new Observable.OnSubscribe<RxHttpClientResponse>() {
+      /** Send request for each subscription */
+      public void call(Subscriber<? super RxHttpClientResponse> subscriber) {
+        request(method,uri,requestBuilder).subscribe(subscriber);
+      }
+    });
+  }
+
   public Observable<RxHttpClientResponse> options(String uri, Action1<HttpClientRequest> requestBuilder) {
     return request("OPTIONS",uri,requestBuilder);
   }
@@ -100,6 +229,17 @@ public class RxHttpClient {
   }
 
   public Observable<RxHttpClientResponse> request(String method, String uri, Action1<HttpClientRequest> requestBuilder) {
+    return request(method,uri,requestBuilder,deadlines);
+  }
+
+  /** Request with deadlines (or none if null)
+   *
+   * <p>When a deadline expires the connection is closed and the Observable (or the response body if the response
+   * has arrived) fails with {@link io.vertx.rxcore.HttpTimeoutException}. The deadlines of all the requests made
+   * from a Context share a single timing wheel.</p>
+   *
+   **/
+  public Observable<RxHttpClientResponse> request(String method, String uri, Action1<HttpClientRequest> requestBuilder, HttpDeadlines deadlines) {
     
     final MemoizeHandler<RxHttpClientResponse,HttpClientResponse> rh=new MemoizeHandler<RxHttpClientResponse,HttpClientResponse>() {
       @Override
@@ -108,7 +248,26 @@ public class RxHttpClient {
       }
     };
     
-    HttpClientRequest req=core.request(method,uri,rh);
+    HttpClientRequest req;
+    RequestDeadline deadline=null;
+    if (deadlines!=null) {
+      TimingWheel wheel;
+      try {
+        if (vertx==null)
+          throw new IllegalStateException("Deadlines need an RxHttpClient created with a Vertx");
+        wheel=TimingWheel.forContext(vertx);
+      }
+      catch(IllegalStateException e) {
+        // Request cannot be sent so trigger error on the returned observable
+        rh.fail(e);
+        return Observable.create(rh.subscribe);
+      }
+      deadline=new RequestDeadline(wheel,deadlines.connect(),deadlines.firstByte(),deadlines.total(),rh);
+      req=core.request(method,uri,deadline);
+      deadline.start(req);
+    }
+    else {
+      req=core.request(method,uri,rh);
       // if req fails, notify observers
       req.exceptionHandler(new Handler<Throwable>() {
           @Override
@@ -116,6 +275,7 @@ public class RxHttpClient {
               rh.fail(event);
           }
       });
+    }
     
     // Use the builder to create the full request (or start upload)
     // We assume builder will call request.end()
@@ -124,7 +284,10 @@ public class RxHttpClient {
     }
     catch(Exception e) {
       // Request will never be sent so trigger error on the returned observable 
-      rh.fail(e); 
+      if (deadline!=null)
+        deadline.fail(e);
+      else
+        rh.fail(e); 
     }
     
     return Observable.create(rh.subscribe);
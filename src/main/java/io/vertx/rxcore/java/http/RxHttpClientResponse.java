@@ -21,6 +21,11 @@ public class RxHttpClientResponse implements HttpClientResponse {
     this.nested=nested;
   }
   
+  /** Return core */
+  public HttpClientResponse coreHttpClientResponse() {
+    return this.nested;
+  }
+
   // Rx extensions 
   
   /** Return as Observable<Buffer> */
@@ -28,6 +33,19 @@ public class RxHttpClientResponse implements HttpClientResponse {
     return RxSupport.toObservable(nested);
   }
   
+  /** Return as Observable<Buffer> decoded according to the Content-Encoding (gzip or deflate) */
+  public Observable<Buffer> asDecodedObservable() {
+    String encoding=nested.headers().get("Content-Encoding");
+    if (encoding!=null) {
+      encoding=encoding.trim().toLowerCase();
+      if (encoding.equals("gzip") || encoding.equals("x-gzip"))
+        return asObservable().lift(RxSupport.gunzip());
+      if (encoding.equals("deflate"))
+        return asObservable().lift(RxSupport.inflate());
+    }
+    return asObservable();
+  }
+
   // HttpClientResponse implementation
   
   public int statusCode() {
@@ -0,0 +1,188 @@
+package io.vertx.rxcore.java.http;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.vertx.rxcore.RxSupport;
+import io.vertx.rxcore.java.impl.CachedHttpClientResponse;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
+import rx.Observable;
+import rx.functions.Action1;
+import rx.functions.Func1;
+import rx.subjects.AsyncSubject;
+
+/** Shares a single in-flight GET between identical requests made with an RxHttpClient
+ *
+ * <p>Requests are identical if they have the same uri and the same values for the vary headers (by default
+ * Accept, Accept-Encoding, Accept-Language, Authorization and Cookie - any other headers of a request that joins
+ * one in flight are ignored). The body of the shared response is buffered once (up to maxBodySize) and each
+ * Subscriber gets its own response whose body is a read-only view of it. Errors are passed to every request that
+ * joined. Once the response is complete the next identical request goes to the network again.</p>
+ *
+ * <p>The in-flight table is not locked, so the coalescer must only be used from the event loop of its client.
+ * The counters may be read from any thread.</p>
+ *
+ **/
+public class RxHttpCoalescer {
+
+  // Definitions
+
+  /** Default vary headers */
+  public final static String[] DEFAULT_VARY_HEADERS={"Accept","Accept-Encoding","Accept-Language","Authorization","Cookie"};
+
+  /** Default maximum body size */
+  public final static long DEFAULT_MAX_BODY_SIZE=16*1024*1024;
+
+  /** Buffered response */
+  protected static class Shared {
+
+    /** Status */
+    final int status;
+
+    /** Status message */
+    final String statusMessage;
+
+    /** Headers */
+    final MultiMap headers;
+
+    /** Body */
+    final Buffer body;
+
+    Shared(RxHttpClientResponse resp, Buffer body) {
+      this.status=resp.statusCode();
+      this.statusMessage=resp.statusMessage();
+      this.headers=new CaseInsensitiveMultiMap().add(resp.headers());
+      this.body=body;
+    }
+  }
+
+  /** Create a response for each Subscriber */
+  private final static Func1<Shared,RxHttpClientResponse> toResponse=new Func1<Shared,RxHttpClientResponse>() {
+    public RxHttpClientResponse call(Shared shared) {
+      return new RxHttpClientResponse(new CachedHttpClientResponse(shared.status,shared.statusMessage,shared.headers,shared.body));
+    }
+  };
+
+  // Instance variables
+
+  /** Client */
+  private final RxHttpClient client;
+
+  /** Vary headers */
+  private String[] varyHeaders=DEFAULT_VARY_HEADERS;
+
+  /** Maximum body size */
+  private long maxBodySize=DEFAULT_MAX_BODY_SIZE;
+
+  /** In-flight requests by key */
+  private final Map<String,AsyncSubject<Shared>> inFlight=new HashMap<>();
+
+  /** Stats */
+  private final AtomicLong requests=new AtomicLong();
+  private final AtomicLong coalesced=new AtomicLong();
+
+  // Public methods
+
+  /** Create new RxHttpCoalescer */
+  public RxHttpCoalescer(RxHttpClient client) {
+    this.client=client;
+  }
+
+  /** Set the headers that distinguish otherwise identical requests */
+  public RxHttpCoalescer setVaryHeaders(String... varyHeaders) {
+    this.varyHeaders=varyHeaders;
+    return this;
+  }
+
+  /** Set the largest body that is buffered (larger responses fail with SizeLimitExceededException) */
+  public RxHttpCoalescer setMaxBodySize(long maxBodySize) {
+    this.maxBodySize=maxBodySize;
+    return this;
+  }
+
+  /** Return client */
+  public RxHttpClient client() {
+    return this.client;
+  }
+
+  /** GET uri (sharing an identical request if one is in flight) */
+  public Observable<RxHttpClientResponse> getNow(String uri) {
+    return getNow(uri,null);
+  }
+
+  /** GET uri with headers (sharing an identical request if one is in flight) */
+  public Observable<RxHttpClientResponse> getNow(String uri, MultiMap headers) {
+    final String key=key(uri,headers);
+    AsyncSubject<Shared> shared=inFlight.get(key);
+    if (shared!=null) {
+      coalesced.incrementAndGet();
+      return shared.map(toResponse);
+    }
+
+    requests.incrementAndGet();
+    final AsyncSubject<Shared> rx=AsyncSubject.create();
+    inFlight.put(key,rx);
+    client.getNow(uri,headers).subscribe(
+      new Action1<RxHttpClientResponse>() {
+        public void call(final RxHttpClientResponse resp) {
+          resp.asObservable()
+            .lift(RxSupport.aggregateBuffers(maxBodySize))
+            .map(RxSupport.flattenBuffer)
+            .subscribe(
+              new Action1<Buffer>() {
+                public void call(Buffer body) {
+                  inFlight.remove(key);
+                  rx.onNext(new Shared(resp,body));
+                  rx.onCompleted();
+                }
+              },
+              new Action1<Throwable>() {
+                public void call(Throwable t) {
+                  inFlight.remove(key);
+                  rx.onError(t);
+                }
+              });
+        }
+      },
+      new Action1<Throwable>() {
+        public void call(Throwable t) {
+          inFlight.remove(key);
+          rx.onError(t);
+        }
+      });
+    return rx.map(toResponse);
+  }
+
+  /** Return the number of requests in flight */
+  public int inFlight() {
+    return inFlight.size();
+  }
+
+  /** Return the number of requests sent */
+  public long requests() {
+    return this.requests.get();
+  }
+
+  /** Return the number of requests that shared one in flight */
+  public long coalesced() {
+    return this.coalesced.get();
+  }
+
+  // Implementation
+
+  /** Return the key for a request */
+  protected String key(String uri, MultiMap headers) {
+    if (headers==null)
+      return uri;
+    StringBuilder sb=new StringBuilder(uri);
+    for (String name : varyHeaders) {
+      String value=headers.get(name);
+      if (value!=null)
+        sb.append('\n').append(name).append(':').append(value);
+    }
+    return sb.toString();
+  }
+}
@@ -1,6 +1,7 @@
 package io.vertx.rxcore.java.http;
 
 import io.vertx.rxcore.java.impl.*;
+import org.vertx.java.core.Vertx;
 import org.vertx.java.core.http.*;
 import rx.Observable;
 
@@ -10,9 +11,17 @@ import rx.Observable;
 public class RxHttpServer {
   
   private final HttpServer core;
+
+  /** Vertx (optional, used by requests to schedule work on the context) */
+  private final Vertx vertx;
   
   public RxHttpServer(HttpServer core) {
+    this(core,null);
+  }
+
+  public RxHttpServer(HttpServer core, Vertx vertx) {
     this.core=core;
+    this.vertx=vertx;
   }
 
   public HttpServer coreHttpServer() {
@@ -43,7 +52,7 @@ public class RxHttpServer {
             core.requestHandler(null);
           }
           @Override public RxHttpServerRequest wrap(HttpServerRequest r) {
-            return new RxHttpServerRequest(r);
+            return new RxHttpServerRequest(r,vertx);
           }
         }
     );
@@ -2,16 +2,35 @@ package io.vertx.rxcore.java.http;
 
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.security.cert.X509Certificate;
 
+import io.netty.handler.codec.http.QueryStringDecoder;
 import io.vertx.rxcore.RxSupport;
+import io.vertx.rxcore.SizeLimitExceededException;
+import io.vertx.rxcore.java.impl.BufferPool;
+import io.vertx.rxcore.java.impl.CompressOperator;
+import io.vertx.rxcore.java.impl.ResponseWriter;
+import io.vertx.rxcore.java.impl.SseEncoder;
+import io.vertx.rxcore.java.impl.SseHeartbeat;
+import io.vertx.rxcore.java.impl.SseWriter;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.Vertx;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.*;
+import org.vertx.java.core.json.JsonObject;
 import org.vertx.java.core.net.NetSocket;
 import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action1;
+import rx.functions.Func1;
+import rx.subjects.AsyncSubject;
 
 /** Rx wrapper for HttpServerRequest 
  * 
@@ -21,19 +40,319 @@ import rx.Observable;
  */
 public class RxHttpServerRequest implements HttpServerRequest {
   
+  /** Default response write queue size for respond() */
+  public static final int DEFAULT_WRITE_QUEUE_SIZE=64*1024;
+
+  /** Default size below which respond() coalesces writes */
+  public static final int DEFAULT_COALESCE_SIZE=8*1024;
+
+  /** Default Server-Sent Events heartbeat interval (ms) */
+  public static final long DEFAULT_SSE_HEARTBEAT=15000;
+
+  /** Default time a Server-Sent Events client may leave the write queue full (ms) */
+  public static final long DEFAULT_SSE_MAX_STALL=30000;
+
+  /** Url-encoded form Content-type */
+  public static final String FORM_CONTENT_TYPE="application/x-www-form-urlencoded";
+
   /** Real instance */
   private final HttpServerRequest nested;
 
+  /** Vertx (optional) */
+  private final Vertx vertx;
+
+  /** Response */
+  private final RxHttpServerResponse response;
+
+  /** Response compression (optional) */
+  private RxCompression compression;
+
+  /** Negotiated response encoding (or null) */
+  private CompressOperator.Format responseEncoding;
+
   /** Create new RxHttpServerRequest */
   protected RxHttpServerRequest(HttpServerRequest nested) {
+    this(nested,null);
+  }
+
+  /** Create new RxHttpServerRequest */
+  protected RxHttpServerRequest(HttpServerRequest nested, Vertx vertx) {
     this.nested=nested;
+    this.vertx=vertx;
+    this.response=new RxHttpServerResponse(nested.response());
   }
 
   /** Return observable for accessing the response as a stream of Buffer */
   public Observable<Buffer> asObservable() {
     return RxSupport.toObservable(nested);
   }
+
+  /** Return observable for accessing the request body as a stream of Buffer, limited to maxSize bytes
+   *
+   * <p>A declared Content-length above maxSize is rejected before anything is read, otherwise the body is streamed
+   * until more than maxSize bytes arrive. Either way the client is sent 413 (Request Entity Too Large), the
+   * connection is closed (if the server was created by RxVertx) and the Observable fails with
+   * {@link SizeLimitExceededException}.</p>
+   *
+   **/
+  public Observable<Buffer> asObservable(long maxSize) {
+    long declared=contentLength();
+    if (declared>maxSize) {
+      reject(413,"Request Entity Too Large");
+      return Observable.error(new SizeLimitExceededException(maxSize,declared));
+    }
+    return asObservable().lift(RxSupport.limitBuffers(maxSize)).doOnError(new Action1<Throwable>() {
+      public void call(Throwable t) {
+        if (t instanceof SizeLimitExceededException)
+          reject(413,"Request Entity Too Large");
+      }
+    });
+  }
+
+  /** Return the request body as a single Buffer, limited to maxSize bytes (see {@link #asObservable(long)}) */
+  public Observable<Buffer> asBody(long maxSize) {
+    return asObservable(maxSize).lift(RxSupport.aggregateBuffers(Long.MAX_VALUE));
+  }
+
+  /** Return the JSON request body with one item per object, limited to maxSize bytes (see {@link #asObservable(long)})
+   *
+   * <p>Single objects, NDJSON and top-level arrays are decoded as they stream in. Requests with a Content-type other
+   * than JSON or NDJSON are rejected with 415 (Unsupported Media Type).</p>
+   *
+   **/
+  public Observable<JsonObject> asJson(long maxSize) {
+    String contentType=mediaType();
+    if ((contentType!=null) && !contentType.endsWith("json")) {
+      reject(415,"Unsupported Media Type");
+      return Observable.error(new IllegalArgumentException("Unsupported content type (expected=json,contentType="+contentType+")"));
+    }
+    return asObservable(maxSize).lift(RxSupport.decodeJsonStream(maxSize));
+  }
+
+  /** Return the url-encoded form attributes, limited to maxSize bytes (see {@link #asObservable(long)})
+   *
+   * <p>Requests with a Content-type other than application/x-www-form-urlencoded are rejected with 415 (Unsupported
+   * Media Type).</p>
+   *
+   **/
+  public Observable<MultiMap> asForm(long maxSize) {
+    String contentType=mediaType();
+    if ((contentType!=null) && !contentType.equals(FORM_CONTENT_TYPE)) {
+      reject(415,"Unsupported Media Type");
+      return Observable.error(new IllegalArgumentException("Unsupported content type (expected="+FORM_CONTENT_TYPE+",contentType="+contentType+")"));
+    }
+
+    final Charset charset=charset(StandardCharsets.UTF_8);
+    return asBody(maxSize).map(new Func1<Buffer,MultiMap>() {
+      public MultiMap call(Buffer body) {
+        QueryStringDecoder qsd=new QueryStringDecoder(body.toString(charset.name()),charset,false);
+        MultiMap form=new CaseInsensitiveMultiMap();
+        for (Map.Entry<String,List<String>> param : qsd.parameters().entrySet()) {
+          form.add(param.getKey(),param.getValue());
+        }
+        return form;
+      }
+    });
+  }
   
+  /** Return observable for the multipart uploads of the request
+   *
+   * <p>Each upload is emitted as soon as its headers are decoded and exposes a backpressured body that is limited to
+   * maxUploadSize bytes (see {@link RxUpload}). The whole request is limited to maxRequestSize bytes (including any
+   * form attributes). Exceeding either limit sends 413 to the client, closes the connection (if the server was created
+   * by RxVertx) and fails the Observable and any active uploads with {@link SizeLimitExceededException}.</p>
+   *
+   **/
+  public Observable<RxUpload> asUploads(final long maxUploadSize, final long maxRequestSize) {
+    long declared=contentLength();
+    if (declared>maxRequestSize) {
+      reject(413,"Request Entity Too Large");
+      return Observable.error(new SizeLimitExceededException(maxRequestSize,declared));
+    }
+
+    return Observable.create(new Observable.OnSubscribe<RxUpload>() {
+      public void call(final Subscriber<? super RxUpload> sub) {
+        final List<RxUpload> uploads=new ArrayList<>();
+        final Action1<Throwable> fail=new Action1<Throwable>() {
+          public void call(Throwable t) {
+            for (RxUpload upload : uploads)
+              upload.fail(t);
+            sub.onError(t);
+          }
+        };
+
+        nested.expectMultiPart(true);
+        nested.uploadHandler(new Handler<HttpServerFileUpload>() {
+          public void handle(HttpServerFileUpload upload) {
+            RxUpload rxUpload=new RxUpload(RxHttpServerRequest.this,upload,vertx,maxUploadSize);
+            uploads.add(rxUpload);
+            sub.onNext(rxUpload);
+          }
+        });
+        nested.dataHandler(new Handler<Buffer>() {
+
+          /** Total received */
+          private long total;
+
+          public void handle(Buffer data) {
+            if (total>maxRequestSize)
+              return;
+            total+=data.length();
+            if (total>maxRequestSize) {
+              reject(413,"Request Entity Too Large");
+              fail.call(new SizeLimitExceededException(maxRequestSize,total));
+            }
+          }
+        });
+        nested.exceptionHandler(new Handler<Throwable>() {
+          public void handle(Throwable t) {
+            fail.call(t);
+          }
+        });
+        nested.endHandler(new Handler<Void>() {
+          public void handle(Void v) {
+            sub.onCompleted();
+          }
+        });
+      }
+    });
+  }
+
+  /** Stream the Observable as the response body
+   *
+   * <p>The response is chunked (unless Content-length has been set) and only as much of the source is requested as
+   * the response write queue ({@link #DEFAULT_WRITE_QUEUE_SIZE}) accepts, resuming on drain. Writes smaller than
+   * {@link #DEFAULT_COALESCE_SIZE} are coalesced (until the end of the event loop tick if the server was created by
+   * RxVertx). The response is ended on completion and the connection is closed on error, so the client never
+   * mistakes a partial body for a complete one.</p>
+   *
+   * <p>Returns the total bytes written on completion</p>
+   *
+   **/
+  public Observable<Long> respond(Observable<Buffer> src) {
+    return respond(src,DEFAULT_WRITE_QUEUE_SIZE,DEFAULT_COALESCE_SIZE);
+  }
+
+  /** Stream the Observable as the response body with the given write queue and coalesce sizes */
+  public Observable<Long> respond(Observable<Buffer> src, int writeQueueSize, int coalesceSize) {
+    if (compression!=null)
+      src=compression.encode(this,src);
+    AsyncSubject<Long> rx=AsyncSubject.create();
+    src.subscribe(new ResponseWriter(response,vertx,writeQueueSize,coalesceSize,rx));
+    return rx;
+  }
+
+  /** Stream the Observable as Server-Sent Events
+   *
+   * <p>Each item is encoded to text and sent as one event (a <code>data:</code> field per line). The frames are
+   * built in pooled Buffers and events emitted in the same event loop tick are coalesced into a single write. A
+   * heartbeat comment is sent if nothing else has been for {@link #DEFAULT_SSE_HEARTBEAT}, and a client that leaves
+   * the write queue full for {@link #DEFAULT_SSE_MAX_STALL} is disconnected. Heartbeats are driven by a single
+   * timer per event loop (if the server was created by RxVertx).</p>
+   *
+   * <p>The source is unsubscribed when the client disconnects. Returns the total bytes written on completion.</p>
+   *
+   **/
+  public <T> Observable<Long> respondSse(Observable<T> src, Func1<? super T,String> encoder) {
+    return respondSse(src,encoder,DEFAULT_SSE_HEARTBEAT,DEFAULT_SSE_MAX_STALL);
+  }
+
+  /** Stream the Observable as Server-Sent Events with the given heartbeat interval and maximum stall (ms) */
+  public <T> Observable<Long> respondSse(Observable<T> src, Func1<? super T,String> encoder, long heartbeatInterval, long maxStall) {
+    response.putHeader("Content-Type","text/event-stream; charset=utf-8");
+    response.putHeader("Cache-Control","no-cache");
+
+    BufferPool pool=(vertx!=null)?BufferPool.forContext(vertx):null;
+    AsyncSubject<Long> rx=AsyncSubject.create();
+    SseWriter writer=new SseWriter(response,vertx,DEFAULT_WRITE_QUEUE_SIZE,DEFAULT_COALESCE_SIZE,heartbeatInterval,maxStall,rx);
+    writer.pooled(pool);
+    writer.open();
+    if (vertx!=null)
+      SseHeartbeat.forContext(vertx).add(writer);
+    // Frames large enough to be written directly are not pooled as the writer only releases the ones it coalesces
+    src.map(new SseEncoder<T>(encoder,pool,vertx,DEFAULT_COALESCE_SIZE)).subscribe(writer);
+    return rx;
+  }
+
+  /** Return the response encoding negotiated by {@link RxCompression} (or null) */
+  public CompressOperator.Format responseEncoding() {
+    return this.responseEncoding;
+  }
+
+  // Implementation
+
+  /** Compress bodies sent with respond() (see {@link RxCompression}) */
+  protected void setResponseCompression(RxCompression compression, CompressOperator.Format encoding) {
+    this.compression=compression;
+    this.responseEncoding=encoding;
+  }
+
+  /** Return the declared Content-length (or -1) */
+  protected long contentLength() {
+    String len=nested.headers().get("Content-Length");
+    if (len==null)
+      return -1;
+    try {
+      return Long.parseLong(len.trim());
+    }
+    catch(NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /** Return the Content-type without parameters (or null) */
+  protected String mediaType() {
+    String contentType=nested.headers().get("Content-Type");
+    if (contentType==null)
+      return null;
+    int sep=contentType.indexOf(';');
+    return ((sep<0)?contentType:contentType.substring(0,sep)).trim().toLowerCase();
+  }
+
+  /** Return the Content-type charset (or defaultCharset) */
+  protected Charset charset(Charset defaultCharset) {
+    String contentType=nested.headers().get("Content-Type");
+    if (contentType==null)
+      return defaultCharset;
+    for (String param : contentType.split(";")) {
+      param=param.trim();
+      if (param.regionMatches(true,0,"charset=",0,8)) {
+        try {
+          return Charset.forName(param.substring(8).replace("\"",""));
+        }
+        catch(IllegalArgumentException e) {
+          return defaultCharset;
+        }
+      }
+    }
+    return defaultCharset;
+  }
+
+  /** Reject the request body with status and close the connection
+   *
+   * <p>The close is deferred to the end of the event loop tick so the response is flushed first. Any body that is
+   * still arriving is discarded.</p>
+   *
+   **/
+  protected void reject(int status, String msg) {
+    try {
+      response.setStatusCode(status).setStatusMessage(msg).putHeader("Connection","close").end();
+    }
+    catch(IllegalStateException e) {
+      // Response already sent
+      return;
+    }
+
+    nested.resume();
+    if (vertx!=null) {
+      vertx.runOnContext(new Handler<Void>() {
+        public void handle(Void v) {
+          response.close();
+        }
+      });
+    }
+  }
+
   // HttpServerRequest implementation
   
   public HttpVersion version() {
@@ -56,8 +375,8 @@ public class RxHttpServerRequest implements HttpServerRequest {
     return nested.query();
   }
 
-  public HttpServerResponse response() {
-    return nested.response();
+  public RxHttpServerResponse response() {
+    return response;
   }
 
   public MultiMap headers() {
@@ -98,7 +417,7 @@ public class RxHttpServerRequest implements HttpServerRequest {
   }
 
   public HttpServerRequest uploadHandler(Handler<HttpServerFileUpload> uploadHandler) {
-    // TODO: Provide upload(Observable<Buffer>)?
+    // Raw access (see asUploads)
     return nested.uploadHandler(uploadHandler);
   }
 
@@ -0,0 +1,306 @@
+package io.vertx.rxcore.java.http;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpServerResponse;
+import rx.Observable;
+import rx.subjects.AsyncSubject;
+
+import java.nio.charset.Charset;
+
+/** Rx wrapper for HttpServerResponse
+ *
+ * <p>Tracks when the response is finished (ended, file sent or connection closed) so the request can be accounted
+ * for by operators on the request stream</p>
+ *
+ * <p>When a HEAD request is answered by a GET route (see {@link RxRouter}) the body is counted rather than sent
+ * and the response ends with its Content-Length (unless one was set). Files are not read, so sendFile() only sends
+ * the headers.</p>
+ *
+ **/
+public class RxHttpServerResponse implements HttpServerResponse {
+
+  // Instance variables
+
+  /** Real instance */
+  private final HttpServerResponse nested;
+
+  /** Finished */
+  private final AsyncSubject<Integer> finished=AsyncSubject.create();
+
+  /** Done */
+  private boolean done;
+
+  /** Close handler */
+  private Handler<Void> closeHandler;
+
+  /** Body discarded (HEAD answered by a GET route) */
+  private boolean discardBody;
+
+  /** Chunked (while the body is discarded) */
+  private boolean chunked;
+
+  /** Bytes discarded */
+  private long discarded;
+
+  // Public methods
+
+  /** Create new RxHttpServerResponse */
+  protected RxHttpServerResponse(HttpServerResponse nested) {
+    this.nested=nested;
+    nested.closeHandler(new Handler<Void>() {
+      public void handle(Void v) {
+        finish();
+        if (closeHandler!=null)
+          closeHandler.handle(null);
+      }
+    });
+  }
+
+  /** Return observable that emits the status code once the response is ended (or the connection is closed) */
+  public Observable<Integer> asFinishedObservable() {
+    return finished;
+  }
+
+  /** Return true if the response has been ended (or the connection closed) */
+  public boolean isFinished() {
+    return this.done;
+  }
+
+  // Implementation
+
+  /** Count the body rather than send it */
+  void discardBody() {
+    this.discardBody=true;
+  }
+
+  /** Count discarded bytes, returning true if discarding */
+  protected boolean discard(long length) {
+    if (discardBody)
+      discarded+=length;
+    return discardBody;
+  }
+
+  /** End a discarded body with its length */
+  protected void endDiscarded() {
+    if (!nested.headers().contains("Content-Length"))
+      nested.putHeader("Content-Length",Long.toString(discarded));
+    nested.end();
+    finish();
+  }
+
+  /** Mark finished */
+  protected void finish() {
+    if (done)
+      return;
+    done=true;
+    finished.onNext(nested.getStatusCode());
+    finished.onCompleted();
+  }
+
+  /** Return handler that marks finished and then calls handler */
+  protected Handler<AsyncResult<Void>> finishing(final Handler<AsyncResult<Void>> handler) {
+    return new Handler<AsyncResult<Void>>() {
+      public void handle(AsyncResult<Void> res) {
+        finish();
+        if (handler!=null)
+          handler.handle(res);
+      }
+    };
+  }
+
+  // HttpServerResponse implementation
+
+  public int getStatusCode() {
+    return nested.getStatusCode();
+  }
+
+  public RxHttpServerResponse setStatusCode(int statusCode) {
+    nested.setStatusCode(statusCode);
+    return this;
+  }
+
+  public String getStatusMessage() {
+    return nested.getStatusMessage();
+  }
+
+  public RxHttpServerResponse setStatusMessage(String statusMessage) {
+    nested.setStatusMessage(statusMessage);
+    return this;
+  }
+
+  public RxHttpServerResponse setChunked(boolean chunked) {
+    // A chunked HEAD response would still send the last chunk
+    if (discardBody)
+      this.chunked=chunked;
+    else
+      nested.setChunked(chunked);
+    return this;
+  }
+
+  public boolean isChunked() {
+    return discardBody?chunked:nested.isChunked();
+  }
+
+  public MultiMap headers() {
+    return nested.headers();
+  }
+
+  public RxHttpServerResponse putHeader(String name, String value) {
+    nested.putHeader(name,value);
+    return this;
+  }
+
+  public RxHttpServerResponse putHeader(CharSequence name, CharSequence value) {
+    nested.putHeader(name,value);
+    return this;
+  }
+
+  public RxHttpServerResponse putHeader(String name, Iterable<String> values) {
+    nested.putHeader(name,values);
+    return this;
+  }
+
+  public RxHttpServerResponse putHeader(CharSequence name, Iterable<CharSequence> values) {
+    nested.putHeader(name,values);
+    return this;
+  }
+
+  public MultiMap trailers() {
+    return nested.trailers();
+  }
+
+  public RxHttpServerResponse putTrailer(String name, String value) {
+    nested.putTrailer(name,value);
+    return this;
+  }
+
+  public RxHttpServerResponse putTrailer(CharSequence name, CharSequence value) {
+    nested.putTrailer(name,value);
+    return this;
+  }
+
+  public RxHttpServerResponse putTrailer(String name, Iterable<String> values) {
+    nested.putTrailer(name,values);
+    return this;
+  }
+
+  public RxHttpServerResponse putTrailer(CharSequence name, Iterable<CharSequence> values) {
+    nested.putTrailer(name,values);
+    return this;
+  }
+
+  public RxHttpServerResponse closeHandler(Handler<Void> handler) {
+    this.closeHandler=handler;
+    return this;
+  }
+
+  public RxHttpServerResponse write(String chunk, String enc) {
+    if (!discard(chunk.getBytes(Charset.forName(enc)).length))
+      nested.write(chunk,enc);
+    return this;
+  }
+
+  public RxHttpServerResponse write(String chunk) {
+    if (!discard(chunk.getBytes(Charset.forName("UTF-8")).length))
+      nested.write(chunk);
+    return this;
+  }
+
+  public void end(String chunk) {
+    if (discardBody) {
+      write(chunk);
+      endDiscarded();
+      return;
+    }
+    nested.end(chunk);
+    finish();
+  }
+
+  public void end(String chunk, String enc) {
+    if (discardBody) {
+      write(chunk,enc);
+      endDiscarded();
+      return;
+    }
+    nested.end(chunk,enc);
+    finish();
+  }
+
+  public void end(Buffer chunk) {
+    if (discardBody) {
+      write(chunk);
+      endDiscarded();
+      return;
+    }
+    nested.end(chunk);
+    finish();
+  }
+
+  public void end() {
+    if (discardBody) {
+      endDiscarded();
+      return;
+    }
+    nested.end();
+    finish();
+  }
+
+  public RxHttpServerResponse sendFile(String filename) {
+    return sendFile(filename,(Handler<AsyncResult<Void>>)null);
+  }
+
+  public RxHttpServerResponse sendFile(String filename, String notFoundFile) {
+    return sendFile(filename,notFoundFile,null);
+  }
+
+  public RxHttpServerResponse sendFile(String filename, Handler<AsyncResult<Void>> resultHandler) {
+    if (discardBody)
+      endDiscarded();
+    else
+      nested.sendFile(filename,finishing(resultHandler));
+    return this;
+  }
+
+  public RxHttpServerResponse sendFile(String filename, String notFoundFile, Handler<AsyncResult<Void>> resultHandler) {
+    if (discardBody)
+      endDiscarded();
+    else
+      nested.sendFile(filename,notFoundFile,finishing(resultHandler));
+    return this;
+  }
+
+  public void close() {
+    nested.close();
+    finish();
+  }
+
+  // WriteStream implementation
+
+  public RxHttpServerResponse write(Buffer data) {
+    if (!discard(data.length()))
+      nested.write(data);
+    return this;
+  }
+
+  public RxHttpServerResponse setWriteQueueMaxSize(int maxSize) {
+    nested.setWriteQueueMaxSize(maxSize);
+    return this;
+  }
+
+  public boolean writeQueueFull() {
+    return nested.writeQueueFull();
+  }
+
+  public RxHttpServerResponse drainHandler(Handler<Void> handler) {
+    nested.drainHandler(handler);
+    return this;
+  }
+
+  public RxHttpServerResponse exceptionHandler(Handler<Throwable> handler) {
+    nested.exceptionHandler(handler);
+    return this;
+  }
+}
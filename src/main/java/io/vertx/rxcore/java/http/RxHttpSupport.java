@@ -17,14 +17,19 @@ public class RxHttpSupport {
 
   // Server
   
-  public static Func1<HttpServerRequest,Observable<Buffer>> decodeBody=new Func1<HttpServerRequest,Observable<Buffer>>() {
-    public Observable<Buffer> call(HttpServerRequest httpReq) {
-      // Must use Rx methods to access stream as Observable
-      assert(httpReq instanceof RxHttpServerRequest);
-      
-      return ((RxHttpServerRequest)httpReq).asObservable().reduce(new Buffer(),RxSupport.mergeBuffers);
-    }
-  };
+  public static Func1<HttpServerRequest,Observable<Buffer>> decodeBody=decodeBody(Long.MAX_VALUE);
+
+  /** Decode the request body into a single Buffer (rejected with 413 and fails with SizeLimitExceededException above maxSize) */
+  public static Func1<HttpServerRequest,Observable<Buffer>> decodeBody(final long maxSize) {
+    return new Func1<HttpServerRequest,Observable<Buffer>>() {
+      public Observable<Buffer> call(HttpServerRequest httpReq) {
+        // Must use Rx methods to access stream as Observable
+        assert(httpReq instanceof RxHttpServerRequest);
+
+        return ((RxHttpServerRequest)httpReq).asBody(maxSize);
+      }
+    };
+  }
   
   // Client
   
@@ -35,19 +40,29 @@ public class RxHttpSupport {
     return uploadJson(src,"utf8");
   }
 
-  /** Create uploader for JsonObject */
+  /** Create uploader for JsonObject (encoded straight into the request Buffer) */
   public static Action1<HttpClientRequest> uploadJson(JsonObject src, String charset) throws UnsupportedEncodingException {
     String contentType="text/json;charset="+charset;
-    return uploadBody(contentType,src.encode().getBytes(charset));    
+    try {
+      return uploadBody(contentType,RxSupport.encodeJson(charset).call(src));
+    }
+    catch(IllegalArgumentException e) {
+      throw new UnsupportedEncodingException(charset);
+    }
   }
   
   /** Create uploader for byte array */
   public static Action1<HttpClientRequest> uploadBody(final String contentType, final byte[] src) {
+    return uploadBody(contentType,new Buffer(src));
+  }
+
+  /** Create uploader for Buffer */
+  public static Action1<HttpClientRequest> uploadBody(final String contentType, final Buffer src) {
     return new Action1<HttpClientRequest>() {
       public void call(HttpClientRequest httpReq) {
         httpReq.putHeader("Content-type",contentType);
-        httpReq.putHeader("Content-length",Integer.toString(src.length));
-        httpReq.write(new Buffer(src));
+        httpReq.putHeader("Content-length",Integer.toString(src.length()));
+        httpReq.write(src);
         httpReq.end();
       }
     };
@@ -71,25 +86,47 @@ public class RxHttpSupport {
   
   /** Convert the response to an Observable<Buffer> with single body */
   public static Func1<RxHttpClientResponse, Observable<Buffer>> downloadBody() {
+    return downloadBody(Long.MAX_VALUE);
+  }
+
+  /** Convert the response to an Observable<Buffer> with single body (fails with SizeLimitExceededException above maxSize) */
+  public static Func1<RxHttpClientResponse, Observable<Buffer>> downloadBody(final long maxSize) {
     return new Func1<RxHttpClientResponse, Observable<Buffer>>() {
       public Observable<Buffer> call(RxHttpClientResponse httpResp) {
 
         checkResponse(httpResp);
         
-        return httpResp.asObservable().reduce(new Buffer(),RxSupport.mergeBuffers);
+        return httpResp.asObservable().lift(RxSupport.aggregateBuffers(maxSize));
       }
     };
   }
   
   /** Convert the response to an Observable<JsonObject> with single body */
   public static Func1<RxHttpClientResponse, Observable<JsonObject>> downloadJson() {
+    return downloadJson(Long.MAX_VALUE);
+  }
+
+  /** Convert the response to an Observable<JsonObject> with single body (fails with SizeLimitExceededException above maxSize) */
+  public static Func1<RxHttpClientResponse, Observable<JsonObject>> downloadJson(final long maxSize) {
     return new Func1<RxHttpClientResponse, Observable<JsonObject>>() {
       public Observable<JsonObject> call(RxHttpClientResponse httpResp) {
 
         checkResponse(httpResp);
         
         // TODO: Extract charset from Content-type
-        return httpResp.asObservable().reduce(new Buffer(),RxSupport.mergeBuffers).map(RxSupport.decodeJson("utf8"));
+        return httpResp.asObservable().lift(RxSupport.aggregateBuffers(maxSize)).map(RxSupport.decodeJson("utf8"));
+      }
+    };
+  }
+
+  /** Convert the response to an Observable<JsonObject> with one item per element (NDJSON or top-level array) */
+  public static Func1<RxHttpClientResponse, Observable<JsonObject>> downloadJsonStream() {
+    return new Func1<RxHttpClientResponse, Observable<JsonObject>>() {
+      public Observable<JsonObject> call(RxHttpClientResponse httpResp) {
+
+        checkResponse(httpResp);
+
+        return httpResp.asObservable().lift(RxSupport.decodeJsonStream());
       }
     };
   }
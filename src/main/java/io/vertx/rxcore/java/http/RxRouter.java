@@ -0,0 +1,399 @@
+package io.vertx.rxcore.java.http;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.vertx.rxcore.java.impl.SingleSubscriptionHandler;
+import rx.Observable;
+import rx.functions.Action1;
+
+/** Router that dispatches an RxHttpServer request stream to an Observable per route
+ *
+ * <p>Route patterns are made of literal segments, <code>:name</code> segments that capture a single path segment
+ * and an optional trailing <code>*</code> (or <code>*name</code>) that captures the rest of the path. The patterns
+ * are compiled into a trie of segments, so a request is matched by walking its path once without splitting it.
+ * Literal segments take priority over captures. Captured values are decoded and added to the request params()
+ * (the wildcard under "*" unless named).</p>
+ *
+ * <p>If the route for a literal segment does not accept the method, captures and wildcards are tried as well.
+ * HEAD requests without a HEAD route are passed to the GET route, whose response body is then discarded (only its
+ * length is sent). Requests whose path matches but whose method does not are answered with 405 (and Allow, which
+ * lists HEAD wherever GET is allowed). Anything else is
+ * passed to {@link #unmatched()} or answered with 404 if that has no Subscriber. Each route has a single
+ * Subscriber, like {@link RxHttpServer#http()}.</p>
+ *
+ * <p>The source is subscribed straight away, so declare the routes before the server starts listening. Matching
+ * uses shared scratch space, so a router must only be used by a single server (event loop).</p>
+ *
+ **/
+public class RxRouter {
+
+  // Definitions
+
+  /** Route handler */
+  protected static class Route extends SingleSubscriptionHandler<RxHttpServerRequest,RxHttpServerRequest> {
+
+    /** Return true if subscribed */
+    public boolean isSubscribed() {
+      return getSubscriber()!=null;
+    }
+
+    /** Fail the active subscription */
+    public void fail(Throwable t) {
+      fireError(t);
+    }
+  }
+
+  /** Trie node */
+  protected static class Node {
+
+    /** Literal child keys (open addressing, length is a power of two) */
+    private String[] keys=new String[4];
+
+    /** Literal child key hashes */
+    private int[] hashes=new int[4];
+
+    /** Literal children */
+    private Node[] children=new Node[4];
+
+    /** Number of literal children */
+    private int size;
+
+    /** Capture child */
+    private Node param;
+
+    /** Capture name */
+    private String paramName;
+
+    /** Wildcard name */
+    private String wildcardName;
+
+    /** Routes by method (null key for any method) */
+    private Map<String,Route> routes;
+
+    /** Wildcard routes by method (null key for any method) */
+    private Map<String,Route> wildcardRoutes;
+
+    /** Return literal child (or null) */
+    public Node child(String path, int start, int end, int hash) {
+      int mask=keys.length-1;
+      for (int i=hash&mask;keys[i]!=null;i=(i+1)&mask) {
+        if ((hashes[i]==hash) && (keys[i].length()==end-start) && path.regionMatches(start,keys[i],0,end-start))
+          return children[i];
+      }
+      return null;
+    }
+
+    /** Return literal child (created if required) */
+    public Node addChild(String key) {
+      Node child=child(key,0,key.length(),key.hashCode());
+      if (child!=null)
+        return child;
+
+      if ((size+1)*2>keys.length)
+        grow();
+
+      child=new Node();
+      put(key,child);
+      return child;
+    }
+
+    /** Insert */
+    private void put(String key, Node child) {
+      int mask=keys.length-1;
+      int i=key.hashCode()&mask;
+      while (keys[i]!=null)
+        i=(i+1)&mask;
+      keys[i]=key;
+      hashes[i]=key.hashCode();
+      children[i]=child;
+      size++;
+    }
+
+    /** Double the table */
+    private void grow() {
+      String[] oldKeys=keys;
+      Node[] oldChildren=children;
+      keys=new String[oldKeys.length*2];
+      hashes=new int[oldKeys.length*2];
+      children=new Node[oldKeys.length*2];
+      size=0;
+      for (int i=0;i<oldKeys.length;i++) {
+        if (oldKeys[i]!=null)
+          put(oldKeys[i],oldChildren[i]);
+      }
+    }
+  }
+
+  // Instance variables
+
+  /** Root */
+  private final Node root=new Node();
+
+  /** Unmatched requests */
+  private final Route unmatched=new Route();
+
+  /** Capture offsets (start,end pairs) of the current match */
+  private int[] captures=new int[16];
+
+  /** Capture nodes of the current match */
+  private Node[] captureNodes=new Node[8];
+
+  /** Methods of the routes that matched the path but not the method */
+  private final Set<String> allowed=new TreeSet<>();
+
+  // Public methods
+
+  /** Create new RxRouter */
+  public RxRouter(Observable<RxHttpServerRequest> src) {
+    src.subscribe(
+      new Action1<RxHttpServerRequest>() {
+        public void call(RxHttpServerRequest req) {
+          dispatch(req);
+        }
+      },
+      new Action1<Throwable>() {
+        public void call(Throwable t) {
+          unmatched.fail(t);
+        }
+      });
+  }
+
+  /** Return observable for requests matching method (or any method if null) and pattern */
+  public Observable<RxHttpServerRequest> route(String method, String pattern) {
+    Node node=root;
+    boolean wildcard=false;
+    int pos=0;
+    while (pos<pattern.length()) {
+      int end=pattern.indexOf('/',pos);
+      if (end<0)
+        end=pattern.length();
+      if (end>pos) {
+        if (wildcard)
+          throw new IllegalArgumentException("Wildcard must be the last segment (pattern="+pattern+")");
+
+        String segment=pattern.substring(pos,end);
+        if (segment.charAt(0)=='*') {
+          String name=(segment.length()>1)?segment.substring(1):"*";
+          if ((node.wildcardName!=null) && !node.wildcardName.equals(name))
+            throw new IllegalArgumentException("Conflicting wildcard name (pattern="+pattern+",existing="+node.wildcardName+")");
+          node.wildcardName=name;
+          wildcard=true;
+        }
+        else if (segment.charAt(0)==':') {
+          String name=segment.substring(1);
+          if (node.param==null) {
+            node.param=new Node();
+            node.paramName=name;
+          }
+          else if (!node.paramName.equals(name)) {
+            throw new IllegalArgumentException("Conflicting parameter name (pattern="+pattern+",existing="+node.paramName+")");
+          }
+          node=node.param;
+        }
+        else {
+          node=node.addChild(segment);
+        }
+      }
+      pos=end+1;
+    }
+
+    if (wildcard) {
+      if (node.wildcardRoutes==null)
+        node.wildcardRoutes=new HashMap<>();
+      return Observable.create(addRoute(node.wildcardRoutes,method,pattern));
+    }
+    if (node.routes==null)
+      node.routes=new HashMap<>();
+    return Observable.create(addRoute(node.routes,method,pattern));
+  }
+
+  /** Return observable for GET requests matching pattern */
+  public Observable<RxHttpServerRequest> get(String pattern) {
+    return route("GET",pattern);
+  }
+
+  /** Return observable for POST requests matching pattern */
+  public Observable<RxHttpServerRequest> post(String pattern) {
+    return route("POST",pattern);
+  }
+
+  /** Return observable for PUT requests matching pattern */
+  public Observable<RxHttpServerRequest> put(String pattern) {
+    return route("PUT",pattern);
+  }
+
+  /** Return observable for DELETE requests matching pattern */
+  public Observable<RxHttpServerRequest> delete(String pattern) {
+    return route("DELETE",pattern);
+  }
+
+  /** Return observable for requests that match no route (otherwise they are answered with 404) */
+  public Observable<RxHttpServerRequest> unmatched() {
+    return Observable.create(unmatched);
+  }
+
+  // Implementation
+
+  /** Add route */
+  protected Route addRoute(Map<String,Route> routes, String method, String pattern) {
+    String key=(method!=null)?method.toUpperCase():null;
+    if (routes.containsKey(key))
+      throw new IllegalArgumentException("Route already defined (method="+method+",pattern="+pattern+")");
+    Route route=new Route();
+    routes.put(key,route);
+    return route;
+  }
+
+  /** Dispatch request */
+  protected void dispatch(RxHttpServerRequest req) {
+    String path=req.path();
+    String method=req.method();
+    allowed.clear();
+    Map<String,Route> routes=match(root,path,0,0,method);
+
+    // Answer HEAD with the GET route (without the body)
+    if ((routes==null) && method.equals("HEAD") && allowed.contains("GET")) {
+      method="GET";
+      routes=match(root,path,0,0,method);
+      req.response().discardBody();
+    }
+
+    if (routes==null) {
+      if (allowed.contains("GET"))
+        allowed.add("HEAD");
+      if (allowed.isEmpty()) {
+        notFound(req);
+        return;
+      }
+      req.response()
+        .setStatusCode(405)
+        .setStatusMessage("Method Not Allowed")
+        .putHeader("Allow",join(allowed))
+        .end();
+      return;
+    }
+
+    Route route=routes.get(method);
+    if (route==null)
+      route=routes.get(null);
+
+    // Copy the captures of the match into the params (terminated by a null node)
+    for (int i=0;captureNodes[i]!=null;i++) {
+      Node node=captureNodes[i];
+      String name=(captures[i*2+1]<0)?node.wildcardName:node.paramName;
+      int end=(captures[i*2+1]<0)?path.length():captures[i*2+1];
+      req.params().add(name,QueryStringDecoder.decodeComponent(path.substring(captures[i*2],end)));
+    }
+
+    if (!route.isSubscribed()) {
+      notFound(req);
+      return;
+    }
+    route.handle(req);
+  }
+
+  /** Match path from pos against node, returning the routes that accept method (or null)
+   *
+   * <p>Captures are recorded from index depth. Literals are tried before captures, and captures before the
+   * wildcard. The methods of routes that match the path but not the method are added to allowed.</p>
+   *
+   **/
+  protected Map<String,Route> match(Node node, String path, int pos, int depth, String method) {
+    // Skip empty segments
+    while ((pos<path.length()) && (path.charAt(pos)=='/'))
+      pos++;
+
+    if (pos>=path.length()) {
+      captureNodes[depth]=null;
+      if (accepts(node.routes,method))
+        return node.routes;
+      if (accepts(node.wildcardRoutes,method))
+        return capture(node,pos,-1,depth,node.wildcardRoutes);
+      return null;
+    }
+
+    // Next segment (and its hash)
+    int end=pos;
+    int hash=0;
+    for (;end<path.length();end++) {
+      char c=path.charAt(end);
+      if (c=='/')
+        break;
+      hash=31*hash+c;
+    }
+
+    Map<String,Route> routes;
+    if (node.size>0) {
+      Node child=node.child(path,pos,end,hash);
+      if ((child!=null) && ((routes=match(child,path,end,depth,method))!=null))
+        return routes;
+    }
+    if (node.param!=null) {
+      ensureCapacity(depth+1);
+      if ((routes=match(node.param,path,end,depth+1,method))!=null)
+        return capture(node,pos,end,depth,routes);
+    }
+    if (accepts(node.wildcardRoutes,method))
+      return capture(node,pos,-1,depth,node.wildcardRoutes);
+    return null;
+  }
+
+  /** Return true if routes (which may be null) accept method, otherwise add their methods to allowed */
+  protected boolean accepts(Map<String,Route> routes, String method) {
+    if (routes==null)
+      return false;
+    if (routes.containsKey(method) || routes.containsKey(null))
+      return true;
+    allowed.addAll(routes.keySet());
+    return false;
+  }
+
+  /** Record capture (end=-1 for the rest of the path) */
+  protected Map<String,Route> capture(Node node, int start, int end, int depth, Map<String,Route> routes) {
+    ensureCapacity(depth+1);
+    captures[depth*2]=start;
+    captures[depth*2+1]=end;
+    captureNodes[depth]=node;
+    if (end<0)
+      captureNodes[depth+1]=null;
+    return routes;
+  }
+
+  /** Grow the scratch space */
+  protected void ensureCapacity(int depth) {
+    if (depth<captureNodes.length)
+      return;
+    int[] newCaptures=new int[captureNodes.length*4];
+    System.arraycopy(captures,0,newCaptures,0,captures.length);
+    Node[] newNodes=new Node[captureNodes.length*2];
+    System.arraycopy(captureNodes,0,newNodes,0,captureNodes.length);
+    captures=newCaptures;
+    captureNodes=newNodes;
+  }
+
+  /** Pass to unmatched or answer with 404 */
+  protected void notFound(RxHttpServerRequest req) {
+    if (unmatched.isSubscribed()) {
+      unmatched.handle(req);
+      return;
+    }
+    req.response().setStatusCode(404).setStatusMessage("Not Found").end();
+  }
+
+  /** Join values */
+  protected static String join(Iterable<String> values) {
+    StringBuilder sb=new StringBuilder();
+    for (String value : values) {
+      if (value==null)
+        continue;
+      if (sb.length()>0)
+        sb.append(", ");
+      sb.append(value);
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,346 @@
+package io.vertx.rxcore.java.http;
+
+import io.vertx.rxcore.java.impl.FileRangeReader;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.file.AsyncFile;
+import org.vertx.java.core.file.FileProps;
+import org.vertx.java.core.http.HttpServerResponse;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/** Operator that serves static files for matching requests and passes the rest downstream
+ *
+ * <p>GET and HEAD requests for paths under prefix are mapped to files under root. Whole files are sent with
+ * sendFile (zero-copy where the platform supports it) and a single byte range is streamed from an AsyncFile.
+ * File metadata (size, mtime and an ETag derived from them) is cached in a bounded LRU for cacheTtl ms, so hot
+ * files need no disk access to answer conditional requests with 304. Requests that do not match a regular
+ * file are passed downstream.</p>
+ *
+ * <pre>
+ * server.http().lift(new RxStaticFiles(vertx,"/static/","webroot")).subscribe(...)
+ * </pre>
+ *
+ **/
+public class RxStaticFiles implements Observable.Operator<RxHttpServerRequest,RxHttpServerRequest> {
+
+  // Definitions
+
+  /** Default number of files with cached metadata */
+  public final static int DEFAULT_CACHE_SIZE=1000;
+
+  /** Default time metadata is trusted (ms) */
+  public final static long DEFAULT_CACHE_TTL=1000;
+
+  /** Content types by extension */
+  private final static Map<String,String> contentTypes=new HashMap<>();
+
+  static {
+    String[] types={
+      "html","text/html","htm","text/html","css","text/css","js","application/javascript","json","application/json",
+      "txt","text/plain","xml","application/xml","svg","image/svg+xml","png","image/png","jpg","image/jpeg",
+      "jpeg","image/jpeg","gif","image/gif","ico","image/x-icon","woff","application/font-woff","pdf","application/pdf"
+    };
+    for (int i=0;i<types.length;i+=2)
+      contentTypes.put(types[i],types[i+1]);
+  }
+
+  /** HTTP date format */
+  private final static ThreadLocal<SimpleDateFormat> httpDate=new ThreadLocal<SimpleDateFormat>() {
+    @Override protected SimpleDateFormat initialValue() {
+      SimpleDateFormat fmt=new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz",Locale.US);
+      fmt.setTimeZone(TimeZone.getTimeZone("GMT"));
+      return fmt;
+    }
+  };
+
+  /** Cached file metadata */
+  protected static class FileInfo {
+
+    /** File exists and is a regular file */
+    final boolean exists;
+
+    /** Size */
+    final long size;
+
+    /** Last modified (truncated to seconds as sent in Last-Modified) */
+    final long lastModified;
+
+    /** ETag */
+    final String etag;
+
+    /** When the info was read */
+    final long checked;
+
+    FileInfo(FileProps props, long checked) {
+      this.exists=(props!=null) && props.isRegularFile();
+      this.size=exists?props.size():0;
+      this.lastModified=exists?(props.lastModifiedTime().getTime()/1000)*1000:0;
+      this.etag=exists?"\""+Long.toHexString(size)+"-"+Long.toHexString(lastModified)+"\"":null;
+      this.checked=checked;
+    }
+  }
+
+  // Instance variables
+
+  /** Vertx */
+  private final Vertx vertx;
+
+  /** URL prefix */
+  private final String prefix;
+
+  /** File root */
+  private final String root;
+
+  /** Cache size */
+  private int cacheSize=DEFAULT_CACHE_SIZE;
+
+  /** Cache TTL */
+  private long cacheTtl=DEFAULT_CACHE_TTL;
+
+  /** Metadata by file (LRU) */
+  private final LinkedHashMap<String,FileInfo> cache=new LinkedHashMap<String,FileInfo>(16,0.75f,true) {
+    @Override protected boolean removeEldestEntry(Map.Entry<String,FileInfo> eldest) {
+      return size()>cacheSize;
+    }
+  };
+
+  // Public methods
+
+  /** Create new RxStaticFiles serving root for paths under prefix */
+  public RxStaticFiles(Vertx vertx, String prefix, String root) {
+    this.vertx=vertx;
+    this.prefix=prefix.endsWith("/")?prefix:prefix+"/";
+    this.root=root.endsWith("/")?root:root+"/";
+  }
+
+  /** Set the number of files with cached metadata */
+  public RxStaticFiles setCacheSize(int cacheSize) {
+    this.cacheSize=cacheSize;
+    return this;
+  }
+
+  /** Set how long cached metadata is trusted before the file is checked again (ms) */
+  public RxStaticFiles setCacheTtl(long cacheTtl) {
+    this.cacheTtl=cacheTtl;
+    return this;
+  }
+
+  // Operator implementation
+
+  /** Add Subscriber */
+  public Subscriber<? super RxHttpServerRequest> call(final Subscriber<? super RxHttpServerRequest> child) {
+    return new Subscriber<RxHttpServerRequest>(child) {
+      public void onNext(final RxHttpServerRequest req) {
+        final String file=resolve(req);
+        if (file==null) {
+          child.onNext(req);
+          return;
+        }
+        lookup(file,new Handler<FileInfo>() {
+          public void handle(FileInfo info) {
+            if (!info.exists)
+              child.onNext(req);
+            else
+              serve(req,file,info);
+          }
+        });
+      }
+
+      public void onError(Throwable t) {
+        child.onError(t);
+      }
+
+      public void onCompleted() {
+        child.onCompleted();
+      }
+    };
+  }
+
+  // Implementation
+
+  /** Return the file for the request (or null if not served from here) */
+  protected String resolve(RxHttpServerRequest req) {
+    String method=req.method();
+    if (!method.equals("GET") && !method.equals("HEAD"))
+      return null;
+    String path=req.path();
+    if (!path.startsWith(prefix))
+      return null;
+    try {
+      path=URLDecoder.decode(path.substring(prefix.length()).replace("+","%2B"),"UTF-8");
+    }
+    catch(UnsupportedEncodingException|IllegalArgumentException e) {
+      return null;
+    }
+    // Never leave the root
+    if (path.isEmpty() || path.contains("\0") || path.contains("\\") || ("/"+path+"/").contains("/../"))
+      return null;
+    return root+path;
+  }
+
+  /** Return the (cached) metadata for file */
+  protected void lookup(final String file, final Handler<FileInfo> handler) {
+    final long now=System.currentTimeMillis();
+    FileInfo info;
+    synchronized (cache) {
+      info=cache.get(file);
+    }
+    if ((info!=null) && (now-info.checked<cacheTtl)) {
+      handler.handle(info);
+      return;
+    }
+    vertx.fileSystem().props(file,new Handler<AsyncResult<FileProps>>() {
+      public void handle(AsyncResult<FileProps> res) {
+        FileInfo info=new FileInfo(res.succeeded()?res.result():null,now);
+        synchronized (cache) {
+          cache.put(file,info);
+        }
+        handler.handle(info);
+      }
+    });
+  }
+
+  /** Send the file (or a 304/206/416) */
+  protected void serve(final RxHttpServerRequest req, String file, FileInfo info) {
+    final HttpServerResponse resp=req.response();
+    resp.putHeader("ETag",info.etag);
+    resp.putHeader("Last-Modified",httpDate.get().format(new Date(info.lastModified)));
+    resp.putHeader("Accept-Ranges","bytes");
+    String type=contentType(file);
+    if (type!=null)
+      resp.putHeader("Content-Type",type);
+
+    if (notModified(req,info)) {
+      resp.setStatusCode(304).end();
+      return;
+    }
+
+    long[] range=range(req,info);
+    if ((range!=null) && (range[0]<0)) {
+      resp.setStatusCode(416).putHeader("Content-Range","bytes */"+info.size).end();
+      return;
+    }
+
+    boolean head=req.method().equals("HEAD");
+    if (range==null) {
+      if (head) {
+        resp.putHeader("Content-Length",Long.toString(info.size)).end();
+        return;
+      }
+      resp.sendFile(file);
+      return;
+    }
+
+    final long start=range[0];
+    final long length=range[1]-range[0]+1;
+    resp.setStatusCode(206);
+    resp.putHeader("Content-Range","bytes "+range[0]+"-"+range[1]+"/"+info.size);
+    resp.putHeader("Content-Length",Long.toString(length));
+    if (head) {
+      resp.end();
+      return;
+    }
+    vertx.fileSystem().open(file,null,true,false,false,new Handler<AsyncResult<AsyncFile>>() {
+      public void handle(AsyncResult<AsyncFile> res) {
+        if (res.failed()) {
+          resp.close();
+          return;
+        }
+        // Failures close the connection so the result is not needed
+        req.respond(Observable.create(new FileRangeReader(res.result(),start,length,FileRangeReader.DEFAULT_CHUNK_SIZE)));
+      }
+    });
+  }
+
+  /** Return true if the client copy is current */
+  protected boolean notModified(RxHttpServerRequest req, FileInfo info) {
+    String ifNoneMatch=req.headers().get("If-None-Match");
+    if (ifNoneMatch!=null) {
+      for (String tag : ifNoneMatch.split(",")) {
+        tag=tag.trim();
+        if (tag.startsWith("W/"))
+          tag=tag.substring(2);
+        if (tag.equals("*") || tag.equals(info.etag))
+          return true;
+      }
+      // If-Modified-Since is ignored when If-None-Match is present
+      return false;
+    }
+    Date since=parseDate(req.headers().get("If-Modified-Since"));
+    return (since!=null) && (info.lastModified<=since.getTime());
+  }
+
+  /** Return the requested single range as {first,last}, {-1,-1} if unsatisfiable or null for the whole file */
+  protected long[] range(RxHttpServerRequest req, FileInfo info) {
+    String header=req.headers().get("Range");
+    if ((header==null) || !header.startsWith("bytes=") || header.contains(","))
+      return null;
+
+    // A stale If-Range means the whole (new) file is sent
+    String ifRange=req.headers().get("If-Range");
+    if ((ifRange!=null) && !ifRange.trim().equals(info.etag)) {
+      Date date=parseDate(ifRange);
+      if ((date==null) || (date.getTime()!=info.lastModified))
+        return null;
+    }
+
+    String spec=header.substring(6).trim();
+    int dash=spec.indexOf('-');
+    if (dash<0)
+      return null;
+    try {
+      long first, last;
+      if (dash==0) {
+        // Suffix
+        long n=Long.parseLong(spec.substring(1));
+        if (n<=0)
+          return new long[] { -1, -1 };
+        first=Math.max(0,info.size-n);
+        last=info.size-1;
+      }
+      else {
+        first=Long.parseLong(spec.substring(0,dash));
+        last=(dash==spec.length()-1)?info.size-1:Math.min(Long.parseLong(spec.substring(dash+1)),info.size-1);
+        if (last<first)
+          return (dash==spec.length()-1)?new long[] { -1, -1 }:null;
+      }
+      if (first>=info.size)
+        return new long[] { -1, -1 };
+      return new long[] { first, last };
+    }
+    catch(NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /** Return content type from the file extension */
+  protected String contentType(String file) {
+    int dot=file.lastIndexOf('.');
+    return (dot<0)?null:contentTypes.get(file.substring(dot+1).toLowerCase());
+  }
+
+  /** Parse an HTTP date (or return null) */
+  protected static Date parseDate(String value) {
+    if (value==null)
+      return null;
+    try {
+      return httpDate.get().parse(value.trim());
+    }
+    catch(ParseException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,285 @@
+package io.vertx.rxcore.java.http;
+
+import java.nio.charset.Charset;
+
+import io.vertx.rxcore.RxSupport;
+import io.vertx.rxcore.SizeLimitExceededException;
+import io.vertx.rxcore.java.impl.ReadStreamHandler;
+import io.vertx.rxcore.java.impl.WriteStreamSubscriber;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.file.AsyncFile;
+import org.vertx.java.core.http.HttpServerFileUpload;
+import org.vertx.java.core.streams.ReadStream;
+import rx.Observable;
+import rx.Observer;
+import rx.functions.Action1;
+import rx.subjects.AsyncSubject;
+
+/** Rx wrapper for HttpServerFileUpload (see {@link RxHttpServerRequest#asUploads})
+ *
+ * <p>The upload is paused as soon as it is received, so the body can be subscribed later without losing data. While
+ * it is paused the rest of the request is not read, so the body of every upload must be consumed (or discarded).</p>
+ *
+ **/
+public class RxUpload implements HttpServerFileUpload {
+
+  // Definitions
+
+  /** ReadStreamHandler that can be failed by the request */
+  private static class UploadHandler extends ReadStreamHandler {
+
+    /** Create new UploadHandler */
+    public UploadHandler(ReadStream<?> upload) {
+      super(upload);
+    }
+
+    /** Fail the active subscription */
+    public void fail(Throwable t) {
+      fireError(t);
+    }
+  }
+
+  /** ReadStream that defers resume() while the upload is already resuming
+   *
+   * <p>The upload redelivers its paused data from resume() before clearing it, so a resume() from inside the
+   * dataHandler (eg a Subscriber requesting more) would deliver the same data twice.</p>
+   *
+   **/
+  private static class UploadStream implements ReadStream<UploadStream> {
+
+    /** Upload */
+    private final HttpServerFileUpload upload;
+
+    /** Resuming */
+    private boolean resuming;
+
+    /** Resume requested while resuming */
+    private boolean pending;
+
+    /** Create new UploadStream */
+    public UploadStream(HttpServerFileUpload upload) {
+      this.upload=upload;
+    }
+
+    public UploadStream dataHandler(Handler<Buffer> handler) {
+      upload.dataHandler(handler);
+      return this;
+    }
+
+    public UploadStream pause() {
+      upload.pause();
+      return this;
+    }
+
+    public UploadStream resume() {
+      if (resuming) {
+        pending=true;
+        return this;
+      }
+      resuming=true;
+      try {
+        do {
+          pending=false;
+          upload.resume();
+        }
+        while (pending);
+      }
+      finally {
+        resuming=false;
+      }
+      return this;
+    }
+
+    public UploadStream endHandler(Handler<Void> handler) {
+      upload.endHandler(handler);
+      return this;
+    }
+
+    public UploadStream exceptionHandler(Handler<Throwable> handler) {
+      upload.exceptionHandler(handler);
+      return this;
+    }
+  }
+
+  // Instance variables
+
+  /** Request */
+  private final RxHttpServerRequest request;
+
+  /** Real instance */
+  private final HttpServerFileUpload nested;
+
+  /** Vertx (optional) */
+  private final Vertx vertx;
+
+  /** Maximum size */
+  private final long maxSize;
+
+  /** Handler */
+  private final UploadHandler handler;
+
+  /** Failure (if the request failed before the body was subscribed) */
+  private Throwable failure;
+
+  // Public methods
+
+  /** Create new RxUpload */
+  protected RxUpload(RxHttpServerRequest request, HttpServerFileUpload nested, Vertx vertx, long maxSize) {
+    this.request=request;
+    this.nested=nested;
+    this.vertx=vertx;
+    this.maxSize=maxSize;
+    this.handler=new UploadHandler(new UploadStream(nested));
+
+    // Hold the data until the body is subscribed
+    nested.pause();
+  }
+
+  /** Return observable for accessing the upload as a stream of Buffer (limited to maxSize bytes)
+   *
+   * <p>Only as much of the request is read as the Subscriber requests. If the upload exceeds its limit the client
+   * is sent 413 and the Observable fails with {@link SizeLimitExceededException}.</p>
+   *
+   **/
+  public Observable<Buffer> asObservable() {
+    if (failure!=null)
+      return Observable.error(failure);
+
+    return Observable.create(handler).lift(RxSupport.limitBuffers(maxSize)).doOnError(new Action1<Throwable>() {
+      public void call(Throwable t) {
+        if (t instanceof SizeLimitExceededException)
+          request.reject(413,"Request Entity Too Large");
+      }
+    });
+  }
+
+  /** Stream the upload to a new file, returning the total written on completion
+   *
+   * <p>The body is pumped straight into an AsyncFile, so only the write queue is held in memory. Requires a server
+   * created by RxVertx.</p>
+   *
+   **/
+  public Observable<Long> streamToFile(String path) {
+    final AsyncSubject<Long> rx=AsyncSubject.create();
+
+    if (vertx==null) {
+      discard();
+      rx.onError(new IllegalStateException("Cannot stream upload to file without Vertx (use RxVertx.createHttpServer)"));
+      return rx;
+    }
+
+    vertx.fileSystem().open(path,null,false,true,true,new Handler<AsyncResult<AsyncFile>>() {
+      public void handle(AsyncResult<AsyncFile> res) {
+        if (res.failed()) {
+          discard();
+          rx.onError(res.cause());
+          return;
+        }
+
+        final AsyncFile file=res.result();
+        asObservable().subscribe(new WriteStreamSubscriber(file,new Observer<Long>() {
+
+          /** Total */
+          private long total;
+
+          public void onNext(Long total) {
+            this.total=total;
+          }
+
+          public void onError(final Throwable t) {
+            file.close();
+            rx.onError(t);
+          }
+
+          public void onCompleted() {
+            file.close(new Handler<AsyncResult<Void>>() {
+              public void handle(AsyncResult<Void> closed) {
+                if (closed.failed()) {
+                  rx.onError(closed.cause());
+                  return;
+                }
+                rx.onNext(total);
+                rx.onCompleted();
+              }
+            });
+          }
+        },Long.MAX_VALUE));
+      }
+    });
+
+    return rx;
+  }
+
+  /** Discard the body of the upload */
+  public void discard() {
+    nested.dataHandler(null);
+    nested.resume();
+  }
+
+  // Implementation
+
+  /** Fail the upload */
+  protected void fail(Throwable t) {
+    this.failure=t;
+    handler.fail(t);
+  }
+
+  // HttpServerFileUpload implementation
+
+  public String filename() {
+    return nested.filename();
+  }
+
+  public String name() {
+    return nested.name();
+  }
+
+  public String contentType() {
+    return nested.contentType();
+  }
+
+  public String contentTransferEncoding() {
+    return nested.contentTransferEncoding();
+  }
+
+  public Charset charset() {
+    return nested.charset();
+  }
+
+  public long size() {
+    return nested.size();
+  }
+
+  public boolean isSizeAvailable() {
+    return nested.isSizeAvailable();
+  }
+
+  public HttpServerFileUpload streamToFileSystem(String filename) {
+    throw new UnsupportedOperationException("Cannot access via Rx - use streamToFile()");
+  }
+
+  // ReadStream implementation
+
+  public HttpServerFileUpload dataHandler(Handler<Buffer> handler) {
+    throw new UnsupportedOperationException("Cannot access via Rx - use asObservable()");
+  }
+
+  public HttpServerFileUpload pause() {
+    return nested.pause();
+  }
+
+  public HttpServerFileUpload resume() {
+    return nested.resume();
+  }
+
+  public HttpServerFileUpload endHandler(Handler<Void> endHandler) {
+    throw new UnsupportedOperationException("Cannot access via Rx - use asObservable()");
+  }
+
+  public HttpServerFileUpload exceptionHandler(Handler<Throwable> handler) {
+    throw new UnsupportedOperationException("Cannot access via Rx - use asObservable()");
+  }
+}
@@ -0,0 +1,92 @@
+package io.vertx.rxcore.java.impl;
+
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.rxcore.SizeLimitExceededException;
+import org.vertx.java.core.buffer.Buffer;
+import rx.Observable;
+import rx.Subscriber;
+
+/** Operator that aggregates a stream of Buffers into a single Buffer without copying
+ *
+ * <p>Each chunk is added as a component of a composite buffer, so the bytes are only copied if the consumer
+ * needs them to be contiguous (eg getBytes()). Fails with {@link SizeLimitExceededException} as soon as the
+ * total exceeds maxSize.</p>
+ *
+ * <p>If a {@link BufferPool} is set the chunks are copied once, on completion, into a contiguous pooled Buffer
+ * which the consumer should release.</p>
+ *
+ **/
+public class AggregateOperator implements Observable.Operator<Buffer,Buffer> {
+
+  // Instance variables
+
+  /** Maximum size */
+  private final long maxSize;
+
+  /** Pool for the result (optional) */
+  private BufferPool pool;
+
+  // Public methods
+
+  /** Create new AggregateOperator */
+  public AggregateOperator(long maxSize) {
+    this.maxSize=maxSize;
+  }
+
+  /** Return the result as a contiguous Buffer from pool */
+  public AggregateOperator pooled(BufferPool pool) {
+    this.pool=pool;
+    return this;
+  }
+
+  // Operator implementation
+
+  /** Add Subscriber */
+  public Subscriber<? super Buffer> call(final Subscriber<? super Buffer> child) {
+    return new Subscriber<Buffer>(child) {
+
+      /** Body (created for each subscription) */
+      private final CompositeByteBuf body=Unpooled.compositeBuffer(Integer.MAX_VALUE);
+
+      /** Failed */
+      private boolean failed;
+
+      @Override public void onStart() {
+        // Single result so take everything
+        request(Long.MAX_VALUE);
+      }
+
+      public void onNext(Buffer buf) {
+        if (failed)
+          return;
+
+        int len=buf.length();
+        if (body.writerIndex()+(long)len>maxSize) {
+          failed=true;
+          child.onError(new SizeLimitExceededException(maxSize,body.writerIndex()+(long)len));
+          unsubscribe();
+          return;
+        }
+
+        if (len>0) {
+          body.addComponent(buf.getByteBuf());
+          body.writerIndex(body.writerIndex()+len);
+        }
+      }
+
+      public void onError(Throwable e) {
+        if (!failed)
+          child.onError(e);
+      }
+
+      public void onCompleted() {
+        if (failed)
+          return;
+        Buffer result=new Buffer(body);
+        child.onNext((pool!=null)?pool.copy(result):result);
+        child.onCompleted();
+      }
+    };
+  }
+}
@@ -0,0 +1,415 @@
+package io.vertx.rxcore.java.impl;
+
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Func0;
+import rx.plugins.RxJavaPlugins;
+import rx.subscriptions.BooleanSubscription;
+import rx.subscriptions.Subscriptions;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Implementation of Scheduler for blocking work (JDBC, file IO etc)
+ *
+ * <p>Actions run on a bounded pool: at most poolSize run concurrently and at most queueSize wait for a
+ * thread, after which new work is rejected. On JDK 21+ each action runs on a virtual thread, otherwise on a
+ * fixed pool of daemon threads.</p>
+ *
+ * <p>Use {@link #execute(Func0)} to run a blocking call and receive the result (or error) back on the
+ * calling context</p>
+ *
+ **/
+public class BlockingScheduler extends Scheduler {
+
+  // Instance variables
+
+  /** Vertx */
+  private final Vertx vertx;
+
+  /** Maximum concurrent actions */
+  private final int poolSize;
+
+  /** Maximum queued actions */
+  private final int queueSize;
+
+  /** Executor */
+  private final ExecutorService executor;
+
+  /** True if using virtual threads */
+  private final boolean virtualThreads;
+
+  /** Actions waiting for a thread */
+  private final ConcurrentLinkedQueue<Runnable> queue=new ConcurrentLinkedQueue<>();
+
+  /** Queue depth */
+  private final AtomicInteger queued=new AtomicInteger();
+
+  /** Active actions */
+  private final AtomicInteger active=new AtomicInteger();
+
+  /** Completed actions */
+  private final AtomicLong completed=new AtomicLong();
+
+  /** Rejected actions */
+  private final AtomicLong rejected=new AtomicLong();
+
+  /** Actions submitted from an event loop */
+  private final AtomicLong offloaded=new AtomicLong();
+
+  // Public methods
+
+  /** Create new BlockingScheduler */
+  public BlockingScheduler(Vertx vertx, int poolSize, int queueSize) {
+    if (poolSize<1)
+      throw new IllegalArgumentException("BlockingScheduler requires at least one thread (poolSize="+poolSize+")");
+
+    this.vertx=vertx;
+    this.poolSize=poolSize;
+    this.queueSize=queueSize;
+
+    ExecutorService virtualExecutor=createVirtualThreadExecutor();
+    if (virtualExecutor!=null) {
+      this.executor=virtualExecutor;
+      this.virtualThreads=true;
+    }
+    else {
+      this.executor=Executors.newFixedThreadPool(poolSize,new ThreadFactory() {
+        private final AtomicInteger count=new AtomicInteger();
+        public Thread newThread(Runnable r) {
+          Thread t=new Thread(r,"rxvertx-blocking-"+count.getAndIncrement());
+          t.setDaemon(true);
+          return t;
+        }
+      });
+      this.virtualThreads=false;
+    }
+  }
+
+  /** Execute a blocking function and return the result on the calling context */
+  public <T> Observable<T> execute(final Func0<T> fn) {
+    return Observable.create(new Observable.OnSubscribe<T>() {
+      public void call(final Subscriber<? super T> subscriber) {
+        final Context context=vertx.currentContext();
+        try {
+          submit(new Runnable() {
+            public void run() {
+              if (subscriber.isUnsubscribed())
+                return;
+              final T res;
+              try {
+                res=fn.call();
+              }
+              catch(final Throwable t) {
+                deliver(context,new Action0() {
+                  public void call() {
+                    subscriber.onError(t);
+                  }
+                });
+                return;
+              }
+              deliver(context,new Action0() {
+                public void call() {
+                  subscriber.onNext(res);
+                  subscriber.onCompleted();
+                }
+              });
+            }
+          });
+        }
+        catch(RejectedExecutionException e) {
+          subscriber.onError(e);
+        }
+      }
+    });
+  }
+
+  /** Shutdown the pool */
+  public void close() {
+    this.queue.clear();
+    this.executor.shutdownNow();
+  }
+
+  // Metrics
+
+  /** Return true if actions run on virtual threads */
+  public boolean isVirtualThreads() {
+    return this.virtualThreads;
+  }
+
+  /** Return the number of actions waiting for a thread */
+  public int queueDepth() {
+    return this.queued.get();
+  }
+
+  /** Return the number of actions running */
+  public int activeCount() {
+    return this.active.get();
+  }
+
+  /** Return the number of actions completed */
+  public long completedCount() {
+    return this.completed.get();
+  }
+
+  /** Return the number of actions rejected because the queue was full */
+  public long rejectedCount() {
+    return this.rejected.get();
+  }
+
+  /** Return the number of actions submitted from an event loop (ie that would otherwise have blocked it) */
+  public long offloadedCount() {
+    return this.offloaded.get();
+  }
+
+  // Scheduler implementation
+
+  /** Create worker */
+  @Override
+  public Worker createWorker() {
+    return new BlockingWorker();
+  }
+
+  /** Pool size */
+  @Override
+  public int parallelism() {
+    return this.poolSize;
+  }
+
+  // Implementation
+
+  /** Submit task to the pool
+   *
+   * @throws RejectedExecutionException if the queue is full
+   *
+   **/
+  protected void submit(Runnable task) throws RejectedExecutionException {
+    if (vertx.isEventLoop())
+      offloaded.incrementAndGet();
+
+    // Run immediately if there is a free thread
+    if (acquire()) {
+      dispatch(task);
+      return;
+    }
+
+    if (queued.incrementAndGet()>queueSize) {
+      queued.decrementAndGet();
+      rejected.incrementAndGet();
+      throw new RejectedExecutionException("BlockingScheduler queue full (poolSize="+poolSize+",queueSize="+queueSize+")");
+    }
+    queue.add(task);
+
+    // A thread may have been released while queueing
+    if (acquire())
+      dispatch(next());
+  }
+
+  /** Acquire a thread */
+  protected boolean acquire() {
+    while (true) {
+      int cur=active.get();
+      if (cur>=poolSize)
+        return false;
+      if (active.compareAndSet(cur,cur+1))
+        return true;
+    }
+  }
+
+  /** Return the next queued task (or null) */
+  protected Runnable next() {
+    Runnable task=queue.poll();
+    if (task!=null)
+      queued.decrementAndGet();
+    return task;
+  }
+
+  /** Run task on an acquired thread, then keep running queued tasks until the queue is empty */
+  protected void dispatch(final Runnable first) {
+    if (first==null) {
+      release();
+      return;
+    }
+    try {
+      executor.execute(new Runnable() {
+        public void run() {
+          Runnable task=first;
+          while (task!=null) {
+            try {
+              task.run();
+            }
+            catch(Throwable t) {
+              RxJavaPlugins.getInstance().getErrorHandler().handleError(t);
+            }
+            completed.incrementAndGet();
+            task=next();
+          }
+          release();
+        }
+      });
+    }
+    catch(RejectedExecutionException e) {
+      // Pool closed
+      release();
+      throw e;
+    }
+  }
+
+  /** Release a thread */
+  protected void release() {
+    active.decrementAndGet();
+    // Pick up any task queued after the last poll
+    if (!queue.isEmpty() && acquire())
+      dispatch(next());
+  }
+
+  /** Run the action on the context (or immediately if there is none) */
+  protected void deliver(Context context, final Action0 action) {
+    if (context==null) {
+      action.call();
+      return;
+    }
+    context.runOnContext(new Handler<Void>() {
+      public void handle(Void event) {
+        action.call();
+      }
+    });
+  }
+
+  /** Create virtual thread executor if supported (JDK 21+) */
+  protected static ExecutorService createVirtualThreadExecutor() {
+    try {
+      return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+    catch(Exception e) {
+      return null;
+    }
+  }
+
+  // Scheduler.Worker implementation
+
+  /** Worker that runs its actions in order, one at a time, on the pool */
+  private class BlockingWorker extends Worker implements Runnable {
+
+    /** Pending actions */
+    protected final ConcurrentLinkedQueue<Action0> actions=new ConcurrentLinkedQueue<>();
+
+    /** Work in progress */
+    protected final AtomicInteger wip=new AtomicInteger();
+
+    /** Subscription for the worker */
+    protected final BooleanSubscription innerSubscription=new BooleanSubscription();
+
+    // Scheduler.Worker implementation
+
+    @Override
+    public Subscription schedule(final Action0 action) {
+      final BooleanSubscription actionSubscription=new BooleanSubscription();
+      Action0 task=new Action0() {
+        public void call() {
+          if (actionSubscription.isUnsubscribed())
+            return;
+          action.call();
+        }
+      };
+      actions.add(task);
+      if (wip.getAndIncrement()==0) {
+        try {
+          submit(this);
+        }
+        catch(RejectedExecutionException e) {
+          // Withdraw only this action, any scheduled meanwhile were left to this drain
+          actions.remove(task);
+          if (wip.decrementAndGet()>0)
+            resubmit();
+          throw e;
+        }
+      }
+      return actionSubscription;
+    }
+
+    /** Schedule after a delay (an action rejected once the delay expires goes to the RxJava error handler, as
+     * there is no caller to throw to)
+     **/
+    @Override
+    public Subscription schedule(final Action0 action, long delayTime, TimeUnit unit) {
+      long delay=unit.toMillis(delayTime);
+      if (delay<1)
+        return schedule(action);
+
+      final BooleanSubscription actionSubscription=new BooleanSubscription();
+      final long timerId=vertx.setTimer(delay,new Handler<Long>() {
+        public void handle(Long id) {
+          if (actionSubscription.isUnsubscribed() || innerSubscription.isUnsubscribed())
+            return;
+          try {
+            schedule(action);
+          }
+          catch(RejectedExecutionException e) {
+            // There is no caller to throw to from the timer
+            RxJavaPlugins.getInstance().getErrorHandler().handleError(e);
+          }
+        }
+      });
+
+      return Subscriptions.create(new Action0() {
+        public void call() {
+          actionSubscription.unsubscribe();
+          vertx.cancelTimer(timerId);
+        }
+      });
+    }
+
+    @Override
+    public void unsubscribe() {
+      innerSubscription.unsubscribe();
+    }
+
+    @Override
+    public boolean isUnsubscribed() {
+      return innerSubscription.isUnsubscribed();
+    }
+
+    // Implementation
+
+    /** Submit the drain for actions scheduled while a submit was being rejected */
+    protected void resubmit() {
+      try {
+        submit(this);
+      }
+      catch(RejectedExecutionException e) {
+        RxJavaPlugins.getInstance().getErrorHandler().handleError(e);
+      }
+    }
+
+    // Runnable implementation
+
+    /** Drain the actions in order (an action that throws does not stop the rest) */
+    public void run() {
+      do {
+        Action0 action=actions.poll();
+        if ((action!=null) && !innerSubscription.isUnsubscribed()) {
+          try {
+            action.call();
+          }
+          catch(Throwable t) {
+            RxJavaPlugins.getInstance().getErrorHandler().handleError(t);
+          }
+        }
+      }
+      while (wip.decrementAndGet()>0);
+    }
+  }
+}
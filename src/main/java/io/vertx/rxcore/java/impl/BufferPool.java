@@ -0,0 +1,261 @@
+package io.vertx.rxcore.java.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.buffer.UnpooledHeapByteBuf;
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.buffer.Buffer;
+import rx.plugins.RxJavaPlugins;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Pool of reusable heap Buffers for a single Context
+ *
+ * <p>Buffers are handed out in power-of-two size classes from {@link #MIN_SIZE} to {@link #MAX_SIZE} (larger
+ * requests are not pooled). A pool is only used from its own Context, so it needs no locking - use
+ * {@link #forContext} to get the pool for the current Context.</p>
+ *
+ * <p>Release a Buffer once its contents are no longer referenced. A Buffer passed to a WriteStream is written
+ * asynchronously, so it must not be released. Releasing a Buffer that did not come from this pool (eg from
+ * another Context) is ignored and releasing one twice fails.</p>
+ *
+ * <p>When leak sampling is enabled (see {@link #setLeakSampling} or the rxvertx.bufferPool.leakSampling system
+ * property) a sample of Buffers is tracked and any that are garbage collected without being released are reported
+ * to the RxJava error handler with the stack of the acquire.</p>
+ *
+ **/
+public class BufferPool {
+
+  // Definitions
+
+  /** Smallest size class */
+  public final static int MIN_SIZE=256;
+
+  /** Largest size class */
+  public final static int MAX_SIZE=64*1024;
+
+  /** Default number of free buffers kept per size class */
+  public final static int DEFAULT_MAX_FREE=64;
+
+  /** Number of size classes */
+  private final static int CLASSES=Integer.numberOfTrailingZeros(MAX_SIZE)-Integer.numberOfTrailingZeros(MIN_SIZE)+1;
+
+  /** Pools by Context */
+  private final static Map<Context,BufferPool> pools=new WeakHashMap<>();
+
+  /** Pools for threads with no Context */
+  private final static ThreadLocal<BufferPool> threadPools=new ThreadLocal<BufferPool>() {
+    @Override protected BufferPool initialValue() {
+      return new BufferPool(DEFAULT_MAX_FREE);
+    }
+  };
+
+  /** Leak sampling (track 1 in N buffers, 0 to disable) */
+  private static volatile int leakSampling=Integer.getInteger("rxvertx.bufferPool.leakSampling",0);
+
+  /** Tracked buffers */
+  private final static Set<LeakRef> tracked=Collections.newSetFromMap(new ConcurrentHashMap<LeakRef,Boolean>());
+
+  /** Collected buffers */
+  private final static ReferenceQueue<PoolByteBuf> collected=new ReferenceQueue<>();
+
+  /** Leaks detected */
+  private final static AtomicLong leaks=new AtomicLong();
+
+  /** Reference used to detect a Buffer that was never released */
+  private static class LeakRef extends PhantomReference<PoolByteBuf> {
+
+    /** Where the buffer was acquired */
+    final Throwable site;
+
+    LeakRef(PoolByteBuf buf) {
+      super(buf,collected);
+      this.site=new Throwable("Buffer acquired (size="+buf.capacity()+")");
+    }
+  }
+
+  /** ByteBuf owned by a pool */
+  private static class PoolByteBuf extends UnpooledHeapByteBuf {
+
+    /** Owner */
+    final BufferPool pool;
+
+    /** Released */
+    boolean released;
+
+    /** Leak tracking (if sampled) */
+    LeakRef leak;
+
+    PoolByteBuf(BufferPool pool, byte[] array) {
+      super(UnpooledByteBufAllocator.DEFAULT,array,Integer.MAX_VALUE);
+      this.pool=pool;
+    }
+  }
+
+  // Instance variables
+
+  /** Free arrays by size class */
+  private final ArrayDeque<byte[]>[] free;
+
+  /** Free arrays kept per class */
+  private final int maxFree;
+
+  /** Count of acquires */
+  private long acquired;
+
+  /** Count of acquires served from the pool */
+  private long reused;
+
+  /** Count of buffers returned to the pool */
+  private long released;
+
+  /** Count of acquires since the last sample */
+  private int sampleCount;
+
+  // Public methods
+
+  /** Create new BufferPool */
+  @SuppressWarnings("unchecked")
+  public BufferPool(int maxFree) {
+    this.maxFree=maxFree;
+    this.free=new ArrayDeque[CLASSES];
+    for (int i=0;i<CLASSES;i++)
+      this.free[i]=new ArrayDeque<>();
+  }
+
+  /** Return the pool for the current Context (or thread if not on a Context) */
+  public static BufferPool forContext(Vertx vertx) {
+    Context ctx=vertx.currentContext();
+    if (ctx==null)
+      return threadPools.get();
+    synchronized (pools) {
+      BufferPool pool=pools.get(ctx);
+      if (pool==null) {
+        pool=new BufferPool(DEFAULT_MAX_FREE);
+        pools.put(ctx,pool);
+      }
+      return pool;
+    }
+  }
+
+  /** Set leak sampling (track 1 in N buffers, 0 to disable) */
+  public static void setLeakSampling(int sampling) {
+    leakSampling=sampling;
+  }
+
+  /** Return number of leaks detected so far (checks for newly collected buffers) */
+  public static long leaks() {
+    checkLeaks();
+    return leaks.get();
+  }
+
+  /** Return an empty Buffer with capacity for at least size bytes */
+  public Buffer acquire(int size) {
+    acquired++;
+    if (size>MAX_SIZE)
+      return new Buffer(Unpooled.buffer(size));
+
+    int cls=sizeClass(size);
+    byte[] array=this.free[cls].pollFirst();
+    if (array!=null)
+      reused++;
+    else
+      array=new byte[MIN_SIZE<<cls];
+
+    PoolByteBuf buf=new PoolByteBuf(this,array);
+    buf.writerIndex(0);
+
+    int sampling=leakSampling;
+    if (sampling>0) {
+      checkLeaks();
+      if (++sampleCount>=sampling) {
+        sampleCount=0;
+        buf.leak=new LeakRef(buf);
+        tracked.add(buf.leak);
+      }
+    }
+    return new Buffer(buf);
+  }
+
+  /** Return a contiguous copy of the Buffer (eg a composite) in a pooled Buffer */
+  public Buffer copy(Buffer src) {
+    return acquire(src.length()).appendBuffer(src);
+  }
+
+  /** Return the Buffer to the pool (ignored if not from this pool) */
+  public void release(Buffer buffer) {
+    PoolByteBuf buf=owned(buffer.getByteBuf());
+    if (buf==null)
+      return;
+    if (buf.released)
+      throw new IllegalStateException("Buffer already released");
+    buf.released=true;
+
+    if (buf.leak!=null) {
+      tracked.remove(buf.leak);
+      buf.leak.clear();
+      buf.leak=null;
+    }
+
+    // Buffers that were grown keep the array only if it still fits a class
+    byte[] array=buf.array();
+    int cls=sizeClass(array.length);
+    if ((array.length<=MAX_SIZE) && ((MIN_SIZE<<cls)==array.length) && (this.free[cls].size()<this.maxFree)) {
+      this.free[cls].addFirst(array);
+      released++;
+    }
+  }
+
+  /** Return number of acquires */
+  public long acquired() {
+    return this.acquired;
+  }
+
+  /** Return number of acquires served from the pool */
+  public long reused() {
+    return this.reused;
+  }
+
+  /** Return number of buffers returned to the pool */
+  public long released() {
+    return this.released;
+  }
+
+  // Implementation
+
+  /** Return the size class for size */
+  protected static int sizeClass(int size) {
+    if (size<=MIN_SIZE)
+      return 0;
+    return 32-Integer.numberOfLeadingZeros(size-1)-Integer.numberOfTrailingZeros(MIN_SIZE);
+  }
+
+  /** Return the pooled ByteBuf behind buf if it belongs to this pool */
+  protected PoolByteBuf owned(ByteBuf buf) {
+    // Buffer.getByteBuf() returns a duplicate
+    while ((buf!=null) && !(buf instanceof PoolByteBuf))
+      buf=buf.unwrap();
+    return ((buf!=null) && (((PoolByteBuf)buf).pool==this))?(PoolByteBuf)buf:null;
+  }
+
+  /** Report tracked buffers that were collected without being released */
+  protected static void checkLeaks() {
+    LeakRef ref;
+    while ((ref=(LeakRef)collected.poll())!=null) {
+      if (tracked.remove(ref)) {
+        leaks.incrementAndGet();
+        RxJavaPlugins.getInstance().getErrorHandler().handleError(new IllegalStateException("Buffer was not released before it was garbage collected",ref.site));
+      }
+    }
+  }
+}
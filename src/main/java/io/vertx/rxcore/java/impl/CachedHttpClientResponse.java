@@ -0,0 +1,135 @@
+package io.vertx.rxcore.java.impl;
+
+import io.netty.buffer.Unpooled;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
+import org.vertx.java.core.http.HttpClientResponse;
+import org.vertx.java.core.net.NetSocket;
+
+import java.util.Collections;
+import java.util.List;
+
+/** HttpClientResponse replayed from memory
+ *
+ * <p>The body is delivered as a single Buffer on the first resume() once a dataHandler is set, followed by the
+ * end, which is what {@link ReadStreamHandler} does on the first request. Each instance can be read once, but
+ * they are cheap to create as the status, headers and body are shared: the Buffer delivered is a read-only view
+ * of the body (with its own indices), so it must be copied before it is modified.</p>
+ *
+ **/
+public class CachedHttpClientResponse implements HttpClientResponse {
+
+  // Instance variables
+
+  /** Status code */
+  private final int statusCode;
+
+  /** Status message */
+  private final String statusMessage;
+
+  /** Headers */
+  private final MultiMap headers;
+
+  /** Body */
+  private final Buffer body;
+
+  /** Handlers */
+  private Handler<Buffer> dataHandler;
+  private Handler<Void> endHandler;
+
+  /** Paused */
+  private boolean paused;
+
+  /** Delivered */
+  private boolean delivered;
+
+  // Public methods
+
+  /** Create new CachedHttpClientResponse */
+  public CachedHttpClientResponse(int statusCode, String statusMessage, MultiMap headers, Buffer body) {
+    this.statusCode=statusCode;
+    this.statusMessage=statusMessage;
+    this.headers=headers;
+    this.body=body;
+  }
+
+  // HttpClientResponse implementation
+
+  public int statusCode() {
+    return this.statusCode;
+  }
+
+  public String statusMessage() {
+    return this.statusMessage;
+  }
+
+  public MultiMap headers() {
+    return this.headers;
+  }
+
+  public MultiMap trailers() {
+    return new CaseInsensitiveMultiMap();
+  }
+
+  public List<String> cookies() {
+    return Collections.emptyList();
+  }
+
+  public HttpClientResponse bodyHandler(Handler<Buffer> bodyHandler) {
+    delivered=true;
+    bodyHandler.handle(view());
+    return this;
+  }
+
+  public NetSocket netSocket() {
+    throw new UnsupportedOperationException("Cached response has no connection");
+  }
+
+  // ReadStream implementation
+
+  public HttpClientResponse dataHandler(Handler<Buffer> handler) {
+    this.dataHandler=handler;
+    return this;
+  }
+
+  public HttpClientResponse pause() {
+    paused=true;
+    return this;
+  }
+
+  public HttpClientResponse resume() {
+    paused=false;
+    deliver();
+    return this;
+  }
+
+  public HttpClientResponse endHandler(Handler<Void> handler) {
+    this.endHandler=handler;
+    return this;
+  }
+
+  public HttpClientResponse exceptionHandler(Handler<Throwable> handler) {
+    // Never fails
+    return this;
+  }
+
+  // Implementation
+
+  /** Return a read-only view of the body */
+  protected Buffer view() {
+    return new Buffer(Unpooled.unmodifiableBuffer(body.getByteBuf()));
+  }
+
+  /** Deliver the body and end (if not paused) */
+  protected void deliver() {
+    if (delivered || paused || (dataHandler==null))
+      return;
+    delivered=true;
+    if (body.length()>0)
+      dataHandler.handle(view());
+    if (endHandler!=null)
+      endHandler.handle(null);
+  }
+}
@@ -0,0 +1,452 @@
+package io.vertx.rxcore.java.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.vertx.java.core.buffer.Buffer;
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/** Operator that compresses or decompresses a stream of Buffers (deflate or gzip)
+ *
+ * <p>Output is handed out one chunk of up to chunkSize bytes at a time as it is requested, so expanding a small
+ * input does not buffer its whole output. Output is also flushed at the end of each input Buffer when
+ * decompressing, but compressed output is only produced as the Deflater fills its window (and on completion).
+ * Deflater and Inflater instances are reused across streams.</p>
+ *
+ **/
+public class CompressOperator implements Observable.Operator<Buffer,Buffer> {
+
+  // Definitions
+
+  /** Format */
+  public enum Format {
+    /** zlib wrapped deflate (HTTP "deflate") */
+    DEFLATE,
+    /** gzip */
+    GZIP
+  }
+
+  /** Default output chunk size */
+  public final static int DEFAULT_CHUNK_SIZE=8*1024;
+
+  /** Maximum instances kept for reuse (of each kind) */
+  public final static int MAX_POOLED=32;
+
+  /** gzip magic (big-endian) */
+  private final static int GZIP_MAGIC=0x1f8b;
+
+  /** gzip header flags */
+  private final static int FHCRC=2, FEXTRA=4, FNAME=8, FCOMMENT=16;
+
+  /** gzip member states */
+  private final static int HEADER=0, BODY=1, TRAILER=2, END=3;
+
+  /** Idle instances */
+  private final static ConcurrentLinkedQueue<Deflater> deflaters=new ConcurrentLinkedQueue<>();
+  private final static ConcurrentLinkedQueue<Deflater> rawDeflaters=new ConcurrentLinkedQueue<>();
+  private final static ConcurrentLinkedQueue<Inflater> inflaters=new ConcurrentLinkedQueue<>();
+  private final static ConcurrentLinkedQueue<Inflater> rawInflaters=new ConcurrentLinkedQueue<>();
+
+  // Instance variables
+
+  /** Format */
+  private final Format format;
+
+  /** Compress (or decompress) */
+  private final boolean compress;
+
+  /** Compression level */
+  private final int level;
+
+  /** Output chunk size */
+  private final int chunkSize;
+
+  // Public methods
+
+  /** Create new compressing operator */
+  public static CompressOperator compress(Format format, int level, int chunkSize) {
+    return new CompressOperator(format,true,level,chunkSize);
+  }
+
+  /** Create new decompressing operator */
+  public static CompressOperator decompress(Format format, int chunkSize) {
+    return new CompressOperator(format,false,Deflater.DEFAULT_COMPRESSION,chunkSize);
+  }
+
+  /** Create new CompressOperator */
+  protected CompressOperator(Format format, boolean compress, int level, int chunkSize) {
+    if (chunkSize<1)
+      throw new IllegalArgumentException("Invalid chunk size (chunkSize="+chunkSize+")");
+    this.format=format;
+    this.compress=compress;
+    this.level=level;
+    this.chunkSize=chunkSize;
+  }
+
+  // Operator implementation
+
+  /** Add Subscriber */
+  public Subscriber<? super Buffer> call(Subscriber<? super Buffer> child) {
+    return compress?new Compressor(child):new Decompressor(child);
+  }
+
+  // Implementation
+
+  /** Return the bytes of buf as an array section (copying only if it has no backing array) */
+  protected static byte[] array(ByteBuf buf, int[] offset) {
+    if (buf.hasArray()) {
+      offset[0]=buf.arrayOffset()+buf.readerIndex();
+      return buf.array();
+    }
+    byte[] data=new byte[buf.readableBytes()];
+    buf.getBytes(buf.readerIndex(),data);
+    offset[0]=0;
+    return data;
+  }
+
+  /** Take a Deflater from the idle pool */
+  protected Deflater takeDeflater(boolean raw) {
+    Deflater d=(raw?rawDeflaters:deflaters).poll();
+    if (d==null)
+      d=new Deflater(level,raw);
+    d.setLevel(level);
+    return d;
+  }
+
+  /** Return a Deflater to the idle pool */
+  protected static void releaseDeflater(Deflater d, boolean raw) {
+    ConcurrentLinkedQueue<Deflater> idle=raw?rawDeflaters:deflaters;
+    if (idle.size()<MAX_POOLED) {
+      d.reset();
+      idle.offer(d);
+    }
+    else {
+      d.end();
+    }
+  }
+
+  /** Take an Inflater from the idle pool */
+  protected static Inflater takeInflater(boolean raw) {
+    Inflater i=(raw?rawInflaters:inflaters).poll();
+    return (i!=null)?i:new Inflater(raw);
+  }
+
+  /** Return an Inflater to the idle pool */
+  protected static void releaseInflater(Inflater i, boolean raw) {
+    ConcurrentLinkedQueue<Inflater> idle=raw?rawInflaters:inflaters;
+    if (idle.size()<MAX_POOLED) {
+      i.reset();
+      idle.offer(i);
+    }
+    else {
+      i.end();
+    }
+  }
+
+  /** Compressor */
+  protected class Compressor extends TransformSubscriber<Buffer,Buffer> {
+
+    /** Deflater (null once released) */
+    private volatile Deflater deflater;
+
+    /** Raw deflate with gzip header and trailer */
+    private final boolean gzip=(format==Format.GZIP);
+
+    /** Checksum (gzip) */
+    private final CRC32 crc=new CRC32();
+
+    /** gzip header written */
+    private boolean header;
+
+    /** Upstream completed */
+    private boolean finishing;
+
+    /** Create new Compressor */
+    public Compressor(Subscriber<? super Buffer> child) {
+      super(child);
+      this.deflater=takeDeflater(gzip);
+      add(Subscriptions.create(new Action0() {
+        public void call() {
+          // Abandoned streams are not reused
+          Deflater d=deflater;
+          deflater=null;
+          if (d!=null)
+            d.end();
+        }
+      }));
+    }
+
+    @Override protected void transform(Buffer in, Queue<Buffer> out) throws Exception {
+      Deflater d=deflater;
+      ByteBuf buf=in.getByteBuf();
+      if ((d==null) || !buf.isReadable())
+        return;
+      int[] offset=new int[1];
+      byte[] data=array(buf,offset);
+      if (gzip)
+        crc.update(data,offset[0],buf.readableBytes());
+      d.setInput(data,offset[0],buf.readableBytes());
+    }
+
+    @Override protected void produce(Queue<Buffer> out) throws Exception {
+      Deflater d=deflater;
+      if (d==null)
+        return;
+
+      if (gzip && !header) {
+        header=true;
+        ByteBuf h=Unpooled.buffer(10);
+        h.writeShort(GZIP_MAGIC).writeByte(Deflater.DEFLATED).writeByte(0).writeInt(0).writeByte(0).writeByte(0xff);
+        out.add(new Buffer(h));
+        return;
+      }
+
+      // Nothing more until the next input
+      if (!finishing && d.needsInput())
+        return;
+
+      byte[] chunk=new byte[chunkSize];
+      int len=0;
+      while ((len<chunkSize) && !d.finished()) {
+        int n=d.deflate(chunk,len,chunkSize-len);
+        len+=n;
+        if ((n==0) && !finishing && d.needsInput())
+          break;
+      }
+      if (len>0)
+        out.add(new Buffer(Unpooled.wrappedBuffer(chunk,0,len)));
+
+      if (d.finished()) {
+        if (gzip) {
+          ByteBuf trailer=Unpooled.buffer(8);
+          trailer.writeInt(Integer.reverseBytes((int)crc.getValue()));
+          trailer.writeInt(Integer.reverseBytes((int)d.getBytesRead()));
+          out.add(new Buffer(trailer));
+        }
+        deflater=null;
+        releaseDeflater(d,gzip);
+      }
+    }
+
+    @Override protected void finish(Queue<Buffer> out) throws Exception {
+      Deflater d=deflater;
+      if (d!=null) {
+        finishing=true;
+        d.finish();
+        produce(out);
+      }
+    }
+
+    /** Return the Deflater to the idle pool without producing any output */
+    protected void release() {
+      Deflater d=deflater;
+      deflater=null;
+      if (d!=null)
+        releaseDeflater(d,gzip);
+    }
+  }
+
+  /** Decompressor */
+  protected class Decompressor extends TransformSubscriber<Buffer,Buffer> {
+
+    /** Inflater (null once released) */
+    private volatile Inflater inflater;
+
+    /** Raw inflate with gzip header and trailer */
+    private final boolean gzip=(format==Format.GZIP);
+
+    /** Checksum (gzip) */
+    private final CRC32 crc=new CRC32();
+
+    /** gzip member state */
+    private int state=(format==Format.GZIP)?HEADER:BODY;
+
+    /** Partial gzip header or trailer */
+    private final ByteBuf partial=Unpooled.buffer(16);
+
+    /** Current input */
+    private byte[] input;
+    private int inputPos;
+    private int inputEnd;
+
+    /** Create new Decompressor */
+    public Decompressor(Subscriber<? super Buffer> child) {
+      super(child);
+      this.inflater=takeInflater(gzip);
+      add(Subscriptions.create(new Action0() {
+        public void call() {
+          // Abandoned streams are not reused
+          Inflater i=inflater;
+          inflater=null;
+          if (i!=null)
+            i.end();
+        }
+      }));
+    }
+
+    @Override protected void transform(Buffer in, Queue<Buffer> out) throws Exception {
+      ByteBuf buf=in.getByteBuf();
+      if (!buf.isReadable())
+        return;
+      int[] offset=new int[1];
+      input=array(buf,offset);
+      inputPos=offset[0];
+      inputEnd=inputPos+buf.readableBytes();
+
+      Inflater i=inflater;
+      if ((state==BODY) && (i!=null))
+        setInput(i);
+    }
+
+    @Override protected void produce(Queue<Buffer> out) throws Exception {
+      Inflater i=inflater;
+      while (i!=null) {
+        switch (state) {
+          case HEADER:
+            if (!readHeader())
+              return;
+            state=BODY;
+            crc.reset();
+            i.reset();
+            setInput(i);
+            break;
+
+          case BODY:
+            byte[] chunk=new byte[chunkSize];
+            int len=0;
+            try {
+              // Output may still be pending after the input has been consumed
+              while ((len<chunkSize) && !i.finished()) {
+                int n=i.inflate(chunk,len,chunkSize-len);
+                if (n==0) {
+                  if (i.needsDictionary())
+                    throw new ZipException("Deflate dictionary not supported");
+                  break;
+                }
+                len+=n;
+              }
+            }
+            catch(DataFormatException e) {
+              throw new ZipException("Invalid compressed data: "+e.getMessage());
+            }
+            inputPos=inputEnd-i.getRemaining();
+            if (len>0) {
+              if (gzip)
+                crc.update(chunk,0,len);
+              out.add(new Buffer(Unpooled.wrappedBuffer(chunk,0,len)));
+              return;
+            }
+            if (!i.finished())
+              return;
+            if (!gzip) {
+              // Anything after the zlib stream is ignored
+              state=END;
+              inputPos=inputEnd;
+              break;
+            }
+            state=TRAILER;
+            break;
+
+          case TRAILER:
+            if (!fill(8))
+              return;
+            long crcValue=Integer.reverseBytes(partial.readInt())&0xffffffffL;
+            long size=Integer.reverseBytes(partial.readInt())&0xffffffffL;
+            partial.clear();
+            if ((crcValue!=crc.getValue()) || (size!=(i.getBytesWritten()&0xffffffffL)))
+              throw new ZipException("Corrupt gzip stream (crc or size mismatch)");
+            // Another member may follow
+            state=HEADER;
+            if (inputPos==inputEnd)
+              return;
+            break;
+
+          default:
+            inputPos=inputEnd;
+            return;
+        }
+      }
+    }
+
+    @Override protected void finish(Queue<Buffer> out) throws Exception {
+      Inflater i=inflater;
+      if (i==null)
+        return;
+      if ((state==BODY) || (state==TRAILER) || partial.isReadable())
+        throw new ZipException("Truncated compressed stream");
+      inflater=null;
+      releaseInflater(i,gzip);
+    }
+
+    /** Pass the current input to the Inflater */
+    private void setInput(Inflater i) {
+      if (inputPos<inputEnd)
+        i.setInput(input,inputPos,inputEnd-inputPos);
+    }
+
+    /** Collect len bytes of header/trailer from the input (returning false if more input is needed) */
+    private boolean fill(int len) {
+      int n=Math.min(len-partial.readableBytes(),inputEnd-inputPos);
+      if (n>0) {
+        partial.writeBytes(input,inputPos,n);
+        inputPos+=n;
+      }
+      return partial.readableBytes()>=len;
+    }
+
+    /** Read a gzip header (returning false if more input is needed) */
+    private boolean readHeader() throws ZipException {
+      if (!fill(10))
+        return false;
+      if ((partial.getUnsignedShort(0)!=GZIP_MAGIC) || (partial.getByte(2)!=Deflater.DEFLATED))
+        throw new ZipException("Not in gzip format");
+      int flags=partial.getUnsignedByte(3);
+
+      // Optional fields are variable length so collect them a byte at a time
+      int need=10;
+      if ((flags&FEXTRA)!=0) {
+        if (!fill(need+2))
+          return false;
+        need+=2+(partial.getUnsignedByte(need)|(partial.getUnsignedByte(need+1)<<8));
+        if (!fill(need))
+          return false;
+      }
+      if ((flags&FNAME)!=0) {
+        need=skipString(need);
+        if (need<0)
+          return false;
+      }
+      if ((flags&FCOMMENT)!=0) {
+        need=skipString(need);
+        if (need<0)
+          return false;
+      }
+      if (((flags&FHCRC)!=0) && !fill(need+=2))
+        return false;
+
+      partial.clear();
+      return true;
+    }
+
+    /** Collect a zero-terminated string starting at from (returning the end or -1 if more input is needed) */
+    private int skipString(int from) {
+      int at=from;
+      while (true) {
+        if (!fill(at+1))
+          return -1;
+        if (partial.getByte(at++)==0)
+          return at;
+      }
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package io.vertx.rxcore.java.impl;
+
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.impl.DefaultContext;
+import org.vertx.java.core.impl.VertxInternal;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.subscriptions.BooleanSubscription;
+import rx.subscriptions.Subscriptions;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Implementation of Scheduler that spreads work across a pool of event loop contexts
+ *
+ * <p>Each Worker is bound to a single context so the actions it runs are ordered and single-threaded, while
+ * separate Workers (eg one per rail with parallel() or per group with groupBy()) are assigned to different
+ * event loops. Results should be returned to the calling Verticle with observeOn(RxVertx.contextScheduler())</p>
+ *
+ **/
+public class ContextPoolScheduler extends Scheduler {
+
+  // Definitions
+
+  /** Worker assignment strategy */
+  public enum Strategy {
+    /** Assign each new Worker to the next context in turn */
+    ROUND_ROBIN,
+    /** Assign each new Worker to the context with the fewest pending actions (then fewest Workers) */
+    LEAST_LOADED
+  };
+
+  /** Pooled context */
+  protected static class Slot {
+
+    /** Context */
+    protected final DefaultContext context;
+
+    /** Actions scheduled but not yet completed */
+    protected final AtomicInteger pending=new AtomicInteger();
+
+    /** Active workers */
+    protected final AtomicInteger workers=new AtomicInteger();
+
+    /** Create new Slot */
+    protected Slot(DefaultContext context) {
+      this.context=context;
+    }
+  }
+
+  // Instance variables
+
+  /** Contexts */
+  private final Slot[] slots;
+
+  /** Strategy */
+  private final Strategy strategy;
+
+  /** Next slot (round-robin) */
+  private final AtomicInteger next=new AtomicInteger();
+
+  // Public methods
+
+  /** Create new ContextPoolScheduler */
+  public ContextPoolScheduler(Vertx vertx, int size, Strategy strategy) {
+    if (size<1)
+      throw new IllegalArgumentException("ContextPoolScheduler requires at least one context (size="+size+")");
+
+    VertxInternal core=(VertxInternal)vertx;
+
+    this.strategy=strategy;
+    this.slots=new Slot[size];
+    // Each context is bound to the next event loop in the core group
+    for (int i=0; i<size; i++) {
+      this.slots[i]=new Slot(core.createEventLoopContext());
+    }
+  }
+
+  /** Return the assignment strategy */
+  public Strategy strategy() {
+    return this.strategy;
+  }
+
+  /** Return the number of pending actions across all contexts */
+  public int pending() {
+    int total=0;
+    for (Slot slot : this.slots) {
+      total+=slot.pending.get();
+    }
+    return total;
+  }
+
+  // Scheduler implementation
+
+  /** Number of contexts (used by parallel() to size the rails) */
+  @Override
+  public int parallelism() {
+    return this.slots.length;
+  }
+
+  /** Create worker */
+  @Override
+  public Worker createWorker() {
+    return new PoolWorker(select());
+  }
+
+  // Implementation
+
+  /** Select the slot for a new Worker */
+  protected Slot select() {
+    if (this.slots.length==1)
+      return this.slots[0];
+
+    switch(this.strategy) {
+      case LEAST_LOADED:
+        Slot best=this.slots[0];
+        for (int i=1; i<this.slots.length; i++) {
+          Slot cur=this.slots[i];
+          int diff=cur.pending.get()-best.pending.get();
+          if ((diff<0) || ((diff==0) && (cur.workers.get()<best.workers.get())))
+            best=cur;
+        }
+        return best;
+
+      default:
+        return this.slots[(next.getAndIncrement() & Integer.MAX_VALUE) % this.slots.length];
+    }
+  }
+
+  // Scheduler.Worker implementation
+
+  /** Worker bound to a single pooled context */
+  private class PoolWorker extends Worker {
+
+    /** Slot */
+    protected final Slot slot;
+
+    /** Subscription for the worker */
+    protected final BooleanSubscription innerSubscription=BooleanSubscription.create(new Action0() {
+      public void call() {
+        slot.workers.decrementAndGet();
+      }
+    });
+
+    /** Create new PoolWorker */
+    protected PoolWorker(Slot slot) {
+      this.slot=slot;
+      this.slot.workers.incrementAndGet();
+    }
+
+    // Scheduler.Worker implementation
+
+    @Override
+    public Subscription schedule(final Action0 action) {
+      return execute(action,new BooleanSubscription());
+    }
+
+    @Override
+    public Subscription schedule(final Action0 action, long delayTime, TimeUnit unit) {
+      if (delayTime<=0)
+        return schedule(action);
+
+      final BooleanSubscription actionSubscription=new BooleanSubscription();
+      // Delay on the event loop then run through the context so it is set for the action
+      final ScheduledFuture<?> timer=slot.context.getEventLoop().schedule(new Runnable() {
+        public void run() {
+          execute(action,actionSubscription);
+        }
+      },delayTime,unit);
+
+      return Subscriptions.create(new Action0() {
+        public void call() {
+          actionSubscription.unsubscribe();
+          timer.cancel(false);
+        }
+      });
+    }
+
+    /** Run the action on the context unless cancelled */
+    protected Subscription execute(final Action0 action, final BooleanSubscription actionSubscription) {
+      slot.pending.incrementAndGet();
+      slot.context.execute(new Runnable() {
+        public void run() {
+          try {
+            if (innerSubscription.isUnsubscribed() || actionSubscription.isUnsubscribed())
+              return;
+            action.call();
+          }
+          finally {
+            slot.pending.decrementAndGet();
+          }
+        }
+      });
+      return actionSubscription;
+    }
+
+    @Override
+    public void unsubscribe() {
+      innerSubscription.unsubscribe();
+    }
+
+    @Override
+    public boolean isUnsubscribed() {
+      return innerSubscription.isUnsubscribed();
+    }
+  }
+}
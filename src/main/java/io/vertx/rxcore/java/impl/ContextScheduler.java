@@ -1,5 +1,6 @@
 package io.vertx.rxcore.java.impl;
 
+import org.vertx.java.core.Context;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import rx.Scheduler;
@@ -8,10 +9,16 @@ import rx.functions.Action0;
 import rx.functions.Action1;
 import rx.subscriptions.BooleanSubscription;
 
-import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 
-/** Implementation of Scheduler that runs on the Verticle Context */
+/** Implementation of Scheduler that runs on the Verticle Context
+ *
+ * <p>Each Worker is bound to the context that created it, so observeOn(contextScheduler) can be used to
+ * return results from other contexts (eg ContextPoolScheduler) to the calling Verticle</p>
+ *
+ **/
 public class ContextScheduler extends Scheduler {
 
   // Instance variables
@@ -37,14 +44,18 @@ public class ContextScheduler extends Scheduler {
   /** Worker */
   private class ContextWorker extends Worker {
 
-    /** Maintain list of all active timers */
-    protected ArrayDeque<Long> timers=new ArrayDeque();
+    /** Context that created the worker */
+    protected final Context context=vertx.currentContext();
+
+    /** Maintain list of all active timers (timers may fire on other contexts) */
+    protected final Queue<Long> timers=new ConcurrentLinkedQueue<>();
 
     /** Cancel all timers */
     protected Action0 cancelAll=new Action0() {
       public void call() {
-        while (!timers.isEmpty())
-          vertx.cancelTimer(timers.poll());
+        Long id;
+        while ((id=timers.poll())!=null)
+          vertx.cancelTimer(id);
       }
     };
 
@@ -55,7 +66,7 @@ public class ContextScheduler extends Scheduler {
 
     @Override
     public Subscription schedule(final Action0 action) {
-      vertx.currentContext().runOnContext(new Handler<Void>() {
+      context.runOnContext(new Handler<Void>() {
         public void handle(Void event) {
           if (innerSubscription.isUnsubscribed())
             return;
@@ -67,12 +78,18 @@ public class ContextScheduler extends Scheduler {
 
     @Override
     public Subscription schedule(final Action0 action, long delayTime, TimeUnit unit) {
-      timers.add(vertx.setTimer(unit.toMillis(delayTime),new Handler<Long>() {
+      long delay=unit.toMillis(delayTime);
+
+      // Timers must be at least 1ms
+      if (delay<1)
+        return schedule(action);
+
+      timers.add(vertx.setTimer(delay,new Handler<Long>() {
         public void handle(Long id) {
+          timers.remove(id);
           if (innerSubscription.isUnsubscribed())
             return;
-          action.call();
-          timers.remove(id);
+          callOnContext(action);
         }
       }));
       return this.innerSubscription;
@@ -85,7 +102,7 @@ public class ContextScheduler extends Scheduler {
       Handler bootstrap=new Handler<Long>() {
         public void handle(Long id) {
 
-          action.call();
+          callOnContext(action);
 
           // Ensure still active
           if (innerSubscription.isUnsubscribed())
@@ -96,7 +113,7 @@ public class ContextScheduler extends Scheduler {
             public void handle(Long nestedId) {
               if (innerSubscription.isUnsubscribed())
                 return;
-              action.call();
+              callOnContext(action);
             }
           }));
         }
@@ -106,7 +123,7 @@ public class ContextScheduler extends Scheduler {
 
       // If initialDelay is 0 then fire bootstrap immediately
       if (bootDelay<1) {
-        vertx.runOnContext(bootstrap);
+        context.runOnContext(bootstrap);
       }
       else {
         timers.add(vertx.setTimer(bootDelay,bootstrap));
@@ -115,6 +132,21 @@ public class ContextScheduler extends Scheduler {
       return this.innerSubscription;
     }
 
+    /** Call the action, hopping back to the worker context if the timer fired elsewhere */
+    protected void callOnContext(final Action0 action) {
+      if (vertx.currentContext()==context) {
+        action.call();
+        return;
+      }
+      context.runOnContext(new Handler<Void>() {
+        public void handle(Void event) {
+          if (innerSubscription.isUnsubscribed())
+            return;
+          action.call();
+        }
+      });
+    }
+
     @Override
     public void unsubscribe() {
       innerSubscription.unsubscribe();
@@ -0,0 +1,164 @@
+package io.vertx.rxcore.java.impl;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.file.AsyncFile;
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Reads a range of an AsyncFile as a stream of Buffers
+ *
+ * <p>One read of up to chunkSize bytes is outstanding at a time and only while the Subscriber has demand. The
+ * file is closed on completion, error or unsubscribe.</p>
+ *
+ **/
+public class FileRangeReader implements Observable.OnSubscribe<Buffer> {
+
+  // Definitions
+
+  /** Default read size */
+  public final static int DEFAULT_CHUNK_SIZE=64*1024;
+
+  // Instance variables
+
+  /** File */
+  private final AsyncFile file;
+
+  /** Start offset */
+  private final long start;
+
+  /** Bytes to read */
+  private final long length;
+
+  /** Read size */
+  private final int chunkSize;
+
+  // Public methods
+
+  /** Create new FileRangeReader */
+  public FileRangeReader(AsyncFile file, long start, long length, int chunkSize) {
+    this.file=file;
+    this.start=start;
+    this.length=length;
+    this.chunkSize=chunkSize;
+  }
+
+  // OnSubscribe implementation
+
+  public void call(Subscriber<? super Buffer> subscriber) {
+    final Reader reader=new Reader(subscriber);
+    subscriber.add(Subscriptions.create(new Action0() {
+      public void call() {
+        reader.unsubscribed();
+      }
+    }));
+    subscriber.setProducer(reader);
+  }
+
+  // Implementation
+
+  /** Reader for a single Subscriber */
+  protected class Reader implements Producer, Handler<AsyncResult<Buffer>> {
+
+    /** Subscriber */
+    private final Subscriber<? super Buffer> subscriber;
+
+    /** Outstanding requests */
+    private final AtomicLong requested=new AtomicLong();
+
+    /** Next read position */
+    private long pos=start;
+
+    /** Read in progress */
+    private boolean reading;
+
+    /** Closed */
+    private boolean closed;
+
+    /** Create new Reader */
+    public Reader(Subscriber<? super Buffer> subscriber) {
+      this.subscriber=subscriber;
+    }
+
+    // Producer implementation
+
+    public void request(long n) {
+      if (n<=0)
+        return;
+      if (requested.addAndGet(n)<0)
+        requested.set(Long.MAX_VALUE);
+      next();
+    }
+
+    // Handler implementation
+
+    /** Read completed */
+    public void handle(AsyncResult<Buffer> res) {
+      synchronized (this) {
+        reading=false;
+        if (subscriber.isUnsubscribed()) {
+          close();
+          return;
+        }
+      }
+      if (res.failed()) {
+        close();
+        subscriber.onError(res.cause());
+        return;
+      }
+      Buffer data=res.result();
+      if (data.length()==0) {
+        close();
+        subscriber.onError(new IllegalStateException("File shorter than expected (pos="+pos+")"));
+        return;
+      }
+      pos+=data.length();
+      if (requested.get()!=Long.MAX_VALUE)
+        requested.decrementAndGet();
+      subscriber.onNext(data);
+      next();
+    }
+
+    // Implementation
+
+    /** Start the next read if there is demand */
+    private void next() {
+      int len;
+      synchronized (this) {
+        if (reading || closed)
+          return;
+        long remaining=start+length-pos;
+        if (remaining<=0) {
+          close();
+          subscriber.onCompleted();
+          return;
+        }
+        if (requested.get()<=0)
+          return;
+        reading=true;
+        len=(int)Math.min(remaining,chunkSize);
+      }
+      file.read(new Buffer(len),0,pos,len,this);
+    }
+
+    /** Close the file once no read is in progress */
+    private synchronized void unsubscribed() {
+      if (!reading)
+        close();
+    }
+
+    /** Close the file */
+    private synchronized void close() {
+      if (!closed) {
+        closed=true;
+        file.close();
+      }
+    }
+  }
+}
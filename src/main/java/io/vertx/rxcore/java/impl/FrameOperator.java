@@ -0,0 +1,264 @@
+package io.vertx.rxcore.java.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.rxcore.SizeLimitExceededException;
+import org.vertx.java.core.buffer.Buffer;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.util.List;
+import java.util.Queue;
+
+/** Operator that splits a stream of Buffers into records
+ *
+ * <p>Received chunks are collected in a composite buffer and each record is returned as a slice of the chunks
+ * it spans, so record bodies are never copied. Partial records are carried over to the next chunk and
+ * {@link SizeLimitExceededException} is raised as soon as a record is known to exceed maxFrame.</p>
+ *
+ * <p>If a {@link BufferPool} is set then records that span chunks are copied into a contiguous pooled Buffer
+ * instead, which the consumer should release (releasing the other records is a no-op).</p>
+ *
+ **/
+public abstract class FrameOperator implements Observable.Operator<Buffer,Buffer> {
+
+  // Definitions
+
+  /** Length prefix encoded as an unsigned base-128 varint (as used by protobuf) */
+  public final static int VARINT=0;
+
+  /** Finds frames within the received bytes (one per subscription) */
+  protected abstract static class Framer {
+
+    /** Return true if bytes left at the end of the stream form a final frame */
+    protected boolean lastFrame() {
+      return false;
+    }
+
+    /** Bytes before the body of the last frame found (eg length prefix) */
+    protected int head;
+
+    /** Bytes after the body of the last frame found (eg delimiter) */
+    protected int tail;
+
+    /** Return the body length of the frame at in[index..index+readable) or -1 if incomplete (setting head/tail) */
+    protected abstract int next(ByteBuf in, int index, int readable);
+  }
+
+  // Instance variables
+
+  /** Maximum frame size */
+  protected final int maxFrame;
+
+  /** Pool for records that span chunks (optional) */
+  protected BufferPool pool;
+
+  // Public methods
+
+  /** Create new FrameOperator */
+  protected FrameOperator(int maxFrame) {
+    this.maxFrame=maxFrame;
+  }
+
+  /** Copy records that span chunks into Buffers from pool */
+  public FrameOperator pooled(BufferPool pool) {
+    this.pool=pool;
+    return this;
+  }
+
+  /** Split on delimiter (which is removed, the last record need not be terminated) */
+  public static FrameOperator delimited(final byte[] delim, int maxFrame) {
+    if (delim.length==0)
+      throw new IllegalArgumentException("Delimiter must not be empty");
+    return new FrameOperator(maxFrame) {
+      protected Framer framer() {
+        return new Framer() {
+          /** Bytes of the current frame already searched */
+          private int scanned;
+
+          /** The last record need not be terminated */
+          protected boolean lastFrame() {
+            return true;
+          }
+
+          protected int next(ByteBuf in, int index, int readable) {
+            for (int i=scanned;i<=readable-delim.length;i++) {
+              // Jump to the next candidate
+              int at=in.indexOf(index+i,index+readable,delim[0]);
+              if (at<0)
+                break;
+              i=at-index;
+              if ((i<=readable-delim.length) && matches(in,at)) {
+                scanned=0;
+                head=0;
+                tail=delim.length;
+                return checkFrame(i);
+              }
+            }
+            // Resume the search where the delimiter could still start
+            scanned=Math.max(0,readable-delim.length+1);
+            checkFrame(scanned);
+            return -1;
+          }
+
+          private boolean matches(ByteBuf in, int at) {
+            for (int j=0;j<delim.length;j++) {
+              if (in.getByte(at+j)!=delim[j])
+                return false;
+            }
+            return true;
+          }
+        };
+      }
+    };
+  }
+
+  /** Split into fixed size records */
+  public static FrameOperator fixed(final int size) {
+    if (size<1)
+      throw new IllegalArgumentException("Invalid frame size (size="+size+")");
+    return new FrameOperator(size) {
+      protected Framer framer() {
+        return new Framer() {
+          protected int next(ByteBuf in, int index, int readable) {
+            return (readable>=size)?size:-1;
+          }
+        };
+      }
+    };
+  }
+
+  /** Split into records with a big-endian length prefix of 1, 2 or 4 bytes (or {@link #VARINT}) which is removed */
+  public static FrameOperator lengthPrefixed(final int lengthBytes, int maxFrame) {
+    if ((lengthBytes!=1) && (lengthBytes!=2) && (lengthBytes!=4) && (lengthBytes!=VARINT))
+      throw new IllegalArgumentException("Invalid length prefix (lengthBytes="+lengthBytes+")");
+    return new FrameOperator(maxFrame) {
+      protected Framer framer() {
+        return new Framer() {
+          protected int next(ByteBuf in, int index, int readable) {
+            long len;
+            if (lengthBytes==VARINT) {
+              len=0;
+              int i=0;
+              while (true) {
+                if (i>=readable)
+                  return -1;
+                byte b=in.getByte(index+i);
+                len|=(long)(b&0x7f)<<(7*i);
+                i++;
+                if (b>=0)
+                  break;
+                if (i>=5)
+                  throw new IllegalStateException("Invalid varint length prefix");
+              }
+              head=i;
+            }
+            else {
+              if (readable<lengthBytes)
+                return -1;
+              switch (lengthBytes) {
+                case 1: len=in.getUnsignedByte(index); break;
+                case 2: len=in.getUnsignedShort(index); break;
+                default: len=in.getUnsignedInt(index); break;
+              }
+              head=lengthBytes;
+            }
+            tail=0;
+            // Fail before buffering the body
+            if (len>maxFrame)
+              throw new SizeLimitExceededException(maxFrame,len);
+            return (readable-head>=len)?(int)len:-1;
+          }
+        };
+      }
+    };
+  }
+
+  // Operator implementation
+
+  /** Add Subscriber */
+  public Subscriber<? super Buffer> call(Subscriber<? super Buffer> child) {
+    return new Decoder(child,framer());
+  }
+
+  // Implementation
+
+  /** Create the Framer for a subscription */
+  protected abstract Framer framer();
+
+  /** Fail if the frame is too large */
+  protected int checkFrame(int len) {
+    if (len>maxFrame)
+      throw new SizeLimitExceededException(maxFrame,len);
+    return len;
+  }
+
+  /** Return a slice of the received bytes (a composite of slices if it spans chunks) */
+  protected Buffer slice(CompositeByteBuf in, int index, int len) {
+    if (len==0)
+      return new Buffer(0);
+    List<ByteBuf> parts=in.decompose(index,len);
+    if (parts.size()==1)
+      return new Buffer(parts.get(0));
+    if (pool!=null)
+      return pool.acquire(len).appendBuffer(new Buffer(in.slice(index,len)));
+    return new Buffer(Unpooled.wrappedBuffer(parts.toArray(new ByteBuf[parts.size()])));
+  }
+
+  /** Per-subscription decoder */
+  protected class Decoder extends TransformSubscriber<Buffer,Buffer> {
+
+    /** Framer */
+    private final Framer framer;
+
+    /** Bytes received but not yet framed */
+    private CompositeByteBuf acc=Unpooled.compositeBuffer(Integer.MAX_VALUE);
+
+    /** Create new Decoder */
+    public Decoder(Subscriber<? super Buffer> child, Framer framer) {
+      super(child);
+      this.framer=framer;
+    }
+
+    // TransformSubscriber implementation
+
+    @Override protected void transform(Buffer in, Queue<Buffer> out) throws Exception {
+      ByteBuf chunk=in.getByteBuf();
+      if (!chunk.isReadable())
+        return;
+
+      acc.addComponent(chunk);
+      acc.writerIndex(acc.writerIndex()+chunk.readableBytes());
+
+      boolean framed=false;
+      while (acc.isReadable()) {
+        int index=acc.readerIndex();
+        int len=framer.next(acc,index,acc.readableBytes());
+        if (len<0)
+          break;
+        out.add(slice(acc,index+framer.head,len));
+        acc.readerIndex(index+framer.head+len+framer.tail);
+        framed=true;
+      }
+
+      // Carry the partial frame over in a new buffer as the frames still reference the old components
+      if (framed) {
+        CompositeByteBuf rest=Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        if (acc.isReadable()) {
+          for (ByteBuf part : acc.decompose(acc.readerIndex(),acc.readableBytes()))
+            rest.addComponent(part);
+          rest.writerIndex(acc.readableBytes());
+        }
+        acc=rest;
+      }
+    }
+
+    @Override protected void finish(Queue<Buffer> out) throws Exception {
+      if (acc.isReadable() && framer.lastFrame())
+        out.add(slice(acc,acc.readerIndex(),checkFrame(acc.readableBytes())));
+      else if (acc.isReadable())
+        throw new IllegalStateException("Incomplete frame at end of stream (bytes="+acc.readableBytes()+")");
+    }
+  }
+}
@@ -0,0 +1,173 @@
+package io.vertx.rxcore.java.impl;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.EncodeException;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+
+/** Operator that encodes a stream of JsonObjects as NDJSON, batching small objects into larger Buffers
+ *
+ * <p>Objects are written by a streaming generator straight into the Buffer (UTF-8 without an intermediate
+ * String), and the generator's working buffers are recycled by Jackson. A Buffer is emitted once it reaches
+ * batchSize bytes and on completion, so a batchSize of 0 emits one Buffer per object.</p>
+ *
+ * <p>If a {@link BufferPool} is set the Buffers are taken from it and the consumer should release them.</p>
+ *
+ **/
+public class JsonEncodeOperator implements Observable.Operator<Buffer,JsonObject> {
+
+  // Definitions
+
+  /** Initial capacity of an encoded Buffer */
+  public final static int INITIAL_CAPACITY=256;
+
+  /** Generator factory */
+  private final static JsonFactory factory=JsonStreamOperator.factory();
+
+  // Instance variables
+
+  /** Batch size */
+  private final int batchSize;
+
+  /** Pool for batches (optional) */
+  private BufferPool pool;
+
+  // Public methods
+
+  /** Create new JsonEncodeOperator */
+  public JsonEncodeOperator(int batchSize) {
+    this.batchSize=batchSize;
+  }
+
+  /** Take batches from pool */
+  public JsonEncodeOperator pooled(BufferPool pool) {
+    this.pool=pool;
+    return this;
+  }
+
+  /** Encode a JsonObject into a new Buffer */
+  public static Buffer encode(JsonObject obj, Charset charset) {
+    ByteBuf out=Unpooled.buffer(INITIAL_CAPACITY);
+    encode(obj,charset,out);
+    return new Buffer(out);
+  }
+
+  /** Encode a JsonObject onto the end of a ByteBuf */
+  public static void encode(JsonObject obj, Charset charset, ByteBuf out) {
+    try {
+      JsonGenerator gen;
+      if (StandardCharsets.UTF_8.equals(charset))
+        gen=factory.createGenerator(new ByteBufOutputStream(out),JsonEncoding.UTF8);
+      else
+        gen=factory.createGenerator(new OutputStreamWriter(new ByteBufOutputStream(out),charset));
+      write(gen,obj);
+      gen.close();
+    }
+    catch(IOException e) {
+      throw new EncodeException("Failed to encode as JSON: "+e.getMessage());
+    }
+  }
+
+  // Operator implementation
+
+  /** Add Subscriber */
+  public Subscriber<? super JsonObject> call(Subscriber<? super Buffer> child) {
+    return new TransformSubscriber<JsonObject,Buffer>(child) {
+
+      /** Current batch */
+      private ByteBuf batch;
+
+      @Override protected void transform(JsonObject in, Queue<Buffer> out) throws Exception {
+        if (batch==null) {
+          int capacity=Math.max(INITIAL_CAPACITY,Math.min(batchSize,64*1024));
+          batch=(pool!=null)?pool.acquire(capacity).getByteBuf():Unpooled.buffer(capacity);
+        }
+        encode(in,StandardCharsets.UTF_8,batch);
+        batch.writeByte('\n');
+        if (batch.readableBytes()>=batchSize) {
+          out.add(new Buffer(batch));
+          batch=null;
+        }
+      }
+
+      @Override protected void finish(Queue<Buffer> out) throws Exception {
+        if (batch!=null)
+          out.add(new Buffer(batch));
+        batch=null;
+      }
+    };
+  }
+
+  // Implementation
+
+  /** Write JsonObject */
+  protected static void write(JsonGenerator gen, JsonObject obj) throws IOException {
+    gen.writeStartObject();
+    for (String name : obj.getFieldNames()) {
+      gen.writeFieldName(name);
+      writeValue(gen,obj.getField(name));
+    }
+    gen.writeEndObject();
+  }
+
+  /** Write value (JsonObject/JsonArray fields are wrapped without copying) */
+  protected static void writeValue(JsonGenerator gen, Object value) throws IOException {
+    if (value==null) {
+      gen.writeNull();
+    }
+    else if (value instanceof String) {
+      gen.writeString((String)value);
+    }
+    else if (value instanceof JsonObject) {
+      write(gen,(JsonObject)value);
+    }
+    else if (value instanceof JsonArray) {
+      gen.writeStartArray();
+      for (Object item : (JsonArray)value)
+        writeValue(gen,item);
+      gen.writeEndArray();
+    }
+    else if ((value instanceof Integer) || (value instanceof Long) || (value instanceof Short) || (value instanceof Byte)) {
+      gen.writeNumber(((Number)value).longValue());
+    }
+    else if (value instanceof Double) {
+      gen.writeNumber((Double)value);
+    }
+    else if (value instanceof Float) {
+      // Not widened, so 1.1f is written as 1.1 (as JsonObject.encode() does)
+      gen.writeNumber((Float)value);
+    }
+    else if (value instanceof BigDecimal) {
+      gen.writeNumber((BigDecimal)value);
+    }
+    else if (value instanceof BigInteger) {
+      gen.writeNumber((BigInteger)value);
+    }
+    else if (value instanceof Boolean) {
+      gen.writeBoolean((Boolean)value);
+    }
+    else if (value instanceof byte[]) {
+      gen.writeBinary((byte[])value);
+    }
+    else {
+      // Anything else is left to the mapper
+      gen.writeObject(value);
+    }
+  }
+}
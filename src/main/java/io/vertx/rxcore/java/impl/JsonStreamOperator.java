@@ -0,0 +1,242 @@
+package io.vertx.rxcore.java.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufProcessor;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.rxcore.SizeLimitExceededException;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.DecodeException;
+import org.vertx.java.core.json.JsonObject;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.util.Map;
+import java.util.Queue;
+
+/** Operator that incrementally decodes a stream of Buffers into JsonObjects
+ *
+ * <p>Accepts a sequence of objects (eg NDJSON or concatenated JSON) or a top-level array of objects. Chunks
+ * may split anywhere; each object is emitted as soon as its closing brace arrives and is parsed straight from
+ * the received (UTF-8) bytes, so only the unfinished element is held in
+ * memory. Fails with {@link SizeLimitExceededException} if a single element exceeds maxElementSize.</p>
+ *
+ * <p>Like {@link org.vertx.java.core.json.JsonObject#JsonObject(String)} it accepts // and /* comments, inside and
+ * between elements.</p>
+ *
+ **/
+public class JsonStreamOperator implements Observable.Operator<JsonObject,Buffer> {
+
+  // Definitions
+
+  /** Mapper (configured as org.vertx.java.core.json.impl.Json so the same input is accepted) */
+  private final static ObjectMapper mapper=new ObjectMapper().configure(JsonParser.Feature.ALLOW_COMMENTS,true);
+
+  /** Comment states */
+  private final static int NO_COMMENT=0, SLASH=1, LINE_COMMENT=2, BLOCK_COMMENT=3, BLOCK_STAR=4;
+
+  // Instance variables
+
+  /** Maximum element size */
+  private final long maxElementSize;
+
+  // Public methods
+
+  /** Create new JsonStreamOperator */
+  public JsonStreamOperator(long maxElementSize) {
+    this.maxElementSize=maxElementSize;
+  }
+
+  /** Return the factory of the mapper (whose generators can write any value) */
+  static JsonFactory factory() {
+    return mapper.getFactory();
+  }
+
+  /** Parse a JsonObject directly from bytes */
+  @SuppressWarnings("unchecked")
+  public static JsonObject parse(ByteBuf data) {
+    try {
+      return new JsonObject((Map<String,Object>)mapper.readValue(new ByteBufInputStream(data),Map.class));
+    }
+    catch(Exception e) {
+      throw new DecodeException("Failed to decode (e="+e.getMessage()+")");
+    }
+  }
+
+  // Operator implementation
+
+  /** Add Subscriber */
+  public Subscriber<? super Buffer> call(Subscriber<? super JsonObject> child) {
+    return new Decoder(child);
+  }
+
+  // Implementation
+
+  /** Per-subscription decoder */
+  protected class Decoder extends TransformSubscriber<Buffer,JsonObject> implements ByteBufProcessor {
+
+    /** Received bytes not yet emitted (readerIndex is the start of the current element) */
+    private final CompositeByteBuf acc=Unpooled.compositeBuffer(Integer.MAX_VALUE);
+
+    /** Index of the byte being scanned */
+    private int index;
+
+    /** Nesting depth */
+    private int depth;
+
+    /** Depth of elements (1 inside a top-level array) */
+    private int base;
+
+    /** Element started */
+    private boolean inElement;
+
+    /** Inside string */
+    private boolean inString;
+
+    /** Escape pending */
+    private boolean escape;
+
+    /** Comment state */
+    private int comment=NO_COMMENT;
+
+    /** Results of the current chunk */
+    private Queue<JsonObject> out;
+
+    /** Create new Decoder */
+    public Decoder(Subscriber<? super JsonObject> child) {
+      super(child);
+    }
+
+    // TransformSubscriber implementation
+
+    @Override protected void transform(Buffer in, Queue<JsonObject> out) throws Exception {
+      ByteBuf chunk=in.getByteBuf();
+      if (!chunk.isReadable())
+        return;
+
+      this.out=out;
+      this.index=acc.writerIndex();
+      acc.addComponent(chunk);
+      acc.writerIndex(acc.writerIndex()+chunk.readableBytes());
+
+      // Scan only the new bytes
+      chunk.forEachByte(this);
+
+      // Release everything before the current element
+      if (!inElement)
+        acc.readerIndex(acc.writerIndex());
+      else if (acc.writerIndex()-acc.readerIndex()>maxElementSize)
+        throw new SizeLimitExceededException(maxElementSize,acc.writerIndex()-acc.readerIndex());
+      acc.discardReadComponents();
+    }
+
+    @Override protected void finish(Queue<JsonObject> out) throws Exception {
+      if (inElement || (depth>0) || (comment==SLASH) || (comment>=BLOCK_COMMENT))
+        throw new DecodeException("Incomplete JSON stream (depth="+depth+")");
+    }
+
+    // ByteBufProcessor implementation
+
+    /** Scan a byte */
+    public boolean process(byte b) throws Exception {
+      int pos=index++;
+
+      if (inString) {
+        if (escape)
+          escape=false;
+        else if (b=='\\')
+          escape=true;
+        else if (b=='"')
+          inString=false;
+        return true;
+      }
+
+      if (comment!=NO_COMMENT) {
+        switch (comment) {
+          case SLASH:
+            if (b=='/')
+              comment=LINE_COMMENT;
+            else if (b=='*')
+              comment=BLOCK_COMMENT;
+            else
+              throw new DecodeException("Unexpected '/' (offset="+(pos-1)+")");
+            break;
+          case LINE_COMMENT:
+            if (b=='\n')
+              comment=NO_COMMENT;
+            break;
+          case BLOCK_COMMENT:
+            if (b=='*')
+              comment=BLOCK_STAR;
+            break;
+          default:
+            if (b=='/')
+              comment=NO_COMMENT;
+            else if (b!='*')
+              comment=BLOCK_COMMENT;
+            break;
+        }
+        return true;
+      }
+
+      switch (b) {
+        case '/':
+          comment=SLASH;
+          break;
+        case '{':
+          if (depth==base) {
+            inElement=true;
+            acc.readerIndex(pos);
+          }
+          depth++;
+          break;
+        case '[':
+          // Top-level array of elements
+          if ((depth==0) && (base==0)) {
+            base=1;
+            depth=1;
+            break;
+          }
+          if (depth==base)
+            throw new DecodeException("Unexpected JSON array element (offset="+pos+")");
+          depth++;
+          break;
+        case '}':
+        case ']':
+          if (depth==0)
+            throw new DecodeException("Unexpected '"+(char)b+"' (offset="+pos+")");
+          depth--;
+          if (inElement && (depth==base)) {
+            inElement=false;
+            out.add(parse(acc.slice(acc.readerIndex(),pos+1-acc.readerIndex())));
+            acc.readerIndex(pos+1);
+          }
+          // End of a top-level array
+          else if ((base==1) && (depth==0)) {
+            base=0;
+          }
+          break;
+        case '"':
+          if (depth==base)
+            throw new DecodeException("Unexpected JSON string element (offset="+pos+")");
+          inString=true;
+          break;
+        case ' ':
+        case '\t':
+        case '\r':
+        case '\n':
+        case ',':
+          break;
+        default:
+          if (depth==base)
+            throw new DecodeException("Unexpected JSON value element (offset="+pos+")");
+          break;
+      }
+      return true;
+    }
+  }
+}
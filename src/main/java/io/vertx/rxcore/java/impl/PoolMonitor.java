@@ -0,0 +1,224 @@
+package io.vertx.rxcore.java.impl;
+
+import io.vertx.rxcore.java.http.HttpPoolStats;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.http.HttpClient;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/** Gauges and connect latencies of the connection pool of a core HttpClient
+ *
+ * <p>Vert.x does not expose its pool, so the gauges are read from it by reflection. If the client is not the
+ * default implementation (or the reflection fails) the gauges are -1. Use {@link #forClient} so each client has
+ * a single monitor.</p>
+ *
+ * <p>Connects are only recorded once {@link #monitorConnects()} has replaced the pool with a proxy that times
+ * each request for a connection that is answered with a new one. That writes the client's final pool field and
+ * routes every request for a connection through reflection, so it is opt-in.</p>
+ *
+ **/
+public class PoolMonitor implements InvocationHandler {
+
+  // Definitions
+
+  /** DefaultHttpClient.pool (or null if unavailable) */
+  private static Field poolField;
+
+  /** PriorityHttpConnectionPool fields (or null if unavailable) */
+  private static Field allField, countField, waitersField;
+
+  /** ClientConnection.getOutstandingRequestCount (or null if unavailable) */
+  private static Method outstandingMethod;
+
+  /** HttpPool interface (or null if unavailable) */
+  private static Class<?> poolClass;
+
+  static {
+    try {
+      poolClass=Class.forName("org.vertx.java.core.http.impl.HttpPool");
+      poolField=Class.forName("org.vertx.java.core.http.impl.DefaultHttpClient").getDeclaredField("pool");
+      poolField.setAccessible(true);
+      Class<?> priority=Class.forName("org.vertx.java.core.http.impl.PriorityHttpConnectionPool");
+      allField=priority.getDeclaredField("allConnections");
+      allField.setAccessible(true);
+      countField=priority.getDeclaredField("connectionCount");
+      countField.setAccessible(true);
+      waitersField=priority.getDeclaredField("waiters");
+      waitersField.setAccessible(true);
+      outstandingMethod=Class.forName("org.vertx.java.core.http.impl.ClientConnection").getDeclaredMethod("getOutstandingRequestCount");
+      outstandingMethod.setAccessible(true);
+    }
+    catch(Exception e) {
+      poolField=null;
+    }
+  }
+
+  /** Monitors by client */
+  private final static Map<HttpClient,PoolMonitor> monitors=new WeakHashMap<>();
+
+  // Instance variables
+
+  /** Client */
+  private final HttpClient client;
+
+  /** Real pool (or null if unavailable) */
+  private final Object pool;
+
+  /** Proxy installed */
+  private boolean installed;
+
+  /** Connections seen */
+  private final Set<Object> seen=Collections.newSetFromMap(new WeakHashMap<Object,Boolean>());
+
+  /** Connect histogram */
+  private final long[] histogram=new long[HttpPoolStats.CONNECT_BUCKETS.length+1];
+
+  // Public methods
+
+  /** Create new PoolMonitor (use forClient) */
+  protected PoolMonitor(HttpClient client) {
+    this.client=client;
+    this.pool=locate(client);
+  }
+
+  /** Return the monitor of client */
+  public static PoolMonitor forClient(HttpClient client) {
+    synchronized (monitors) {
+      PoolMonitor monitor=monitors.get(client);
+      if (monitor==null) {
+        monitor=new PoolMonitor(client);
+        monitors.put(client,monitor);
+      }
+      return monitor;
+    }
+  }
+
+  /** Record connects from now on by replacing the pool of the client with a proxy
+   *
+   * @return false if the pool could not be replaced
+   *
+   **/
+  public synchronized boolean monitorConnects() {
+    if (!installed && (pool!=null))
+      installed=install();
+    return installed;
+  }
+
+  /** Return snapshot */
+  public HttpPoolStats snapshot() {
+    long[] connects;
+    synchronized (this) {
+      connects=histogram.clone();
+    }
+    int connections=-1, connecting=-1, idle=-1, inUse=-1, waiting=-1;
+    if (pool!=null) {
+      try {
+        synchronized (pool) {
+          Collection<?> all=(Collection<?>)allField.get(pool);
+          connections=all.size();
+          connecting=countField.getInt(pool)-connections;
+          inUse=0;
+          for (Object conn : all) {
+            if ((Integer)outstandingMethod.invoke(conn)>0)
+              inUse++;
+          }
+          idle=connections-inUse;
+          waiting=((Collection<?>)waitersField.get(pool)).size();
+        }
+      }
+      catch(Exception e) {
+        connections=connecting=idle=inUse=waiting=-1;
+      }
+    }
+    return new HttpPoolStats(System.currentTimeMillis(),client.getMaxPoolSize(),connections,connecting,idle,inUse,waiting,connects);
+  }
+
+  // InvocationHandler implementation
+
+  /** Forward to the real pool (timing requests for a connection) */
+  @SuppressWarnings("unchecked")
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getName().equals("getConnection") && (args[0]!=null))
+      args[0]=new Timed((Handler<Object>)args[0]);
+    try {
+      return method.invoke(pool,args);
+    }
+    catch(InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  // Implementation
+
+  /** Return the pool of the client (or null if it cannot be inspected) */
+  protected static Object locate(HttpClient client) {
+    if ((poolField==null) || !poolField.getDeclaringClass().isInstance(client))
+      return null;
+    try {
+      Object real=poolField.get(client);
+      return allField.getDeclaringClass().isInstance(real)?real:null;
+    }
+    catch(Exception e) {
+      return null;
+    }
+  }
+
+  /** Replace the pool of the client with a proxy
+   *
+   * @return false if the pool could not be replaced
+   *
+   **/
+  protected boolean install() {
+    try {
+      // Connections opened before now are not new
+      synchronized (pool) {
+        seen.addAll((Collection<?>)allField.get(pool));
+      }
+      poolField.set(client,Proxy.newProxyInstance(poolClass.getClassLoader(),new Class<?>[] {poolClass},this));
+      return true;
+    }
+    catch(Exception e) {
+      // Gauges only
+      return false;
+    }
+  }
+
+  /** Record a connect */
+  protected synchronized void record(Object conn, long nanos) {
+    if (!seen.add(conn))
+      return;
+    long ms=nanos/1000000;
+    int i=0;
+    while ((i<HttpPoolStats.CONNECT_BUCKETS.length) && (ms>HttpPoolStats.CONNECT_BUCKETS[i]))
+      i++;
+    histogram[i]++;
+  }
+
+  /** Connection handler that records new connections */
+  protected class Timed implements Handler<Object> {
+
+    /** Real handler */
+    private final Handler<Object> nested;
+
+    /** Start */
+    private final long start=System.nanoTime();
+
+    Timed(Handler<Object> nested) {
+      this.nested=nested;
+    }
+
+    public void handle(Object conn) {
+      record(conn,System.nanoTime()-start);
+      nested.handle(conn);
+    }
+  }
+}
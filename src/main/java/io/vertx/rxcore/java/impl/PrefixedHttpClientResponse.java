@@ -0,0 +1,127 @@
+package io.vertx.rxcore.java.impl;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpClientResponse;
+import org.vertx.java.core.net.NetSocket;
+
+import java.util.List;
+
+/** HttpClientResponse whose body has been partly read already
+ *
+ * <p>The nested response must be paused with no handlers set. The Buffer already read is delivered on the first
+ * resume() once a dataHandler is set (as {@link CachedHttpClientResponse} does), then the rest of the body is
+ * passed on from the nested response.</p>
+ *
+ **/
+public class PrefixedHttpClientResponse implements HttpClientResponse {
+
+  // Instance variables
+
+  /** Real instance */
+  private final HttpClientResponse nested;
+
+  /** Body read so far */
+  private final Buffer prefix;
+
+  /** Data handler */
+  private Handler<Buffer> dataHandler;
+
+  /** Paused */
+  private boolean paused;
+
+  /** Prefix delivered */
+  private boolean delivered;
+
+  // Public methods
+
+  /** Create new PrefixedHttpClientResponse */
+  public PrefixedHttpClientResponse(HttpClientResponse nested, Buffer prefix) {
+    this.nested=nested;
+    this.prefix=prefix;
+  }
+
+  // HttpClientResponse implementation
+
+  public int statusCode() {
+    return nested.statusCode();
+  }
+
+  public String statusMessage() {
+    return nested.statusMessage();
+  }
+
+  public MultiMap headers() {
+    return nested.headers();
+  }
+
+  public MultiMap trailers() {
+    return nested.trailers();
+  }
+
+  public List<String> cookies() {
+    return nested.cookies();
+  }
+
+  public HttpClientResponse bodyHandler(final Handler<Buffer> bodyHandler) {
+    final Buffer body=new Buffer();
+    dataHandler(new Handler<Buffer>() {
+      public void handle(Buffer buf) {
+        body.appendBuffer(buf);
+      }
+    });
+    endHandler(new Handler<Void>() {
+      public void handle(Void v) {
+        bodyHandler.handle(body);
+      }
+    });
+    return resume();
+  }
+
+  public NetSocket netSocket() {
+    return nested.netSocket();
+  }
+
+  // ReadStream implementation
+
+  public HttpClientResponse dataHandler(Handler<Buffer> handler) {
+    this.dataHandler=handler;
+    if (delivered)
+      nested.dataHandler(handler);
+    return this;
+  }
+
+  public HttpClientResponse pause() {
+    paused=true;
+    nested.pause();
+    return this;
+  }
+
+  public HttpClientResponse resume() {
+    paused=false;
+    if (!delivered) {
+      if (dataHandler==null)
+        return this;
+      delivered=true;
+      dataHandler.handle(prefix);
+      nested.dataHandler(dataHandler);
+      // The handler may have paused again
+      if (paused)
+        return this;
+    }
+    nested.resume();
+    return this;
+  }
+
+  public HttpClientResponse endHandler(Handler<Void> handler) {
+    // The nested response holds its end while paused so it cannot overtake the prefix
+    nested.endHandler(handler);
+    return this;
+  }
+
+  public HttpClientResponse exceptionHandler(Handler<Throwable> handler) {
+    nested.exceptionHandler(handler);
+    return this;
+  }
+}
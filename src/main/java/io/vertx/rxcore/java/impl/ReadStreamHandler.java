@@ -0,0 +1,124 @@
+package io.vertx.rxcore.java.impl;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.streams.ReadStream;
+import rx.Producer;
+import rx.Subscriber;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Handler that maps a ReadStream to a single Subscription
+ *
+ * <p>Subscriber demand is honoured by pausing the ReadStream when the requested count is used up and
+ * resuming it on the next request(n). Subscribers that do not request are given everything.</p>
+ *
+ **/
+public class ReadStreamHandler extends SingleSubscriptionHandler<Buffer,Buffer> implements Producer {
+
+  // Instance variables
+
+  /** ReadStream */
+  protected final ReadStream<?> rs;
+
+  /** Outstanding requests */
+  protected final AtomicLong requested=new AtomicLong();
+
+  /** Paused */
+  protected volatile boolean paused;
+
+  // Public methods
+
+  /** Create new ReadStreamHandler */
+  public ReadStreamHandler(ReadStream<?> rs) {
+    this.rs=rs;
+  }
+
+  // SingleSubscriptionHandler implementation
+
+  /** Attach to the stream */
+  @Override public void execute() {
+    rs.dataHandler(this);
+    rs.exceptionHandler(new Handler<Throwable>() {
+      public void handle(Throwable t) {
+        fireError(t);
+      }
+    });
+    rs.endHandler(new Handler<Void>() {
+      public void handle(Void v) {
+        fireComplete();
+      }
+    });
+
+    // Requests nothing until the Subscriber asks
+    pause();
+
+    Subscriber<?> s=getSubscriber();
+    if (s!=null)
+      s.setProducer(this);
+  }
+
+  /** Detach from the stream */
+  @Override public void onUnsubscribed() {
+    try {
+      rs.dataHandler(null);
+      rs.exceptionHandler(null);
+      rs.endHandler(null);
+    }
+    catch(Exception e) {
+      // Clearing handlers after stream closed causes issues for some (eg AsyncFile) so silently drop errors
+    }
+  }
+
+  /** Handle data */
+  @Override public void handle(Buffer data) {
+    // Data may still arrive after pause() so deliver it anyway (without taking the count below 0)
+    while (true) {
+      long cur=requested.get();
+      if (cur==Long.MAX_VALUE)
+        break;
+      long next=Math.max(cur-1,0);
+      if (requested.compareAndSet(cur,next)) {
+        if (next==0)
+          pause();
+        break;
+      }
+    }
+    fireNext(data);
+  }
+
+  // Producer implementation
+
+  /** Request more */
+  public void request(long n) {
+    if (n<=0)
+      return;
+
+    while (true) {
+      long cur=requested.get();
+      if (cur==Long.MAX_VALUE)
+        break;
+      long next=Math.max(cur,0)+n;
+      // Cap on overflow (or if the request is unbounded)
+      if ((next<cur) || (n==Long.MAX_VALUE))
+        next=Long.MAX_VALUE;
+      if (requested.compareAndSet(cur,next))
+        break;
+    }
+
+    if (paused && (requested.get()>0)) {
+      paused=false;
+      rs.resume();
+    }
+  }
+
+  // Implementation
+
+  /** Pause the stream */
+  protected void pause() {
+    if (!paused) {
+      paused=true;
+      rs.pause();
+    }
+  }
+}
@@ -11,20 +11,38 @@ import rx.functions.Action1;
 import rx.subjects.PublishSubject;
 
 import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.concurrent.atomic.AtomicLong;
 
-/** Regulator */
+/** Regulator
+ *
+ * <p>Byte-budget flow control between an Observable and a WriteStream. Buffers that cannot be written
+ * because the target is full are queued in a {@link BufferedWriteStream}. Once the queued bytes reach the
+ * high watermark the {@link Gate} (lifted into the source Observable) closes: values are held at the gate
+ * and no more demand is requested upstream. The gate re-opens when the target drains below the low
+ * watermark.</p>
+ *
+ **/
 public class Regulator<R> implements Observable.Operator<R,R> {
 
   // Definitions
 
+  /** Default high watermark (bytes) */
+  public final static long DEFAULT_HIGH_WATERMARK=64*1024;
+
+  /** Default low watermark (bytes) */
+  public final static long DEFAULT_LOW_WATERMARK=16*1024;
+
   /** Throttle */
   public abstract class Throttle<T> implements Handler<Boolean> {
 
     // Queue
 
     /** Queue */
-    protected ArrayDeque<T> queue;
+    protected Queue<T> queue;
+
+    /** Bytes in the queue */
+    protected long queuedBytes;
 
     /** Handler */
     protected Handler<Void> completeHandler;
@@ -32,19 +50,31 @@ public class Regulator<R> implements Observable.Operator<R,R> {
     /** Restricted */
     protected boolean restricted;
 
+    /** Number of restrictions (to spot one made while flushing) */
+    protected long restrictions;
+
     // Public methods
 
     /** Create new Throttle */
     public Throttle() {
-      this.queue=new ArrayDeque<>();
+      this(new ArrayDeque<T>());
+    }
+
+    /** Create new Throttle with queue */
+    public Throttle(Queue<T> queue) {
+      this.queue=queue;
     }
 
     /** Send */
     public void send(T value) {
-      if (restricted)
-        this.queue.addLast(value);
-      else
-        forward(value);
+      // Preserve order behind anything already queued
+      if (restricted || !this.queue.isEmpty() || !forward(value))
+        enqueue(value);
+    }
+
+    /** Return the number of bytes queued */
+    public long queuedBytes() {
+      return this.queuedBytes;
     }
 
     // Handler implementation
@@ -53,17 +83,31 @@ public class Regulator<R> implements Observable.Operator<R,R> {
     public void handle(Boolean restrict) {
       if (restrict) {
         this.restricted=true;
+        this.restrictions++;
       }
       else {
-        this.restricted=!flush();
+        // Open before flushing so the queued values can be forwarded
+        long before=this.restrictions;
+        this.restricted=false;
+        boolean flushed=flush();
+        // Forwarding may have restricted again, which must stand
+        if (this.restrictions==before)
+          this.restricted=!flushed;
       }
     }
 
     // Implementation
 
+    /** Add to the queue */
+    protected void enqueue(T value) {
+      this.queue.add(value);
+      this.queuedBytes+=sizeOf(value);
+    }
+
     /** Clear the queue */
     protected void clear() {
       this.queue.clear();
+      this.queuedBytes=0;
     }
 
     /** Flush the queue
@@ -74,14 +118,16 @@ public class Regulator<R> implements Observable.Operator<R,R> {
     protected boolean flush() {
       while (!this.queue.isEmpty()) {
         // Try and forward
-        if (!forward(this.queue.peekFirst()))
+        if (!forward(this.queue.peek()))
           return false;
         // Remove the item
-        this.queue.pollFirst();
+        this.queuedBytes-=sizeOf(this.queue.poll());
       }
 
-      if (this.completeHandler!=null) {
-        this.completeHandler.handle(null);
+      Handler<Void> handler=this.completeHandler;
+      if (handler!=null) {
+        this.completeHandler=null;
+        handler.handle(null);
       }
 
       return true;
@@ -97,11 +143,24 @@ public class Regulator<R> implements Observable.Operator<R,R> {
       }
     }
 
-    /** Send to the target */
+    /** Return size of value in bytes (values that are not Buffers count as 1) */
+    protected long sizeOf(T value) {
+      return (value instanceof Buffer)?((Buffer)value).length():1;
+    }
+
+    /** Send to the target
+     *
+     * @return false if the value could not be sent (and should be queued)
+     *
+     **/
     protected abstract boolean forward(T value);
   }
 
-  /** Gate */
+  /** Gate
+   *
+   * <p>Holds values while restricted and only requests more from upstream while open</p>
+   *
+   **/
   public class Gate<R> extends Throttle<R> implements Observer<R> {
 
     // Instance variables
@@ -109,21 +168,23 @@ public class Regulator<R> implements Observable.Operator<R,R> {
     /** Subscriber */
     protected Subscriber<R> target;
 
-    /** Restricted */
-    protected Boolean restricted;
+    /** Upstream */
+    protected Upstream<R> upstream;
 
     // Public methods
 
     public Gate(Subscriber<R> subscriber) {
       this.target=subscriber;
-      this.restricted=false;
     }
 
     // Restrict Handler
 
     /** Handler notification */
     public void handle(Boolean restrict) {
-      this.restricted=restrict;
+      super.handle(restrict);
+      // Opened and flushed so ask for more
+      if (!this.restricted)
+        demand();
     }
 
     // Observer
@@ -131,6 +192,8 @@ public class Regulator<R> implements Observable.Operator<R,R> {
     /** Next message */
     public void onNext(R r) {
       send(r);
+      if (!this.restricted)
+        demand();
     }
 
     public void onCompleted() {
@@ -149,18 +212,61 @@ public class Regulator<R> implements Observable.Operator<R,R> {
 
     // Implementation
 
+    /** Request the next value from upstream */
+    protected void demand() {
+      if (this.upstream!=null)
+        this.upstream.demand(1);
+    }
+
     /** Forward */
     protected boolean forward(R value) {
+      if (this.restricted)
+        return false;
       target.onNext(value);
       return true;
     }
   }
 
+  /** Subscriber to the source that forwards to the Gate */
+  protected static class Upstream<R> extends Subscriber<R> {
+
+    /** Gate */
+    protected final Observer<R> gate;
+
+    /** Create new Upstream */
+    protected Upstream(Observer<R> gate) {
+      this.gate=gate;
+    }
+
+    /** Request values */
+    protected void demand(long n) {
+      request(n);
+    }
+
+    // Subscriber implementation
+
+    @Override public void onStart() {
+      request(1);
+    }
+    public void onCompleted() {
+      gate.onCompleted();
+    }
+    public void onError(Throwable e) {
+      gate.onError(e);
+    }
+    public void onNext(R r) {
+      gate.onNext(r);
+    }
+  }
+
   /** Buffered Stream
    *
    * Wrapper of WriteStream that buffers when the target WriteStream is full. Used to
    * detect the buffer filling up to start inhibiting the Observable
    *
+   * <p>The bounded variant keeps at most memoryLimit bytes on the heap and spills the rest to a
+   * memory-mapped temporary file (see {@link SpillQueue}), replaying it in order as the target drains</p>
+   *
    **/
   public class BufferedWriteStream extends Throttle<Buffer> implements WriteStream<BufferedWriteStream> {
 
@@ -175,10 +281,24 @@ public class Regulator<R> implements Observable.Operator<R,R> {
     /** Target */
     protected WriteStream<Buffer> out;
 
+    /** True if the restrict handler has been told to restrict */
+    protected boolean restricting;
+
     // Public methods
 
     /** Create new BufferedWriteStream */
     public BufferedWriteStream(WriteStream<Buffer> out) {
+      this(out,new ArrayDeque<Buffer>());
+    }
+
+    /** Create new bounded BufferedWriteStream that spills to disk above memoryLimit bytes */
+    public BufferedWriteStream(WriteStream<Buffer> out, long memoryLimit) {
+      this(out,new SpillQueue(memoryLimit));
+    }
+
+    /** Create new BufferedWriteStream with queue */
+    protected BufferedWriteStream(WriteStream<Buffer> out, Queue<Buffer> queue) {
+      super(queue);
       this.out=out;
 
       out.drainHandler(new Handler<Void>() {
@@ -199,6 +319,18 @@ public class Regulator<R> implements Observable.Operator<R,R> {
       this.restrictHandler=handler;
     }
 
+    /** Return bytes spilled to disk */
+    public long spilledBytes() {
+      return (this.queue instanceof SpillQueue)?((SpillQueue)this.queue).spilledBytes():0;
+    }
+
+    /** Release any spill file */
+    public void close() {
+      clear();
+      if (this.queue instanceof SpillQueue)
+        ((SpillQueue)this.queue).close();
+    }
+
     // WriteStream implementation
 
     /** Write buffer */
@@ -206,6 +338,11 @@ public class Regulator<R> implements Observable.Operator<R,R> {
 
       send(buf);
 
+      // Close the gate once the budget is used
+      if (!this.restricting && (this.queuedBytes>=highWatermark)) {
+        restrict(true);
+      }
+
       return this;
     }
 
@@ -215,9 +352,9 @@ public class Regulator<R> implements Observable.Operator<R,R> {
       return this;
     }
 
-    /** Return true if write queue is full (never true..) */
+    /** Return true if the queued bytes have reached the high watermark */
     public boolean writeQueueFull() {
-      return false;
+      return this.queuedBytes>=highWatermark;
     }
 
     /** Provide a drain handler (not supported) */
@@ -235,6 +372,7 @@ public class Regulator<R> implements Observable.Operator<R,R> {
 
     /** Restrict */
     protected void restrict(Boolean restricted) {
+      this.restricting=restricted;
       if (this.restrictHandler!=null) {
         this.restrictHandler.handle(restricted);
       }
@@ -242,7 +380,7 @@ public class Regulator<R> implements Observable.Operator<R,R> {
 
     /** Failure */
     protected void fail(Throwable cause) {
-      clear();
+      close();
       if (this.exceptionHandler!=null) {
         this.exceptionHandler.handle(cause);
       }
@@ -250,24 +388,15 @@ public class Regulator<R> implements Observable.Operator<R,R> {
 
     /** Release */
     protected void release() {
-      int count=0;
-      // Release the buffered queue
-      while(!this.out.writeQueueFull() && !this.queue.isEmpty()) {
-        this.out.write(this.queue.pollFirst());
-        count++;
-      }
-      restrict(false);
+      // Release the buffered queue (completes once empty)
+      flush();
 
-      if (this.completeHandler!=null) {
-        this.completeHandler.handle(null);
+      // Re-open the gate once drained below the low watermark
+      if (this.restricting && (this.queuedBytes<=lowWatermark)) {
+        restrict(false);
       }
     }
 
-    /** Clear */
-    protected void clear() {
-      this.queue.clear();
-    }
-
     // Throttle implementation
 
     /** Forward value */
@@ -282,13 +411,54 @@ public class Regulator<R> implements Observable.Operator<R,R> {
 
   // Instance variables
 
+  /** Low watermark */
+  protected final long lowWatermark;
+
+  /** High watermark */
+  protected final long highWatermark;
+
   /** Gate */
   protected Gate<R> gate;
 
+  /** Target */
+  protected BufferedWriteStream target;
+
   // Public methods
 
   /** Create new Regulator */
   public Regulator() {
+    this(DEFAULT_LOW_WATERMARK,DEFAULT_HIGH_WATERMARK);
+  }
+
+  /** Create new Regulator with watermarks (bytes queued for the target) */
+  public Regulator(long lowWatermark, long highWatermark) {
+    if ((lowWatermark<0) || (lowWatermark>highWatermark))
+      throw new IllegalArgumentException("Invalid watermarks (low="+lowWatermark+",high="+highWatermark+")");
+
+    this.lowWatermark=lowWatermark;
+    this.highWatermark=highWatermark;
+  }
+
+  // Metrics
+
+  /** Return bytes that have passed the gate but are still waiting for the target */
+  public long inFlightBytes() {
+    return (this.target!=null)?this.target.queuedBytes():0;
+  }
+
+  /** Return bytes that have been spilled to disk by a bounded stream */
+  public long spilledBytes() {
+    return (this.target!=null)?this.target.spilledBytes():0;
+  }
+
+  /** Return bytes held at the gate (values that are not Buffers count as 1) */
+  public long queuedBytes() {
+    return (this.gate!=null)?this.gate.queuedBytes():0;
+  }
+
+  /** Return true if the gate is closed */
+  public boolean isRestricted() {
+    return (this.gate!=null) && this.gate.restricted;
   }
 
   // Operator implementation
@@ -301,26 +471,33 @@ public class Regulator<R> implements Observable.Operator<R,R> {
 
     this.gate=new Gate(subscriber);
 
-    return new Subscriber<R>() {
-      public void onCompleted() {
-        gate.onCompleted();
-      }
-      public void onError(Throwable e) {
-        gate.onError(e);
-      }
-      public void onNext(R r) {
-        gate.onNext(r);
-      }
-    };
+    Upstream<R> upstream=new Upstream<R>(this.gate);
+    this.gate.upstream=upstream;
+
+    return upstream;
   }
 
   /** Stream Observable to a target stream */
   public Observable<Long> stream(Observable<Buffer> src, WriteStream<Buffer> out) {
+    return stream(src,new BufferedWriteStream(out));
+  }
+
+  /** Stream Observable to a target stream keeping at most memoryLimit bytes queued on the heap
+   *
+   * <p>Any excess is spilled to a temporary file and replayed in order as the target drains</p>
+   *
+   **/
+  public Observable<Long> stream(Observable<Buffer> src, WriteStream<Buffer> out, long memoryLimit) {
+    return stream(src,new BufferedWriteStream(out,memoryLimit));
+  }
+
+  /** Stream Observable to a BufferedWriteStream */
+  protected Observable<Long> stream(Observable<Buffer> src, final BufferedWriteStream target) {
 
     final PublishSubject<Long> rx=PublishSubject.create();
     final AtomicLong total=new AtomicLong();
 
-    final BufferedWriteStream target=new BufferedWriteStream(out);
+    this.target=target;
 
     // Trap write errors
     target.exceptionHandler(new Handler<Throwable>() {
@@ -343,7 +520,7 @@ public class Regulator<R> implements Observable.Operator<R,R> {
       },
       new Action1<Throwable>() {
         public void call(Throwable t) {
-          target.clear();
+          target.close();
           rx.onError(t);
         }
       },
@@ -351,6 +528,7 @@ public class Regulator<R> implements Observable.Operator<R,R> {
         public void call() {
           target.complete(new Handler<Void>() {
             public void handle(Void event) {
+              target.close();
               rx.onCompleted();
             }
           });
@@ -0,0 +1,306 @@
+package io.vertx.rxcore.java.impl;
+
+import io.netty.channel.Channel;
+import io.vertx.rxcore.HttpTimeoutException;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpClientRequest;
+import org.vertx.java.core.http.HttpClientResponse;
+import org.vertx.java.core.net.NetSocket;
+import org.vertx.java.core.net.impl.ConnectionBase;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+/** Enforces the connect, first byte and total deadlines of an HTTP client request
+ *
+ * <p>The deadlines are scheduled on a {@link TimingWheel}. When one expires the connection is closed and the
+ * request fails with {@link HttpTimeoutException} - or, if the response has already been passed on, its body
+ * fails instead. Vert.x has no public way to reach the connection of a request, so it is found by reflection; if
+ * the request is still waiting for a connection (or the reflection fails) the connection is closed when the late
+ * response arrives.</p>
+ *
+ * <p>The connect deadline covers the wait for a connection from the pool as well as the connect itself, as
+ * Vert.x does not tell them apart. It is only enforced if the connection of a request can be found.</p>
+ *
+ **/
+public class RequestDeadline implements Handler<HttpClientResponse> {
+
+  // Definitions
+
+  /** DefaultHttpClientRequest.conn (or null if unavailable) */
+  private static Field connField;
+
+  /** ConnectionBase.channel (or null if unavailable) */
+  private static Field channelField;
+
+  static {
+    try {
+      connField=Class.forName("org.vertx.java.core.http.impl.DefaultHttpClientRequest").getDeclaredField("conn");
+      connField.setAccessible(true);
+      channelField=ConnectionBase.class.getDeclaredField("channel");
+      channelField.setAccessible(true);
+    }
+    catch(Exception e) {
+      connField=null;
+      channelField=null;
+    }
+  }
+
+  // Instance variables
+
+  /** Wheel */
+  private final TimingWheel wheel;
+
+  /** Deadlines (ms, 0 for none) */
+  private final long connect, firstByte, total;
+
+  /** Result */
+  private final MemoizeHandler<?,HttpClientResponse> rh;
+
+  /** Request */
+  private HttpClientRequest req;
+
+  /** Pending timeouts */
+  private TimingWheel.Timeout connectTimeout, firstByteTimeout, totalTimeout;
+
+  /** Response passed on (or null) */
+  private TimedResponse resp;
+
+  /** Finished (failed, timed out or body ended) */
+  private boolean done;
+
+  // Public methods
+
+  /** Create new RequestDeadline */
+  public RequestDeadline(TimingWheel wheel, long connect, long firstByte, long total, MemoizeHandler<?,HttpClientResponse> rh) {
+    this.wheel=wheel;
+    this.connect=connect;
+    this.firstByte=firstByte;
+    this.total=total;
+    this.rh=rh;
+  }
+
+  /** Start the deadlines for req (which must have been created with this as the response handler) */
+  public void start(HttpClientRequest req) {
+    this.req=req;
+    req.exceptionHandler(new Handler<Throwable>() {
+      public void handle(Throwable t) {
+        fail(t);
+      }
+    });
+    // Without the connection every request would look unconnected
+    if ((connect>0) && canFindConnection())
+      connectTimeout=schedule(connect,HttpTimeoutException.Phase.CONNECT);
+    if (firstByte>0)
+      firstByteTimeout=schedule(firstByte,HttpTimeoutException.Phase.FIRST_BYTE);
+    if (total>0)
+      totalTimeout=schedule(total,HttpTimeoutException.Phase.TOTAL);
+  }
+
+  /** Fail the request (unless already finished) */
+  public void fail(Throwable t) {
+    if (done)
+      return;
+    done=true;
+    cancel();
+    deliver(t);
+  }
+
+  // Handler implementation
+
+  /** Handle response */
+  public void handle(HttpClientResponse r) {
+    if (done) {
+      // Too late so drop the connection rather than read the body
+      try {
+        r.netSocket().close();
+      }
+      catch(Exception e) {
+        // Already closed
+      }
+      return;
+    }
+
+    if (connectTimeout!=null)
+      connectTimeout.cancel();
+    if (firstByteTimeout!=null)
+      firstByteTimeout.cancel();
+    resp=new TimedResponse(r);
+    rh.handle(resp);
+  }
+
+  // Implementation
+
+  /** Schedule deadline */
+  protected TimingWheel.Timeout schedule(final long timeout, final HttpTimeoutException.Phase phase) {
+    return wheel.schedule(timeout,new Handler<Void>() {
+      public void handle(Void v) {
+        expire(phase,timeout);
+      }
+    });
+  }
+
+  /** Handle expiry */
+  protected void expire(HttpTimeoutException.Phase phase, long timeout) {
+    if (done)
+      return;
+    Channel channel=channel();
+    // Connected in time
+    if ((phase==HttpTimeoutException.Phase.CONNECT) && (channel!=null))
+      return;
+
+    done=true;
+    cancel();
+    // Close before the failure is passed on as a retry could otherwise be given the same connection
+    if (channel!=null)
+      channel.close();
+    deliver(new HttpTimeoutException(phase,timeout));
+  }
+
+  /** Pass failure on */
+  protected void deliver(Throwable t) {
+    if (resp!=null)
+      resp.fail(t);
+    else
+      rh.fail(t);
+  }
+
+  /** Cancel pending timeouts */
+  protected void cancel() {
+    for (TimingWheel.Timeout t : new TimingWheel.Timeout[] {connectTimeout,firstByteTimeout,totalTimeout}) {
+      if (t!=null)
+        t.cancel();
+    }
+  }
+
+  /** Return true if the connection of the request can be found by reflection */
+  protected boolean canFindConnection() {
+    return (connField!=null) && connField.getDeclaringClass().isInstance(req);
+  }
+
+  /** Return the channel of the request (or null if not connected or unknown) */
+  protected Channel channel() {
+    if (!canFindConnection())
+      return null;
+    try {
+      Object conn=connField.get(req);
+      return (conn!=null)?(Channel)channelField.get(conn):null;
+    }
+    catch(Exception e) {
+      return null;
+    }
+  }
+
+  /** Response that ends the total deadline and can be failed */
+  protected class TimedResponse implements HttpClientResponse {
+
+    /** Real instance */
+    private final HttpClientResponse nested;
+
+    /** Exception handler */
+    private Handler<Throwable> exceptionHandler;
+
+    /** Failed */
+    private boolean failed;
+
+    /** Create new TimedResponse */
+    TimedResponse(HttpClientResponse nested) {
+      this.nested=nested;
+    }
+
+    /** Fail the body (once) */
+    void fail(Throwable t) {
+      if (failed)
+        return;
+      failed=true;
+      nested.dataHandler(null);
+      nested.endHandler(null);
+      if (exceptionHandler!=null)
+        exceptionHandler.handle(t);
+    }
+
+    // HttpClientResponse implementation
+
+    public int statusCode() {
+      return nested.statusCode();
+    }
+
+    public String statusMessage() {
+      return nested.statusMessage();
+    }
+
+    public MultiMap headers() {
+      return nested.headers();
+    }
+
+    public MultiMap trailers() {
+      return nested.trailers();
+    }
+
+    public List<String> cookies() {
+      return nested.cookies();
+    }
+
+    public HttpClientResponse bodyHandler(final Handler<Buffer> bodyHandler) {
+      // Aggregate here so the end is seen
+      final Buffer body=new Buffer();
+      dataHandler(new Handler<Buffer>() {
+        public void handle(Buffer buf) {
+          body.appendBuffer(buf);
+        }
+      });
+      endHandler(new Handler<Void>() {
+        public void handle(Void v) {
+          bodyHandler.handle(body);
+        }
+      });
+      return this;
+    }
+
+    public NetSocket netSocket() {
+      return nested.netSocket();
+    }
+
+    // ReadStream implementation
+
+    public HttpClientResponse dataHandler(Handler<Buffer> handler) {
+      nested.dataHandler(handler);
+      return this;
+    }
+
+    public HttpClientResponse pause() {
+      nested.pause();
+      return this;
+    }
+
+    public HttpClientResponse resume() {
+      nested.resume();
+      return this;
+    }
+
+    public HttpClientResponse endHandler(final Handler<Void> handler) {
+      nested.endHandler((handler==null)?null:new Handler<Void>() {
+        public void handle(Void v) {
+          if (done)
+            return;
+          done=true;
+          cancel();
+          handler.handle(v);
+        }
+      });
+      return this;
+    }
+
+    public HttpClientResponse exceptionHandler(Handler<Throwable> handler) {
+      this.exceptionHandler=handler;
+      nested.exceptionHandler((handler==null)?null:new Handler<Throwable>() {
+        public void handle(Throwable t) {
+          fail(t);
+        }
+      });
+      return this;
+    }
+  }
+}
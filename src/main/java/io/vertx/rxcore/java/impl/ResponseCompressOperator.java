@@ -0,0 +1,108 @@
+package io.vertx.rxcore.java.impl;
+
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import org.vertx.java.core.buffer.Buffer;
+import rx.Subscriber;
+import rx.functions.Action1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/** CompressOperator that only compresses streams of at least minSize bytes
+ *
+ * <p>The first Buffers are held until minSize bytes have arrived (or the stream completes). The decision is then
+ * passed to the decide callback, so headers (eg Content-Encoding) can be set before anything is written, and the
+ * held Buffers are either compressed or passed through unchanged.</p>
+ *
+ **/
+public class ResponseCompressOperator extends CompressOperator {
+
+  // Instance variables
+
+  /** Minimum size */
+  private final int minSize;
+
+  /** Decision callback */
+  private final Action1<Boolean> decide;
+
+  // Public methods
+
+  /** Create new ResponseCompressOperator */
+  public ResponseCompressOperator(Format format, int level, int chunkSize, int minSize, Action1<Boolean> decide) {
+    super(format,true,level,chunkSize);
+    this.minSize=minSize;
+    this.decide=decide;
+  }
+
+  // Operator implementation
+
+  /** Add Subscriber */
+  @Override public Subscriber<? super Buffer> call(Subscriber<? super Buffer> child) {
+    return new ThresholdCompressor(child);
+  }
+
+  // Implementation
+
+  /** Compressor that holds the start of the stream until the decision is made */
+  protected class ThresholdCompressor extends Compressor {
+
+    /** Held Buffers (null once decided) */
+    private List<Buffer> held=new ArrayList<>();
+
+    /** Held bytes */
+    private int heldBytes;
+
+    /** Compressing */
+    private boolean compressing;
+
+    /** Create new ThresholdCompressor */
+    public ThresholdCompressor(Subscriber<? super Buffer> child) {
+      super(child);
+    }
+
+    @Override protected void transform(Buffer in, Queue<Buffer> out) throws Exception {
+      if (held==null) {
+        if (compressing)
+          super.transform(in,out);
+        return;
+      }
+
+      held.add(in);
+      heldBytes+=in.length();
+      if (heldBytes<minSize)
+        return;
+
+      // Compress everything held as a single input
+      compressing=true;
+      decide.call(true);
+      CompositeByteBuf all=Unpooled.compositeBuffer(held.size());
+      for (Buffer buf : held)
+        all.addComponent(buf.getByteBuf());
+      all.writerIndex(heldBytes);
+      held=null;
+      super.transform(new Buffer(all),out);
+    }
+
+    @Override protected void produce(Queue<Buffer> out) throws Exception {
+      if (compressing)
+        super.produce(out);
+    }
+
+    @Override protected void finish(Queue<Buffer> out) throws Exception {
+      if (compressing) {
+        super.finish(out);
+        return;
+      }
+
+      // Too small so pass through
+      if (held!=null) {
+        decide.call(false);
+        release();
+        out.addAll(held);
+        held=null;
+      }
+    }
+  }
+}
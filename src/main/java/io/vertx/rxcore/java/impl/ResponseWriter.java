@@ -0,0 +1,211 @@
+package io.vertx.rxcore.java.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpServerResponse;
+import rx.Observer;
+import rx.Subscriber;
+
+import java.io.IOException;
+
+/** Subscriber that streams Buffers to an HttpServerResponse
+ *
+ * <p>The response is chunked (unless Content-length is already set) and Buffers are requested one at a time,
+ * waiting for drain while the write queue is full. Buffers smaller than coalesceSize are copied into a single
+ * write that is flushed once it reaches coalesceSize or at the end of the current event loop tick (if a Vertx
+ * is given, otherwise straight away). The response is ended on completion and the connection closed on error.
+ * The total bytes written is reported to the result Observer on completion.</p>
+ *
+ * <p>If a {@link BufferPool} is set, Buffers that are coalesced are released to it once copied (larger Buffers
+ * are handed to the connection and are not released)</p>
+ *
+ **/
+public class ResponseWriter extends Subscriber<Buffer> {
+
+  // Instance variables
+
+  /** Response */
+  protected final HttpServerResponse response;
+
+  /** Vertx (used to flush once per tick) */
+  protected final Vertx vertx;
+
+  /** Writes smaller than this are coalesced */
+  protected final int coalesceSize;
+
+  /** Result */
+  protected final Observer<Long> result;
+
+  /** Coalesced Buffers (or null) */
+  protected ByteBuf pending;
+
+  /** Flush scheduled for the end of the tick */
+  protected boolean flushScheduled;
+
+  /** Total bytes */
+  protected long total;
+
+  /** Finished (ended or aborted) */
+  protected boolean finished;
+
+  /** Pool for coalesced Buffers (optional) */
+  protected BufferPool pool;
+
+  /** Time of the last write (ms) */
+  protected long lastWrite=System.currentTimeMillis();
+
+  /** Time the write queue became full (ms, or 0 if not full) */
+  protected long stalledSince;
+
+  /** Drain handler */
+  protected final Handler<Void> drainHandler=new Handler<Void>() {
+    public void handle(Void v) {
+      stalledSince=0;
+      request(1);
+    }
+  };
+
+  /** Flush handler */
+  protected final Handler<Void> flushHandler=new Handler<Void>() {
+    public void handle(Void v) {
+      flushScheduled=false;
+      flush();
+    }
+  };
+
+  // Public methods
+
+  /** Create new ResponseWriter */
+  public ResponseWriter(HttpServerResponse response, Vertx vertx, int writeQueueSize, int coalesceSize, Observer<Long> result) {
+    this.response=response;
+    this.vertx=vertx;
+    this.coalesceSize=coalesceSize;
+    this.result=result;
+
+    if (!response.headers().contains("Content-Length"))
+      response.setChunked(true);
+    response.setWriteQueueMaxSize(writeQueueSize);
+
+    response.exceptionHandler(new Handler<Throwable>() {
+      public void handle(Throwable t) {
+        abort(t);
+      }
+    });
+    response.closeHandler(new Handler<Void>() {
+      public void handle(Void v) {
+        if (!finished) {
+          finished=true;
+          pending=null;
+          unsubscribe();
+          ResponseWriter.this.result.onError(new IOException("Connection closed before the response was complete"));
+        }
+      }
+    });
+  }
+
+  /** Release coalesced Buffers to pool */
+  public ResponseWriter pooled(BufferPool pool) {
+    this.pool=pool;
+    return this;
+  }
+
+  /** Return true if the response has been ended (or aborted) */
+  public boolean isFinished() {
+    return this.finished;
+  }
+
+  // Subscriber implementation
+
+  @Override
+  public void onStart() {
+    request(1);
+  }
+
+  public void onNext(Buffer buffer) {
+    if (finished)
+      return;
+
+    int len=buffer.length();
+    total+=len;
+
+    if (len>=coalesceSize) {
+      flush();
+      write(buffer);
+    }
+    else if (len>0) {
+      if (pending==null)
+        pending=Unpooled.buffer(coalesceSize);
+      pending.writeBytes(buffer.getByteBuf());
+      if (pool!=null)
+        pool.release(buffer);
+      if (pending.readableBytes()>=coalesceSize)
+        flush();
+      else if (vertx==null)
+        flush();
+      else if (!flushScheduled) {
+        flushScheduled=true;
+        vertx.runOnContext(flushHandler);
+      }
+    }
+
+    // Wait for drain before asking for more
+    if (response.writeQueueFull()) {
+      flush();
+      if (stalledSince==0)
+        stalledSince=System.currentTimeMillis();
+      response.drainHandler(drainHandler);
+    }
+    else {
+      request(1);
+    }
+  }
+
+  public void onError(Throwable t) {
+    abort(t);
+  }
+
+  public void onCompleted() {
+    if (finished)
+      return;
+    flush();
+    finished=true;
+    response.end();
+    result.onNext(total);
+    result.onCompleted();
+  }
+
+  // Implementation
+
+  /** Write any coalesced Buffers */
+  protected void flush() {
+    if ((pending!=null) && !finished) {
+      write(new Buffer(pending));
+      pending=null;
+    }
+  }
+
+  /** Write to the response */
+  protected void write(Buffer buffer) {
+    response.write(buffer);
+    lastWrite=System.currentTimeMillis();
+  }
+
+  /** Close the connection (so the client sees a truncated response rather than a complete one) */
+  protected void abort(Throwable t) {
+    if (finished)
+      return;
+    finished=true;
+    pending=null;
+    unsubscribe();
+    try {
+      response.close();
+    }
+    catch(Exception e) {
+      // Already closed
+    }
+    result.onError(t);
+  }
+}
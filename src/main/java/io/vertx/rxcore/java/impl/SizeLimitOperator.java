@@ -0,0 +1,67 @@
+package io.vertx.rxcore.java.impl;
+
+import io.vertx.rxcore.SizeLimitExceededException;
+import org.vertx.java.core.buffer.Buffer;
+import rx.Observable;
+import rx.Subscriber;
+
+/** Operator that passes a stream of Buffers through unchanged until more than maxSize bytes have been seen
+ *
+ * <p>Demand is passed straight through to the source, so the stream is not buffered. Once the limit is exceeded
+ * the offending Buffer is dropped, the source is unsubscribed and the stream fails with
+ * {@link SizeLimitExceededException}.</p>
+ *
+ **/
+public class SizeLimitOperator implements Observable.Operator<Buffer,Buffer> {
+
+  // Instance variables
+
+  /** Maximum size */
+  private final long maxSize;
+
+  // Public methods
+
+  /** Create new SizeLimitOperator */
+  public SizeLimitOperator(long maxSize) {
+    this.maxSize=maxSize;
+  }
+
+  // Operator implementation
+
+  /** Add Subscriber */
+  public Subscriber<? super Buffer> call(final Subscriber<? super Buffer> child) {
+    return new Subscriber<Buffer>(child) {
+
+      /** Total received */
+      private long total;
+
+      /** Failed */
+      private boolean failed;
+
+      public void onNext(Buffer buf) {
+        if (failed)
+          return;
+
+        total+=buf.length();
+        if (total>maxSize) {
+          failed=true;
+          child.onError(new SizeLimitExceededException(maxSize,total));
+          unsubscribe();
+          return;
+        }
+
+        child.onNext(buf);
+      }
+
+      public void onError(Throwable e) {
+        if (!failed)
+          child.onError(e);
+      }
+
+      public void onCompleted() {
+        if (!failed)
+          child.onCompleted();
+      }
+    };
+  }
+}
@@ -0,0 +1,384 @@
+package io.vertx.rxcore.java.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.internal.PlatformDependent;
+import org.vertx.java.core.buffer.Buffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/** Queue of Buffers with a bounded in-memory budget
+ *
+ * <p>Buffers are held in memory until the budget is used, after which they are appended to a temporary file
+ * through memory-mapped segments. Once anything has spilled all later Buffers go to the file too, so the
+ * order is preserved. As the memory queue empties it is refilled from the file (up to the budget).</p>
+ *
+ * <p>The file is reused from the start once everything has been read back. While a backlog remains, the unread
+ * part is moved to the start of the file (and the file truncated) once more than a segment and at least as much
+ * as is unread has been read, so the file stays within about twice the backlog. Segments are unmapped as soon as
+ * they are finished with rather than on GC.</p>
+ *
+ * <p>The temporary file is created on the first spill and deleted by {@link #close()} (or on exit)</p>
+ *
+ **/
+public class SpillQueue extends AbstractQueue<Buffer> {
+
+  // Definitions
+
+  /** Default mapped segment size */
+  public final static int DEFAULT_SEGMENT_SIZE=1024*1024;
+
+  /** Unsafe.invokeCleaner (JDK 9+, or null) */
+  private static Method invokeCleaner;
+
+  /** Unsafe instance (or null) */
+  private static Object unsafe;
+
+  static {
+    try {
+      Class<?> unsafeClass=Class.forName("sun.misc.Unsafe");
+      Field field=unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe=field.get(null);
+      invokeCleaner=unsafeClass.getMethod("invokeCleaner",ByteBuffer.class);
+    }
+    catch(Exception e) {
+      invokeCleaner=null;
+    }
+  }
+
+  // Instance variables
+
+  /** Memory budget */
+  private final long memoryLimit;
+
+  /** Mapped segment size */
+  private final int segmentSize;
+
+  /** Buffers in memory */
+  private final ArrayDeque<Buffer> memory=new ArrayDeque<>();
+
+  /** Bytes in memory */
+  private long memoryBytes;
+
+  /** Lengths of spilled Buffers (in order) */
+  private final ArrayDeque<Integer> spilled=new ArrayDeque<>();
+
+  /** Bytes spilled */
+  private long spilledBytes;
+
+  /** File */
+  private File file;
+
+  /** Channel */
+  private FileChannel channel;
+
+  /** Write position */
+  private long writePos;
+
+  /** Write segment */
+  private MappedByteBuffer writeSegment;
+
+  /** Read position */
+  private long readPos;
+
+  /** Read segment */
+  private MappedByteBuffer readSegment;
+
+  // Public methods
+
+  /** Create new SpillQueue */
+  public SpillQueue(long memoryLimit) {
+    this(memoryLimit,DEFAULT_SEGMENT_SIZE);
+  }
+
+  /** Create new SpillQueue */
+  public SpillQueue(long memoryLimit, int segmentSize) {
+    if (segmentSize<1)
+      throw new IllegalArgumentException("Invalid segment size (segmentSize="+segmentSize+")");
+    this.memoryLimit=memoryLimit;
+    this.segmentSize=segmentSize;
+  }
+
+  /** Return bytes held in memory */
+  public long memoryBytes() {
+    return this.memoryBytes;
+  }
+
+  /** Return bytes held on disk */
+  public long spilledBytes() {
+    return this.spilledBytes;
+  }
+
+  /** Return the size of the temporary file (bytes) */
+  public long fileSize() {
+    try {
+      return (this.channel!=null)?this.channel.size():0;
+    }
+    catch(IOException e) {
+      return 0;
+    }
+  }
+
+  /** Release the temporary file */
+  public void close() {
+    clear();
+    if (this.channel!=null) {
+      try {
+        this.channel.close();
+      }
+      catch(IOException e) {
+        // Ignore failure to close as the file is removed anyway
+      }
+      this.file.delete();
+      this.channel=null;
+      this.file=null;
+    }
+  }
+
+  // Queue implementation
+
+  /** Add Buffer */
+  public boolean offer(Buffer buf) {
+    if (this.spilled.isEmpty() && (this.memoryBytes+buf.length()<=this.memoryLimit)) {
+      this.memory.addLast(buf);
+      this.memoryBytes+=buf.length();
+    }
+    else {
+      spill(buf);
+    }
+    return true;
+  }
+
+  /** Remove head */
+  public Buffer poll() {
+    Buffer buf=peek();
+    if (buf==null)
+      return null;
+    this.memory.pollFirst();
+    this.memoryBytes-=buf.length();
+    return buf;
+  }
+
+  /** Return head */
+  public Buffer peek() {
+    if (this.memory.isEmpty() && !this.spilled.isEmpty())
+      refill();
+    return this.memory.peekFirst();
+  }
+
+  /** Return number of Buffers */
+  public int size() {
+    return this.memory.size()+this.spilled.size();
+  }
+
+  /** Clear */
+  public void clear() {
+    this.memory.clear();
+    this.memoryBytes=0;
+    this.spilled.clear();
+    this.spilledBytes=0;
+    rewind();
+  }
+
+  /** Return a read-only iterator from the head (spilled Buffers are read back without being removed) */
+  public Iterator<Buffer> iterator() {
+    return new SpillIterator();
+  }
+
+  // Implementation
+
+  /** Append Buffer to the file */
+  protected void spill(Buffer buf) {
+    try {
+      if (this.channel==null) {
+        this.file=File.createTempFile("rxvertx-spill",".tmp");
+        this.file.deleteOnExit();
+        this.channel=new RandomAccessFile(this.file,"rw").getChannel();
+      }
+
+      ByteBuf src=buf.getByteBuf();
+      int index=0;
+      int remaining=buf.length();
+      while (remaining>0) {
+        if ((this.writeSegment==null) || !this.writeSegment.hasRemaining()) {
+          unmap(this.writeSegment);
+          this.writeSegment=this.channel.map(FileChannel.MapMode.READ_WRITE,this.writePos,this.segmentSize);
+        }
+
+        int len=Math.min(remaining,this.writeSegment.remaining());
+        ByteBuffer dst=this.writeSegment.duplicate();
+        dst.limit(dst.position()+len);
+        src.getBytes(index,dst);
+        this.writeSegment.position(this.writeSegment.position()+len);
+
+        index+=len;
+        remaining-=len;
+        this.writePos+=len;
+      }
+    }
+    catch(IOException e) {
+      throw new RuntimeException("Unable to spill buffer (file="+this.file+")",e);
+    }
+
+    this.spilled.addLast(buf.length());
+    this.spilledBytes+=buf.length();
+  }
+
+  /** Move spilled Buffers back into memory (at least one, then up to the budget) */
+  protected void refill() {
+    try {
+      do {
+        int length=this.spilled.pollFirst();
+        byte[] data=new byte[length];
+        int offset=0;
+        while (offset<length) {
+          if ((this.readSegment==null) || !this.readSegment.hasRemaining()) {
+            unmap(this.readSegment);
+            this.readSegment=this.channel.map(FileChannel.MapMode.READ_WRITE,this.readPos,this.segmentSize);
+          }
+
+          int len=Math.min(length-offset,this.readSegment.remaining());
+          this.readSegment.get(data,offset,len);
+
+          offset+=len;
+          this.readPos+=len;
+        }
+
+        this.spilledBytes-=length;
+        this.memory.addLast(new Buffer(Unpooled.wrappedBuffer(data)));
+        this.memoryBytes+=length;
+      }
+      while (!this.spilled.isEmpty() && (this.memoryBytes+this.spilled.peekFirst()<=this.memoryLimit));
+
+      // Reuse the file from the start once everything has been read back
+      if (this.spilled.isEmpty())
+        rewind();
+      // Move a backlog to the start once it fits in what has been read
+      else if ((this.readPos>=this.segmentSize) && (this.readPos>=this.spilledBytes))
+        compact();
+    }
+    catch(IOException e) {
+      throw new RuntimeException("Unable to read spilled buffer (file="+this.file+")",e);
+    }
+  }
+
+  /** Move the unread part of the file to the start and truncate the rest */
+  protected void compact() throws IOException {
+    unmap(this.readSegment);
+    this.readSegment=null;
+    unmap(this.writeSegment);
+    this.writeSegment=null;
+
+    // The unread part is no longer than the read part so the copy does not overlap
+    long length=this.writePos-this.readPos;
+    for (long offset=0;offset<length;offset+=this.segmentSize) {
+      int len=(int)Math.min(this.segmentSize,length-offset);
+      MappedByteBuffer src=this.channel.map(FileChannel.MapMode.READ_ONLY,this.readPos+offset,len);
+      MappedByteBuffer dst=this.channel.map(FileChannel.MapMode.READ_WRITE,offset,len);
+      dst.put(src);
+      unmap(src);
+      unmap(dst);
+    }
+
+    this.readPos=0;
+    this.writePos=length;
+    this.channel.truncate(length);
+  }
+
+  /** Iterator over the memory queue then the file
+   *
+   * <p>The queue must not be modified while iterating</p>
+   *
+   **/
+  protected class SpillIterator implements Iterator<Buffer> {
+
+    /** Buffers in memory */
+    private final Iterator<Buffer> held=memory.iterator();
+
+    /** Lengths of spilled Buffers */
+    private final Iterator<Integer> lengths=spilled.iterator();
+
+    /** Read position */
+    private long pos=readPos;
+
+    /** Read segment */
+    private MappedByteBuffer segment;
+
+    public boolean hasNext() {
+      return this.held.hasNext() || this.lengths.hasNext();
+    }
+
+    public Buffer next() {
+      if (this.held.hasNext())
+        return this.held.next();
+
+      int length=this.lengths.next();
+      byte[] data=new byte[length];
+      int offset=0;
+      try {
+        while (offset<length) {
+          if ((this.segment==null) || !this.segment.hasRemaining()) {
+            unmap(this.segment);
+            this.segment=channel.map(FileChannel.MapMode.READ_ONLY,this.pos,Math.min(segmentSize,writePos-this.pos));
+          }
+
+          int len=Math.min(length-offset,this.segment.remaining());
+          this.segment.get(data,offset,len);
+
+          offset+=len;
+          this.pos+=len;
+        }
+      }
+      catch(IOException e) {
+        throw new RuntimeException("Unable to read spilled buffer (file="+file+")",e);
+      }
+      // Done with the file
+      if (!this.lengths.hasNext()) {
+        unmap(this.segment);
+        this.segment=null;
+      }
+      return new Buffer(Unpooled.wrappedBuffer(data));
+    }
+
+    /** Removal is not supported */
+    public void remove() {
+      throw new UnsupportedOperationException("SpillQueue iterators are read-only");
+    }
+  }
+
+  /** Reset the file positions */
+  protected void rewind() {
+    this.writePos=0;
+    unmap(this.writeSegment);
+    this.writeSegment=null;
+    this.readPos=0;
+    unmap(this.readSegment);
+    this.readSegment=null;
+  }
+
+  /** Unmap a segment now rather than when it is collected (best effort) */
+  protected static void unmap(MappedByteBuffer segment) {
+    if (segment==null)
+      return;
+    try {
+      if (invokeCleaner!=null)
+        invokeCleaner.invoke(unsafe,segment);
+      else
+        PlatformDependent.freeDirectBuffer(segment);
+    }
+    catch(Exception e) {
+      // Left to the GC
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package io.vertx.rxcore.java.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.buffer.Buffer;
+import rx.functions.Func1;
+
+/** Function that encodes items as Server-Sent Events frames
+ *
+ * <p>The encoded text of each item is sent as one event with a <code>data:</code> field per line (CR, LF and CRLF
+ * all end a line). The frame is written as UTF-8 straight into a single Buffer. If a pool is given, frames smaller
+ * than maxPooled (which must be released by the writer) are taken from it, but only when called on the Context
+ * that created the encoder, as the pool is not locked.</p>
+ *
+ **/
+public class SseEncoder<T> implements Func1<T,Buffer> {
+
+  // Definitions
+
+  /** Field prefix */
+  private final static byte[] DATA={'d','a','t','a',':',' '};
+
+  // Instance variables
+
+  /** Encoder */
+  private final Func1<? super T,String> encoder;
+
+  /** Pool (or null) */
+  private final BufferPool pool;
+
+  /** Vertx (or null) */
+  private final Vertx vertx;
+
+  /** Context of the pool (or null) */
+  private final Context context;
+
+  /** Largest frame taken from the pool */
+  private final int maxPooled;
+
+  // Public methods
+
+  /** Create new SseEncoder that takes frames smaller than maxPooled from the pool of the current Context */
+  public SseEncoder(Func1<? super T,String> encoder, BufferPool pool, Vertx vertx, int maxPooled) {
+    this.encoder=encoder;
+    this.pool=pool;
+    this.vertx=vertx;
+    this.context=(vertx!=null)?vertx.currentContext():null;
+    this.maxPooled=maxPooled;
+  }
+
+  /** Return the frame for an item */
+  public Buffer call(T item) {
+    String data=encoder.call(item);
+    if (data==null)
+      data="";
+
+    // Upper bound (3 bytes per char and a prefix per line)
+    int len=data.length();
+    int lines=1;
+    for (int i=0;i<len;i++) {
+      char c=data.charAt(i);
+      if ((c=='\n') || (c=='\r'))
+        lines++;
+    }
+    int capacity=len*3+lines*(DATA.length+1)+1;
+
+    boolean pooled=(pool!=null) && (capacity<maxPooled) && (context!=null) && (vertx.currentContext()==context);
+    ByteBuf buf=pooled?pool.acquire(capacity).getByteBuf():Unpooled.buffer(capacity);
+    buf.writeBytes(DATA);
+    for (int i=0;i<len;i++) {
+      char c=data.charAt(i);
+      if (c<0x80) {
+        if ((c=='\r') || (c=='\n')) {
+          if ((c=='\r') && (i+1<len) && (data.charAt(i+1)=='\n'))
+            i++;
+          buf.writeByte('\n');
+          buf.writeBytes(DATA);
+        }
+        else {
+          buf.writeByte(c);
+        }
+      }
+      else if (c<0x800) {
+        buf.writeByte(0xc0|(c>>6));
+        buf.writeByte(0x80|(c&0x3f));
+      }
+      else if (Character.isHighSurrogate(c) && (i+1<len) && Character.isLowSurrogate(data.charAt(i+1))) {
+        int cp=Character.toCodePoint(c,data.charAt(++i));
+        buf.writeByte(0xf0|(cp>>18));
+        buf.writeByte(0x80|((cp>>12)&0x3f));
+        buf.writeByte(0x80|((cp>>6)&0x3f));
+        buf.writeByte(0x80|(cp&0x3f));
+      }
+      else if (Character.isSurrogate(c)) {
+        // Unpaired
+        buf.writeByte('?');
+      }
+      else {
+        buf.writeByte(0xe0|(c>>12));
+        buf.writeByte(0x80|((c>>6)&0x3f));
+        buf.writeByte(0x80|(c&0x3f));
+      }
+    }
+    buf.writeByte('\n');
+    buf.writeByte('\n');
+    return new Buffer(buf);
+  }
+}
@@ -0,0 +1,88 @@
+package io.vertx.rxcore.java.impl;
+
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/** Shared timer that checks the Server-Sent Events streams of a Context
+ *
+ * <p>A single periodic timer runs per Context while it has open streams, rather than one per stream. Each tick
+ * calls {@link SseWriter#tick} and drops the streams that have finished; the timer is cancelled once there are
+ * none left.</p>
+ *
+ **/
+public class SseHeartbeat implements Handler<Long> {
+
+  // Definitions
+
+  /** Tick interval (ms) */
+  public final static long TICK=1000;
+
+  /** Heartbeats by Context */
+  private final static Map<Context,SseHeartbeat> heartbeats=new WeakHashMap<>();
+
+  // Instance variables
+
+  /** Vertx */
+  private final Vertx vertx;
+
+  /** Open streams */
+  private final Set<SseWriter> writers=new LinkedHashSet<>();
+
+  /** Timer (or -1) */
+  private long timer=-1;
+
+  // Public methods
+
+  /** Create new SseHeartbeat */
+  public SseHeartbeat(Vertx vertx) {
+    this.vertx=vertx;
+  }
+
+  /** Return the heartbeat for the current Context */
+  public static SseHeartbeat forContext(Vertx vertx) {
+    Context ctx=vertx.currentContext();
+    if (ctx==null)
+      return new SseHeartbeat(vertx);
+    synchronized (heartbeats) {
+      SseHeartbeat heartbeat=heartbeats.get(ctx);
+      if (heartbeat==null) {
+        heartbeat=new SseHeartbeat(vertx);
+        heartbeats.put(ctx,heartbeat);
+      }
+      return heartbeat;
+    }
+  }
+
+  /** Add stream (starting the timer if required) */
+  public void add(SseWriter writer) {
+    writers.add(writer);
+    if (timer<0)
+      timer=vertx.setPeriodic(TICK,this);
+  }
+
+  /** Return the number of open streams */
+  public int size() {
+    return writers.size();
+  }
+
+  // Handler implementation
+
+  public void handle(Long id) {
+    long now=System.currentTimeMillis();
+    for (Iterator<SseWriter> it=writers.iterator();it.hasNext();) {
+      if (!it.next().tick(now))
+        it.remove();
+    }
+    if (writers.isEmpty()) {
+      vertx.cancelTimer(timer);
+      timer=-1;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package io.vertx.rxcore.java.impl;
+
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpServerResponse;
+import rx.Observer;
+
+import java.io.IOException;
+
+/** ResponseWriter for a Server-Sent Events stream
+ *
+ * <p>Checked by {@link SseHeartbeat}: a comment is sent if nothing has been written for heartbeatInterval (so
+ * proxies keep the connection open) and the connection is closed if the write queue has stayed full for
+ * maxStall (so a slow client can't hold the events queued for it)</p>
+ *
+ **/
+public class SseWriter extends ResponseWriter {
+
+  // Definitions
+
+  /** Heartbeat (an empty comment) */
+  private final static byte[] HEARTBEAT={':','\n','\n'};
+
+  // Instance variables
+
+  /** Heartbeat interval (ms) */
+  private final long heartbeatInterval;
+
+  /** Maximum time the write queue may stay full (ms) */
+  private final long maxStall;
+
+  // Public methods
+
+  /** Create new SseWriter */
+  public SseWriter(HttpServerResponse response, Vertx vertx, int writeQueueSize, int coalesceSize, long heartbeatInterval, long maxStall, Observer<Long> result) {
+    super(response,vertx,writeQueueSize,coalesceSize,result);
+    this.heartbeatInterval=heartbeatInterval;
+    this.maxStall=maxStall;
+  }
+
+  /** Send the headers (with a heartbeat) straight away */
+  public void open() {
+    write(new Buffer(HEARTBEAT));
+  }
+
+  /** Check the stream at time now (ms), returning false once it is finished */
+  public boolean tick(long now) {
+    if (finished)
+      return false;
+
+    if (stalledSince>0) {
+      if (now-stalledSince>=maxStall) {
+        abort(new IOException("Client too slow (stalled for "+(now-stalledSince)+"ms)"));
+        return false;
+      }
+    }
+    else if ((pending==null) && (now-lastWrite>=heartbeatInterval)) {
+      write(new Buffer(HEARTBEAT));
+    }
+    return true;
+  }
+}
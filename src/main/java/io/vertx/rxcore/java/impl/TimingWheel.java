@@ -0,0 +1,181 @@
+package io.vertx.rxcore.java.impl;
+
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/** Hashed timing wheel for the timeouts of a single Context
+ *
+ * <p>Timeouts are rounded up to the tick and kept in a ring of slots (a doubly linked list each), so scheduling
+ * and cancelling are O(1) however many are pending. A single periodic timer drives the wheel while anything is
+ * scheduled. Timeouts further away than one turn of the wheel stay in their slot until their tick comes round.
+ * Use {@link #forContext} to share the wheel of the current Context.</p>
+ *
+ **/
+public class TimingWheel implements Handler<Long> {
+
+  // Definitions
+
+  /** Default tick (ms) */
+  public final static long DEFAULT_TICK=10;
+
+  /** Default number of slots (a power of two) */
+  public final static int DEFAULT_SLOTS=512;
+
+  /** Wheels by Context */
+  private final static Map<Context,TimingWheel> wheels=new WeakHashMap<>();
+
+  /** Scheduled task */
+  public static class Timeout {
+
+    /** Wheel */
+    private final TimingWheel wheel;
+
+    /** Task */
+    private final Handler<Void> task;
+
+    /** Tick it expires on */
+    private final long expiry;
+
+    /** Links */
+    private Timeout prev, next;
+
+    /** Slot (or -1 once expired or cancelled) */
+    private int slot=-1;
+
+    Timeout(TimingWheel wheel, Handler<Void> task, long expiry) {
+      this.wheel=wheel;
+      this.task=task;
+      this.expiry=expiry;
+    }
+
+    /** Cancel, returning false if already expired or cancelled */
+    public boolean cancel() {
+      if (slot<0)
+        return false;
+      wheel.unlink(this);
+      return true;
+    }
+  }
+
+  // Instance variables
+
+  /** Vertx */
+  private final Vertx vertx;
+
+  /** Tick (ms) */
+  private final long tick;
+
+  /** Slots */
+  private final Timeout[] slots;
+
+  /** Last tick processed */
+  private long current;
+
+  /** Pending timeouts */
+  private int size;
+
+  /** Timer (or -1) */
+  private long timer=-1;
+
+  // Public methods
+
+  /** Create new TimingWheel */
+  public TimingWheel(Vertx vertx, long tick, int slots) {
+    if (Integer.bitCount(slots)!=1)
+      throw new IllegalArgumentException("Slots must be a power of two (slots="+slots+")");
+    this.vertx=vertx;
+    this.tick=tick;
+    this.slots=new Timeout[slots];
+  }
+
+  /** Return the wheel for the current Context */
+  public static TimingWheel forContext(Vertx vertx) {
+    Context ctx=vertx.currentContext();
+    if (ctx==null)
+      throw new IllegalStateException("Timing wheel must be used from a Context");
+    synchronized (wheels) {
+      TimingWheel wheel=wheels.get(ctx);
+      if (wheel==null) {
+        wheel=new TimingWheel(vertx,DEFAULT_TICK,DEFAULT_SLOTS);
+        wheels.put(ctx,wheel);
+      }
+      return wheel;
+    }
+  }
+
+  /** Run task after delay (ms, rounded up to the tick) */
+  public Timeout schedule(long delay, Handler<Void> task) {
+    long now=System.currentTimeMillis()/tick;
+    if (timer<0) {
+      current=now;
+      timer=vertx.setPeriodic(tick,this);
+    }
+
+    long expiry=Math.max(current,now)+Math.max(1,(delay+tick-1)/tick);
+    Timeout t=new Timeout(this,task,expiry);
+    t.slot=(int)(expiry&(slots.length-1));
+    t.next=slots[t.slot];
+    if (t.next!=null)
+      t.next.prev=t;
+    slots[t.slot]=t;
+    size++;
+    return t;
+  }
+
+  /** Return the number of pending timeouts */
+  public int size() {
+    return this.size;
+  }
+
+  // Handler implementation
+
+  public void handle(Long id) {
+    long now=System.currentTimeMillis()/tick;
+    while (current<now) {
+      current++;
+
+      // Unlink everything due first as the tasks may cancel other timeouts
+      List<Timeout> due=null;
+      for (Timeout t=slots[(int)(current&(slots.length-1))];t!=null;) {
+        Timeout next=t.next;
+        if (t.expiry<=current) {
+          unlink(t);
+          if (due==null)
+            due=new ArrayList<>();
+          due.add(t);
+        }
+        t=next;
+      }
+      if (due!=null) {
+        for (Timeout t : due)
+          t.task.handle(null);
+      }
+    }
+
+    if (size==0) {
+      vertx.cancelTimer(timer);
+      timer=-1;
+    }
+  }
+
+  // Implementation
+
+  /** Remove from its slot */
+  protected void unlink(Timeout t) {
+    if (t.prev!=null)
+      t.prev.next=t.next;
+    else
+      slots[t.slot]=t.next;
+    if (t.next!=null)
+      t.next.prev=t.prev;
+    t.prev=t.next=null;
+    t.slot=-1;
+    size--;
+  }
+}
@@ -0,0 +1,194 @@
+package io.vertx.rxcore.java.impl;
+
+import rx.Producer;
+import rx.Subscriber;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Base Subscriber for operators that turn a stream of T into a stream of R (eg decoders, framers)
+ *
+ * <p>Each upstream item may produce any number of results. Results are queued and only delivered as the
+ * child requests them, and upstream is asked for one item at a time only once the queue is empty, so memory
+ * is bounded by a single item's worth of results. Subclasses that can expand an item into a lot of output (eg
+ * decompression) should hand it out a piece at a time from {@link #produce}. Errors thrown by {@link #transform},
+ * {@link #produce} or {@link #finish} terminate the stream.</p>
+ *
+ **/
+public abstract class TransformSubscriber<T,R> extends Subscriber<T> {
+
+  // Instance variables
+
+  /** Child */
+  protected final Subscriber<? super R> child;
+
+  /** Results waiting for demand */
+  private final Queue<R> pending=new ArrayDeque<>();
+
+  /** Outstanding child requests */
+  private final AtomicLong requested=new AtomicLong();
+
+  /** Drain in progress */
+  private final AtomicInteger wip=new AtomicInteger();
+
+  /** Upstream request outstanding */
+  private boolean upstreamRequested;
+
+  /** Upstream completed */
+  private volatile boolean done;
+
+  /** finish() called */
+  private boolean finished;
+
+  /** Terminated */
+  private boolean terminated;
+
+  /** Producer for the child */
+  private final Producer producer=new Producer() {
+    public void request(long n) {
+      if (n<=0)
+        return;
+
+      while (true) {
+        long cur=requested.get();
+        if (cur==Long.MAX_VALUE)
+          break;
+        long next=cur+n;
+        // Cap on overflow
+        if (next<0)
+          next=Long.MAX_VALUE;
+        if (requested.compareAndSet(cur,next))
+          break;
+      }
+      drain();
+    }
+  };
+
+  // Public methods
+
+  /** Create new TransformSubscriber */
+  public TransformSubscriber(Subscriber<? super R> child) {
+    this.child=child;
+    child.add(this);
+  }
+
+  // Subscriber implementation
+
+  @Override public void onStart() {
+    // Nothing is requested upstream until the child asks
+    request(0);
+    child.setProducer(producer);
+  }
+
+  public void onNext(T in) {
+    try {
+      synchronized (pending) {
+        upstreamRequested=false;
+        transform(in,pending);
+      }
+    }
+    catch(Throwable t) {
+      onError(t);
+      return;
+    }
+    drain();
+  }
+
+  public void onError(Throwable t) {
+    synchronized (pending) {
+      if (terminated)
+        return;
+      terminated=true;
+      pending.clear();
+    }
+    unsubscribe();
+    child.onError(t);
+  }
+
+  public void onCompleted() {
+    done=true;
+    drain();
+  }
+
+  // Implementation
+
+  /** Transform an item (adding any results to out) */
+  protected abstract void transform(T in, Queue<R> out) throws Exception;
+
+  /** Add results that can be made without more input (eg the next chunk of output), called whenever out is empty */
+  protected void produce(Queue<R> out) throws Exception {
+  }
+
+  /** Called once upstream completes and everything produced has been delivered, to add any remaining results to out */
+  protected void finish(Queue<R> out) throws Exception {
+  }
+
+  /** Deliver pending results and ask upstream for more once they are used up */
+  protected void drain() {
+    if (wip.getAndIncrement()!=0)
+      return;
+
+    do {
+      while (true) {
+        R next=null;
+        Throwable error=null;
+        boolean complete=false;
+        boolean more=false;
+
+        synchronized (pending) {
+          if (terminated)
+            return;
+
+          try {
+            if (pending.isEmpty())
+              produce(pending);
+            // Give the subclass one chance to flush once upstream is done
+            if (pending.isEmpty() && done && !finished) {
+              finished=true;
+              finish(pending);
+            }
+          }
+          catch(Throwable t) {
+            error=t;
+          }
+
+          if (error==null) {
+            next=(requested.get()>0)?pending.poll():null;
+            if (next==null && pending.isEmpty()) {
+              if (finished) {
+                terminated=true;
+                complete=true;
+              }
+              else if (!upstreamRequested && (requested.get()>0)) {
+                upstreamRequested=true;
+                more=true;
+              }
+            }
+          }
+        }
+
+        if (error!=null) {
+          onError(error);
+          return;
+        }
+        if (complete) {
+          child.onCompleted();
+          return;
+        }
+        if (more) {
+          request(1);
+          break;
+        }
+        if (next==null)
+          break;
+
+        if (requested.get()!=Long.MAX_VALUE)
+          requested.decrementAndGet();
+        child.onNext(next);
+      }
+    }
+    while (wip.decrementAndGet()!=0);
+  }
+}
@@ -0,0 +1,106 @@
+package io.vertx.rxcore.java.impl;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.streams.WriteStream;
+import rx.Observer;
+import rx.Subscriber;
+
+/** Subscriber that pumps Buffers into a WriteStream
+ *
+ * <p>Requests one Buffer at a time and stops requesting while the WriteStream is full, asking for more
+ * from the drainHandler. Sources that honour demand (eg RxSupport.toObservable) are paused, so memory is
+ * bounded by the WriteStream queue. The running total is reported to the progress Observer at most once per
+ * progressInterval bytes, and always once on completion.</p>
+ *
+ **/
+public class WriteStreamSubscriber extends Subscriber<Buffer> {
+
+  // Instance variables
+
+  /** Target */
+  protected final WriteStream<?> out;
+
+  /** Progress */
+  protected final Observer<Long> progress;
+
+  /** Minimum bytes between progress updates */
+  protected final long progressInterval;
+
+  /** Total written */
+  protected long total;
+
+  /** Total last reported */
+  protected long reported=-1;
+
+  /** Drain handler */
+  protected final Handler<Void> drainHandler=new Handler<Void>() {
+    public void handle(Void v) {
+      request(1);
+    }
+  };
+
+  // Public methods
+
+  /** Create new WriteStreamSubscriber */
+  public WriteStreamSubscriber(WriteStream<?> out, Observer<Long> progress, long progressInterval) {
+    this.out=out;
+    this.progress=progress;
+    this.progressInterval=progressInterval;
+
+    // Trap write errors
+    out.exceptionHandler(new Handler<Throwable>() {
+      public void handle(Throwable t) {
+        unsubscribe();
+        WriteStreamSubscriber.this.progress.onError(t);
+      }
+    });
+  }
+
+  /** Return the total written */
+  public long total() {
+    return this.total;
+  }
+
+  // Subscriber implementation
+
+  @Override
+  public void onStart() {
+    request(1);
+  }
+
+  public void onNext(Buffer buffer) {
+    out.write(buffer);
+    total+=buffer.length();
+
+    if (total-Math.max(reported,0)>=progressInterval) {
+      report();
+    }
+
+    // Wait for drain before asking for more
+    if (out.writeQueueFull()) {
+      out.drainHandler(drainHandler);
+    }
+    else {
+      request(1);
+    }
+  }
+
+  public void onError(Throwable t) {
+    progress.onError(t);
+  }
+
+  public void onCompleted() {
+    if (reported!=total)
+      report();
+    progress.onCompleted();
+  }
+
+  // Implementation
+
+  /** Report progress */
+  protected void report() {
+    reported=total;
+    progress.onNext(total);
+  }
+}
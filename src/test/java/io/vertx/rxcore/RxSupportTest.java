@@ -1,14 +1,43 @@
 package io.vertx.rxcore;
 
 import io.netty.buffer.*;
+import io.vertx.rxcore.java.RxVertx;
+import io.vertx.rxcore.java.impl.BufferPool;
 import org.junit.Test;
+import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
 import org.vertx.testtools.TestVerticle;
 import rx.Observable;
+import rx.Subscriber;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import io.vertx.rxcore.test.integration.java.GeneratorReadStream;
+import io.vertx.rxcore.test.integration.java.RatedWriteStream;
+import rx.functions.Action1;
+import rx.functions.Func1;
+
+import java.util.List;
 
 import static io.vertx.rxcore.test.integration.java.RxAssert.assertError;
+import static io.vertx.rxcore.test.integration.java.RxAssert.assertSequence;
+import static io.vertx.rxcore.test.integration.java.RxAssert.assertSingle;
 import static io.vertx.rxcore.test.integration.java.RxAssert.assertSingleThenComplete;
 import static org.junit.Assert.*;
 import static org.vertx.testtools.VertxAssert.testComplete;
@@ -105,4 +134,355 @@ public class RxSupportTest extends TestVerticle {
     // Using a writeable seed buffer will ensure you can reduce() successfully
     assertSingleThenComplete(merged.reduce(new Buffer(),RxSupport.mergeBuffers),new Buffer("b1b2"));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testAggregateBuffers() {
+
+    Observable<Buffer> chunks=Observable.from(Arrays.asList(new Buffer("b1"),new Buffer(),new Buffer("b2"),new Buffer("b3")));
+
+    // Each subscription gets its own body
+    Observable<Buffer> body=chunks.lift(RxSupport.aggregateBuffers(1024));
+    assertSingle(body,new Buffer("b1b2b3"));
+    assertSingle(body.map(RxSupport.flattenBuffer),new Buffer("b1b2b3"));
+
+    // Fails as soon as the limit is passed
+    assertError(chunks.lift(RxSupport.aggregateBuffers(5)),SizeLimitExceededException.class);
+  }
+
+  /** Split a String into Buffers of the given size */
+  private static Observable<Buffer> chunked(String src, int size) {
+    return Observable.from(split(src.getBytes(StandardCharsets.UTF_8),size));
+  }
+
+  @Test
+  public void testDecodeJsonStream() {
+
+    final JsonObject o1=new JsonObject().putString("a","{[\\\"]}").putNumber("n",1);
+    final JsonObject o2=new JsonObject().putObject("b",new JsonObject().putArray("c",new JsonArray().add("\u00e9}")));
+
+    // Chunk boundaries fall everywhere including inside strings, escapes and multi-byte characters
+    for (int size=1;size<8;size++) {
+      assertSequence(chunked(o1.encode()+"\n"+o2.encode()+"\n",size).lift(RxSupport.decodeJsonStream()),o1,o2);
+      assertSequence(chunked(" [ "+o1.encode()+" , "+o2.encode()+" ] ",size).lift(RxSupport.decodeJsonStream()),o1,o2);
+      // Comments are accepted as by decodeJson, even holding braces and quotes
+      assertSequence(chunked("// {\"\n"+o1.encode()+" /* }\" **/\n{\"n\":1 /* } */}",size).lift(RxSupport.decodeJsonStream()),
+        o1,new JsonObject().putNumber("n",1));
+    }
+
+    // Only as much of the source is consumed as is needed for the requested elements
+    final AtomicInteger consumed=new AtomicInteger();
+    chunked(o1.encode()+o2.encode()+o1.encode(),4).doOnNext(new Action1<Buffer>() {
+      public void call(Buffer b) {
+        consumed.incrementAndGet();
+      }
+    }).lift(RxSupport.decodeJsonStream()).subscribe(new Subscriber<JsonObject>() {
+      @Override public void onStart() {
+        request(1);
+      }
+      public void onNext(JsonObject obj) {
+        assertEquals(o1,obj);
+        assertTrue(consumed.get()<=(o1.encode().length()/4)+1);
+      }
+      public void onError(Throwable t) {
+        fail("Decode failed (t="+t+")");
+      }
+      public void onCompleted() {
+        fail("Unexpected complete");
+      }
+    });
+
+    // Elements larger than the limit fail
+    assertError(chunked(o2.encode(),4).lift(RxSupport.decodeJsonStream(8)),SizeLimitExceededException.class);
+  }
+
+  @Test
+  public void testEncodeJson() {
+
+    JsonObject obj=new JsonObject()
+      .putString("s","\u00e9\"\n").putNumber("i",1).putNumber("d",1.5).putNumber("f",1.1f).putBoolean("b",true).putValue("n",null)
+      .putBinary("bin",new byte[] { 1, 2, 3 })
+      .putObject("o",new JsonObject().putArray("a",new JsonArray().add(1).add(new JsonObject().putString("x","y"))));
+
+    // Same result as encode() for UTF-8 and other charsets
+    assertEquals(new JsonObject(obj.encode()),new JsonObject(RxSupport.encodeJson("utf8").call(obj).toString("UTF-8")));
+    assertEquals(new JsonObject(obj.encode()),new JsonObject(RxSupport.encodeJson("ISO-8859-1").call(obj).toString("ISO-8859-1")));
+    assertEquals(obj.encode().getBytes(StandardCharsets.UTF_8).length,RxSupport.encodeJson("utf8").call(obj).length());
+    // Floats are not widened to double
+    assertTrue(RxSupport.encodeJson("utf8").call(obj).toString("UTF-8").contains("\"f\":1.1,"));
+
+    // Batched into NDJSON
+    List<JsonObject> objs=new ArrayList<>();
+    for (int i=0;i<10;i++)
+      objs.add(new JsonObject().putNumber("i",i));
+    Observable<Buffer> batches=Observable.from(objs).lift(RxSupport.encodeJsonStream(30));
+    // 8 bytes per object so 4 per batch
+    assertEquals(3,batches.count().toBlocking().single().intValue());
+    assertSequence(batches.lift(RxSupport.decodeJsonStream()),objs.toArray(new JsonObject[objs.size()]));
+    assertEquals(10,Observable.from(objs).lift(RxSupport.encodeJsonStream(0)).count().toBlocking().single().intValue());
+    testComplete();
+  }
+
+  @Test
+  public void testFraming() {
+
+    Buffer prefixed=new Buffer()
+      .appendByte((byte)2).appendString("ab")
+      .appendByte((byte)0).appendByte((byte)3).appendString("cde");
+
+    // A 200 byte record with a 2 byte varint prefix
+    Buffer longRecord=new Buffer(new byte[200]);
+    Buffer varint=new Buffer().appendByte((byte)(0x80|(200&0x7f))).appendByte((byte)(200>>7)).appendBuffer(longRecord)
+      .appendByte((byte)1).appendString("f");
+
+    for (int size=1;size<8;size++) {
+      assertSequence(chunked("ab\r\n\r\ncde\r\nf",size).lift(RxSupport.frameDelimited("\r\n",16)),
+        new Buffer("ab"),new Buffer(),new Buffer("cde"),new Buffer("f"));
+      assertSequence(chunked("abcdefg",size).lift(RxSupport.frameFixed(3)).take(2),new Buffer("abc"),new Buffer("def"));
+      assertSequence(chunked(prefixed.toString(),size).lift(RxSupport.frameLengthPrefixed(1,16)).take(1),new Buffer("ab"));
+      assertSequence(chunked(prefixed.getBuffer(3,prefixed.length()).toString(),size).lift(RxSupport.frameLengthPrefixed(2,16)),new Buffer("cde"));
+      assertSequence(Observable.from(Arrays.asList(varint.getBuffer(0,size),varint.getBuffer(size,varint.length())))
+        .lift(RxSupport.frameLengthPrefixed(RxSupport.VARINT,256)),longRecord,new Buffer("f"));
+    }
+    assertSequence(Observable.just(new Buffer().appendInt(3).appendString("abc")).lift(RxSupport.frameLengthPrefixed(4,16)),new Buffer("abc"));
+
+    // Records within a chunk are slices of it
+    final Buffer chunk=new Buffer("abc|def|");
+    assertSequence(Observable.just(chunk).lift(RxSupport.frameDelimited("|",16)).map(new Func1<Buffer,Boolean>() {
+      public Boolean call(Buffer record) {
+        chunk.setByte(0,(byte)'x');
+        return record.getByte(0)=='x' || record.getByte(0)=='d';
+      }
+    }),true,true);
+
+    // Oversized records fail before they are buffered
+    assertError(chunked("abcdefghijklmnopqrstuvwxyz",4).lift(RxSupport.frameDelimited("\n",8)),SizeLimitExceededException.class);
+    assertError(Observable.just(new Buffer().appendShort((short)1000)).lift(RxSupport.frameLengthPrefixed(2,16)),SizeLimitExceededException.class);
+  }
+
+  @Test
+  public void testBufferPool() {
+    BufferPool pool=new RxVertx(vertx).bufferPool();
+    assertSame(pool,BufferPool.forContext(vertx));
+
+    // Rounded up to the size class and reused once released
+    Buffer b1=pool.acquire(300);
+    assertEquals(0,b1.length());
+    assertEquals(512,b1.getByteBuf().capacity());
+    b1.appendString("abc");
+    pool.release(b1);
+    assertEquals(1,pool.released());
+    Buffer b2=pool.acquire(400);
+    assertEquals(1,pool.reused());
+    assertEquals(0,b2.length());
+    pool.release(b2);
+    try {
+      pool.release(b2);
+      fail("Released twice");
+    }
+    catch(IllegalStateException e) {
+      // Expected
+    }
+
+    // Releasing other buffers is ignored
+    pool.release(new Buffer("abc"));
+    assertEquals(2,pool.released());
+
+    // Pool-aware operators return contiguous pooled Buffers
+    Buffer body=chunked("abcdef",2).lift(RxSupport.aggregateBuffers(16).pooled(pool)).toBlocking().single();
+    assertEquals(new Buffer("abcdef"),body);
+    pool.release(body);
+    // Only "cd" spans chunks so only it is copied
+    List<Buffer> records=chunked("ab|cd|",2).lift(RxSupport.frameDelimited("|",16).pooled(pool)).toList().toBlocking().single();
+    assertEquals(Arrays.asList(new Buffer("ab"),new Buffer("cd")),records);
+    for (Buffer record : records)
+      pool.release(record);
+    assertEquals(4,pool.released());
+    Buffer encoded=Observable.just(new JsonObject().putNumber("i",1)).lift(RxSupport.encodeJsonStream(0).pooled(pool)).toBlocking().single();
+    assertEquals(new Buffer("{\"i\":1}\n"),encoded);
+    pool.release(encoded);
+    assertEquals(5,pool.released());
+
+    // Buffers that are never released are reported (the count is shared so other leaks may be reported too)
+    BufferPool.setLeakSampling(1);
+    try {
+      long leaks=BufferPool.leaks();
+      Buffer released=pool.acquire(10);
+      pool.release(released);
+      Buffer leaked=pool.acquire(10);
+      assertNull(leakRef(released));
+      // Enqueue the reference as the collector would (rather than waiting for a GC)
+      leakRef(leaked).enqueue();
+      assertTrue(BufferPool.leaks()>=leaks+1);
+    }
+    catch(ReflectiveOperationException e) {
+      fail("Leak tracking not found "+e);
+    }
+    finally {
+      BufferPool.setLeakSampling(0);
+    }
+    testComplete();
+  }
+
+  /** Return the leak tracking reference of a pooled Buffer (or null) */
+  private static Reference<?> leakRef(Buffer buffer) throws ReflectiveOperationException {
+    ByteBuf buf=buffer.getByteBuf();
+    while (buf.unwrap()!=null)
+      buf=buf.unwrap();
+    Field field=buf.getClass().getDeclaredField("leak");
+    field.setAccessible(true);
+    return (Reference<?>)field.get(buf);
+  }
+
+  /** Return the bytes of a stream */
+  private static byte[] collect(Observable<Buffer> in) {
+    return in.lift(RxSupport.aggregateBuffers(Long.MAX_VALUE)).toBlocking().single().getBytes();
+  }
+
+  @Test
+  public void testCompression() throws Exception {
+    StringBuilder sb=new StringBuilder();
+    for (int i=0;i<5000;i++)
+      sb.append("line ").append(i).append('\n');
+    String text=sb.toString();
+    byte[] data=text.getBytes(StandardCharsets.UTF_8);
+
+    // gzip is readable by GZIPInputStream and back again, whatever the chunking
+    for (int size : new int[] { 1, 7, 1000, 100000 }) {
+      byte[] gz=collect(chunked(text,size).lift(RxSupport.gzip(Deflater.DEFAULT_COMPRESSION,size)));
+      assertArrayEquals(data,readFully(new GZIPInputStream(new ByteArrayInputStream(gz))));
+      assertArrayEquals(data,collect(Observable.from(split(gz,size)).lift(RxSupport.gunzip(size))));
+
+      byte[] z=collect(chunked(text,size).lift(RxSupport.deflate()));
+      assertArrayEquals(data,readFully(new InflaterInputStream(new ByteArrayInputStream(z))));
+      assertArrayEquals(data,collect(Observable.from(split(z,size)).lift(RxSupport.inflate(size))));
+    }
+
+    // Optional header fields and multiple members
+    ByteArrayOutputStream gzOut=new ByteArrayOutputStream();
+    GZIPOutputStream gzStream=new GZIPOutputStream(gzOut);
+    gzStream.write(data);
+    gzStream.close();
+    byte[] gz=gzOut.toByteArray();
+    ByteArrayOutputStream named=new ByteArrayOutputStream();
+    named.write(gz,0,3);
+    named.write(gz[3]|8);
+    named.write(gz,4,6);
+    named.write("name.txt\0".getBytes(StandardCharsets.UTF_8));
+    named.write(gz,10,gz.length-10);
+    named.write(gz);
+    byte[] twice=new byte[data.length*2];
+    System.arraycopy(data,0,twice,0,data.length);
+    System.arraycopy(data,0,twice,data.length,data.length);
+    assertArrayEquals(twice,collect(Observable.from(split(named.toByteArray(),5)).lift(RxSupport.gunzip())));
+
+    // Only one chunk is expanded at a time
+    byte[] zeros=collect(Observable.just(new Buffer(new byte[1024*1024])).lift(RxSupport.deflate()));
+    final List<Buffer> received=new ArrayList<>();
+    Observable.just(new Buffer(zeros)).lift(RxSupport.inflate(1024)).subscribe(new Subscriber<Buffer>() {
+      @Override public void onStart() {
+        request(2);
+      }
+      public void onNext(Buffer b) {
+        received.add(b);
+      }
+      public void onError(Throwable t) {
+        fail("Inflate failed (t="+t+")");
+      }
+      public void onCompleted() {
+        fail("Unexpected complete");
+      }
+    });
+    assertEquals(2,received.size());
+    assertEquals(1024,received.get(0).length());
+
+    // Truncated streams fail
+    assertError(Observable.from(split(gz,100)).take(2).lift(RxSupport.gunzip()),ZipException.class);
+  }
+
+  /** Split an array into Buffers of the given size */
+  private static List<Buffer> split(byte[] data, int size) {
+    List<Buffer> chunks=new ArrayList<>();
+    for (int i=0;i<data.length;i+=size)
+      chunks.add(new Buffer(Arrays.copyOfRange(data,i,Math.min(i+size,data.length))));
+    return chunks;
+  }
+
+  /** Read a stream fully */
+  private static byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out=new ByteArrayOutputStream();
+    byte[] buf=new byte[4096];
+    int n;
+    while ((n=in.read(buf))>0)
+      out.write(buf,0,n);
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testStreamPump() {
+
+    // 300 buffers into a stream that only accepts 100 writes per second
+    final GeneratorReadStream in=new GeneratorReadStream(vertx,300);
+    RatedWriteStream out=new RatedWriteStream(vertx,100);
+
+    RxSupport.stream(RxSupport.toObservable(in),out,1024).toList().subscribe(new Action1<List<Long>>() {
+      public void call(List<Long> progress) {
+        // 300 x ~10 bytes reported every 1KB then once on completion
+        assertTrue(progress.size()>1);
+        assertTrue(progress.size()<10);
+        assertEquals(2890,progress.get(progress.size()-1).longValue());
+        // The generator was held back rather than overflowing the rated stream
+        assertTrue(in.pauseCount()>1);
+        testComplete();
+      }
+    },new Action1<Throwable>() {
+      public void call(Throwable t) {
+        fail("Stream failed (t="+t+")");
+      }
+    });
+  }
+
+  @Test
+  public void testStreamOverrun() {
+
+    // Delivers 3 unrequested buffers after every pause
+    final GeneratorReadStream in=new GeneratorReadStream(vertx,50).setOverrun(3);
+
+    RxSupport.toObservable(in).subscribe(new Subscriber<Buffer>() {
+
+      /** Received */
+      private int count;
+
+      /** Request made since the last buffer */
+      private boolean pending;
+
+      @Override public void onStart() {
+        pending=true;
+        request(1);
+      }
+
+      @Override public void onNext(Buffer buf) {
+        count++;
+        // Only ask again once the previous request has been answered
+        if (!pending)
+          return;
+        pending=false;
+        vertx.runOnContext(new Handler<Void>() {
+          public void handle(Void v) {
+            pending=true;
+            request(1);
+          }
+        });
+      }
+
+      @Override public void onError(Throwable t) {
+        fail("Stream failed (t="+t+")");
+      }
+
+      @Override public void onCompleted() {
+        assertEquals(50,count);
+        assertTrue(in.pauseCount()>1);
+        testComplete();
+      }
+    });
+  }
+}
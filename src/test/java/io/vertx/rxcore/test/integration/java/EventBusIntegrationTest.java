@@ -38,6 +38,7 @@ import rx.functions.*;
 import static io.vertx.rxcore.test.integration.java.RxAssert.assertCountThenComplete;
 import static io.vertx.rxcore.test.integration.java.RxAssert.assertMessageThenComplete;
 import static io.vertx.rxcore.test.integration.java.RxAssert.assertError;
+import static org.vertx.testtools.VertxAssert.assertTrue;
 import static org.vertx.testtools.VertxAssert.assertEquals;
 import static org.vertx.testtools.VertxAssert.testComplete;
 
@@ -371,7 +372,8 @@ public class EventBusIntegrationTest extends TestVerticle {
       }
     });
 
-    Regulator regulator=new Regulator<>();
+    // Hold the stream once 1KB is waiting for the target
+    final Regulator regulator=new Regulator<>(256,1024);
 
     Observable<RxStream<Integer,JsonArray>> res=rx.<Integer,JsonArray>observeStream("countdown", 4000)
       // Add the regulator gate here
@@ -392,9 +394,17 @@ public class EventBusIntegrationTest extends TestVerticle {
         }
       });
 
-    // Create a WriteStream that can only handle 5 writes per second
-    RatedWriteStream out=new RatedWriteStream(vertx,5);
+    // Create a WriteStream that can only handle 100 writes per second
+    RatedWriteStream out=new RatedWriteStream(vertx,100);
 
-    assertCountThenComplete(regulator.stream(res,out),401);
+    Observable<Long> progress=regulator.stream(res,out)
+      .doOnNext(new Action1<Long>() {
+        public void call(Long total) {
+          // Budget plus at most one batch (~50 bytes) written after the gate closed
+          assertTrue(regulator.inFlightBytes()<1024+100);
+        }
+      });
+
+    assertCountThenComplete(progress,401);
   }
 }
@@ -0,0 +1,117 @@
+package io.vertx.rxcore.test.integration.java;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.streams.ReadStream;
+
+/** ReadStream that generates a fixed number of Buffers as fast as it is allowed */
+public class GeneratorReadStream implements ReadStream<GeneratorReadStream> {
+
+  // Instance variables
+
+  /** VertX */
+  private final Vertx vertx;
+
+  /** Buffers remaining */
+  protected int remaining;
+
+  /** Paused */
+  protected boolean paused;
+
+  /** Number of times paused */
+  protected int pauseCount;
+
+  /** Buffers still emitted after a pause */
+  protected int overrun;
+
+  /** Overrun remaining since the last pause */
+  protected int late;
+
+  /** Emission scheduled */
+  protected boolean scheduled;
+
+  /** Handlers */
+  protected Handler<Buffer> dataHandler;
+  protected Handler<Void> endHandler;
+
+  // Public methods
+
+  /** Create new GeneratorReadStream */
+  public GeneratorReadStream(Vertx vertx, int count) {
+    this.vertx=vertx;
+    this.remaining=count;
+  }
+
+  /** Keep emitting overrun Buffers after each pause (like a socket that has already read them) */
+  public GeneratorReadStream setOverrun(int overrun) {
+    this.overrun=overrun;
+    return this;
+  }
+
+  /** Return the number of times the stream was paused */
+  public int pauseCount() {
+    return this.pauseCount;
+  }
+
+  // ReadStream implementation
+
+  public GeneratorReadStream dataHandler(Handler<Buffer> handler) {
+    this.dataHandler=handler;
+    schedule();
+    return this;
+  }
+
+  public GeneratorReadStream pause() {
+    if (!this.paused) {
+      this.pauseCount++;
+      this.late=this.overrun;
+    }
+    this.paused=true;
+    return this;
+  }
+
+  public GeneratorReadStream resume() {
+    this.paused=false;
+    schedule();
+    return this;
+  }
+
+  public GeneratorReadStream exceptionHandler(Handler<Throwable> handler) {
+    return this;
+  }
+
+  public GeneratorReadStream endHandler(Handler<Void> handler) {
+    this.endHandler=handler;
+    return this;
+  }
+
+  // Implementation
+
+  /** Emit on the next tick */
+  protected void schedule() {
+    if (this.scheduled || (this.dataHandler==null))
+      return;
+    this.scheduled=true;
+    vertx.runOnContext(new Handler<Void>() {
+      public void handle(Void v) {
+        scheduled=false;
+        emit();
+      }
+    });
+  }
+
+  /** Emit until paused */
+  protected void emit() {
+    while ((!this.paused || (this.late>0)) && (this.remaining>0) && (this.dataHandler!=null)) {
+      if (this.paused)
+        this.late--;
+      this.dataHandler.handle(new Buffer("buffer-"+(--this.remaining)));
+    }
+    if ((this.remaining==0) && (this.endHandler!=null)) {
+      Handler<Void> handler=this.endHandler;
+      this.endHandler=null;
+      handler.handle(null);
+    }
+  }
+}
@@ -1,17 +1,34 @@
 package io.vertx.rxcore.test.integration.java;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 
+import io.vertx.rxcore.HttpTimeoutException;
 import io.vertx.rxcore.RxSupport;
+import io.vertx.rxcore.java.RetryBudget;
+import io.vertx.rxcore.java.RetryPolicy;
+import io.vertx.rxcore.java.RxVertx;
 import io.vertx.rxcore.java.http.*;
+import io.vertx.rxcore.java.impl.BufferPool;
 import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
 import org.vertx.java.core.http.HttpClientRequest;
+import org.vertx.java.core.net.NetSocket;
 import org.vertx.testtools.TestVerticle;
 import rx.Observable;
+import rx.functions.Action0;
 import rx.functions.Action1;
+import rx.functions.Func0;
 import rx.functions.Func1;
+import rx.schedulers.Schedulers;
 import static io.vertx.rxcore.test.integration.java.RxAssert.*;
+import static org.vertx.testtools.VertxAssert.*;
 
 /** HttpIntegrationTest
  * @author <a href="http://github.com/petermd">Peter McDonnell</a>
@@ -70,6 +87,19 @@ public class HttpIntegrationTest extends TestVerticle {
       }
     };
   } 
+
+  /** Download response body and return "status|body" */
+  public static Func1<RxHttpClientResponse,Observable<String>> statusAndBody() {
+    return new Func1<RxHttpClientResponse,Observable<String>>() {
+      public Observable<String> call(final RxHttpClientResponse resp) {
+        return resp.asObservable().lift(RxSupport.aggregateBuffers(Long.MAX_VALUE)).map(new Func1<Buffer,String>() {
+          public String call(Buffer body) {
+            return resp.statusCode()+"|"+body;
+          }
+        });
+      }
+    };
+  }
   
   @Test
   public void testGetNow() {
@@ -123,6 +153,953 @@ public class HttpIntegrationTest extends TestVerticle {
     assertError(ob,RuntimeException.class,"Builder Exception");
   }
 
+  @Test
+  public void testRespond() {
+
+    RxHttpServer server=new RxVertx(vertx).createHttpServer();
+
+    server
+      .http()
+        .subscribe(new Action1<RxHttpServerRequest>() {
+          public void call(RxHttpServerRequest req) {
+            List<Buffer> lines=new ArrayList<>();
+            for (int i=0;i<1000;i++)
+              lines.add(new Buffer("line "+i+"\n"));
+            Observable<Buffer> body=Observable.from(lines);
+            // Fail once the body has been written
+            if (req.path().equals("/fail"))
+              body=body.concatWith(Observable.<Buffer>error(new RuntimeException("Report failed")));
+            req.respond(body,1024,64).subscribe(new Action1<Long>() {
+              public void call(Long total) {
+                assertEquals(8890,total.longValue());
+              }
+            },new Action1<Throwable>() {
+              public void call(Throwable t) {
+                System.out.println("HttpServer:respond-failed:"+t);
+              }
+            });
+          }
+        });
+
+    server.coreHttpServer().listen(8081,"localhost");
+
+    final RxHttpClient client=new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8081));
+
+    client
+      .getNow("/report")
+      .flatMap(new Func1<RxHttpClientResponse,Observable<Buffer>>() {
+        public Observable<Buffer> call(RxHttpClientResponse resp) {
+          assertEquals("chunked",resp.headers().get("Transfer-Encoding"));
+          // 1000 lines are coalesced into far fewer chunks
+          return resp.asObservable().toList().map(new Func1<List<Buffer>,Buffer>() {
+            public Buffer call(List<Buffer> chunks) {
+              assertTrue(chunks.size()<=200);
+              Buffer body=new Buffer();
+              for (Buffer chunk : chunks)
+                body.appendBuffer(chunk);
+              return body;
+            }
+          });
+        }
+      })
+      .subscribe(new Action1<Buffer>() {
+        public void call(Buffer body) {
+          assertEquals(8890,body.length());
+          assertTrue(body.toString().endsWith("line 999\n"));
+
+          // The connection is closed without the terminating chunk so a failed body cannot look complete
+          vertx.createNetClient().connect(8081,"localhost",new Handler<AsyncResult<NetSocket>>() {
+            public void handle(AsyncResult<NetSocket> res) {
+              final NetSocket socket=res.result();
+              final Buffer raw=new Buffer();
+              socket.dataHandler(new Handler<Buffer>() {
+                public void handle(Buffer data) {
+                  raw.appendBuffer(data);
+                }
+              });
+              socket.closeHandler(new Handler<Void>() {
+                public void handle(Void v) {
+                  assertFalse(raw.toString().endsWith("0\r\n\r\n"));
+                  testComplete();
+                }
+              });
+              socket.write("GET /fail HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            }
+          });
+        }
+      });
+  }
+
+  /** Fetch uri with an optional header and return "status|Content-Range|body" */
+  protected static Observable<String> fetch(final RxHttpClient client, final String uri, final String header, final String value) {
+    // Deferred so the response is subscribed as soon as it arrives
+    return Observable.defer(new Func0<Observable<String>>() {
+      public Observable<String> call() {
+        return doFetch(client,uri,header,value);
+      }
+    });
+  }
+
+  /** Fetch uri */
+  protected static Observable<String> doFetch(RxHttpClient client, String uri, final String header, final String value) {
+    return client.get(uri,new Action1<HttpClientRequest>() {
+      public void call(HttpClientRequest req) {
+        if (header!=null)
+          req.putHeader(header,value);
+        req.end();
+      }
+    }).flatMap(new Func1<RxHttpClientResponse,Observable<String>>() {
+      public Observable<String> call(final RxHttpClientResponse resp) {
+        return resp.asObservable().lift(RxSupport.aggregateBuffers(Long.MAX_VALUE)).map(new Func1<Buffer,String>() {
+          public String call(Buffer body) {
+            return resp.statusCode()+"|"+resp.headers().get("Content-Range")+"|"+body;
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testStaticFiles() throws IOException {
+
+    File dir=Files.createTempDirectory("rxvertx").toFile();
+    dir.deleteOnExit();
+    File file=new File(dir,"test.txt");
+    file.deleteOnExit();
+    StringBuilder sb=new StringBuilder();
+    for (int i=0;i<20000;i++)
+      sb.append((char)('a'+(i%26)));
+    final String content=sb.toString();
+    Files.write(file.toPath(),content.getBytes(StandardCharsets.UTF_8));
+    final String etag="\""+Long.toHexString(file.length())+"-"+Long.toHexString((file.lastModified()/1000)*1000)+"\"";
+
+    RxHttpServer server=new RxVertx(vertx).createHttpServer();
+    server
+      .http()
+      .lift(new RxStaticFiles(vertx,"/static",dir.getAbsolutePath()))
+        .subscribe(new Action1<RxHttpServerRequest>() {
+          public void call(RxHttpServerRequest req) {
+            req.response().setStatusCode(404).end("missing:"+req.path());
+          }
+        });
+    server.coreHttpServer().listen(8082,"localhost");
+
+    RxHttpClient client=new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8082));
+
+    assertSequenceThenComplete(
+      Observable.concat(Observable.from(Arrays.asList(
+        fetch(client,"/static/test.txt",null,null),
+        fetch(client,"/static/test.txt","If-None-Match",etag),
+        fetch(client,"/static/test.txt","Range","bytes=10-19"),
+        fetch(client,"/static/test.txt","Range","bytes=-5"),
+        fetch(client,"/static/test.txt","Range","bytes=30000-"),
+        fetch(client,"/static/../test.txt",null,null),
+        fetch(client,"/static/other.txt",null,null)
+      ))),
+      "200|null|"+content,
+      "304|null|",
+      "206|bytes 10-19/20000|"+content.substring(10,20),
+      "206|bytes 19995-19999/20000|"+content.substring(19995),
+      "416|bytes */20000|",
+      "404|null|missing:/static/../test.txt",
+      "404|null|missing:/static/other.txt");
+  }
+
+  /** Post chunks (chunked unless contentLength>=0) and return "status|body" */
+  protected static Observable<String> post(final RxHttpClient client, final String uri, final String contentType, final long contentLength, final String... chunks) {
+    // Deferred so the response is subscribed as soon as it arrives
+    return Observable.defer(new Func0<Observable<String>>() {
+      public Observable<String> call() {
+        return doPost(client,uri,contentType,contentLength,chunks);
+      }
+    });
+  }
+
+  /** Post chunks */
+  protected static Observable<String> doPost(RxHttpClient client, String uri, final String contentType, final long contentLength, final String... chunks) {
+    return client.request("POST",uri,new Action1<HttpClientRequest>() {
+      public void call(HttpClientRequest req) {
+        req.putHeader("Content-Type",contentType);
+        if (contentLength>=0)
+          req.putHeader("Content-Length",Long.toString(contentLength));
+        else
+          req.setChunked(true);
+        for (String chunk : chunks)
+          req.write(chunk);
+        req.end();
+      }
+    }).flatMap(statusAndBody());
+  }
+
+  @Test
+  public void testRequestBody() {
+
+    RxHttpServer server=new RxVertx(vertx).createHttpServer();
+
+    server
+      .http()
+        .subscribe(new Action1<RxHttpServerRequest>() {
+          public void call(final RxHttpServerRequest req) {
+            Action1<Throwable> ignore=new Action1<Throwable>() {
+              public void call(Throwable t) {
+                // Already rejected
+              }
+            };
+            if (req.path().equals("/body")) {
+              req.asBody(100).subscribe(new Action1<Buffer>() {
+                public void call(Buffer body) {
+                  req.response().end("len="+body.length());
+                }
+              },ignore);
+            }
+            else if (req.path().equals("/json")) {
+              req.asJson(100).count().subscribe(new Action1<Integer>() {
+                public void call(Integer count) {
+                  req.response().end("count="+count);
+                }
+              },ignore);
+            }
+            else {
+              req.asForm(100).subscribe(new Action1<org.vertx.java.core.MultiMap>() {
+                public void call(org.vertx.java.core.MultiMap form) {
+                  req.response().end(form.get("a")+","+form.get("b"));
+                }
+              },ignore);
+            }
+          }
+        });
+
+    server.coreHttpServer().listen(8083,"localhost");
+
+    char[] block=new char[60];
+    Arrays.fill(block,'x');
+    String chunk=new String(block);
+
+    // Each request uses its own client as rejected connections are closed
+    assertSequenceThenComplete(
+      Observable.concat(Observable.from(Arrays.asList(
+        post(new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8083)),"/body","text/plain",-1,chunk),
+        post(new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8083)),"/body","text/plain",120,chunk,chunk),
+        post(new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8083)),"/body","text/plain",-1,chunk,chunk),
+        post(new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8083)),"/json","application/x-ndjson",-1,"{\"a\":1}\n{\"a\"",":2}\n"),
+        post(new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8083)),"/json","text/plain",-1,"{}"),
+        post(new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8083)),"/form","application/x-www-form-urlencoded;charset=UTF-8",-1,"a=1&b=x%20","y")
+      ))),
+      "200|len=60",
+      "413|",
+      "413|",
+      "200|count=2",
+      "415|",
+      "200|1,x y");
+  }
+
+  /** Return a multipart body with one file part per name/content pair */
+  protected static String multipart(String... parts) {
+    StringBuilder sb=new StringBuilder();
+    for (int i=0;i<parts.length;i+=2) {
+      sb.append("--XyZ\r\n")
+        .append("Content-Disposition: form-data; name=\""+parts[i]+"\"; filename=\""+parts[i]+".txt\"\r\n")
+        .append("Content-Type: text/plain\r\n\r\n")
+        .append(parts[i+1])
+        .append("\r\n");
+    }
+    return sb.append("--XyZ--\r\n").toString();
+  }
+
+  @Test
+  public void testUploads() throws IOException {
+
+    final File dir=Files.createTempDirectory("rxvertx").toFile();
+    dir.deleteOnExit();
+
+    RxHttpServer server=new RxVertx(vertx).createHttpServer();
+
+    server
+      .http()
+        .subscribe(new Action1<RxHttpServerRequest>() {
+          public void call(final RxHttpServerRequest req) {
+            req.asUploads(1000,5000)
+              .flatMap(new Func1<RxUpload,Observable<String>>() {
+                public Observable<String> call(final RxUpload upload) {
+                  // Stream files to disk and aggregate everything else
+                  if (upload.name().equals("file")) {
+                    File file=new File(dir,upload.filename());
+                    file.deleteOnExit();
+                    return upload.streamToFile(file.getAbsolutePath()).map(new Func1<Long,String>() {
+                      public String call(Long total) {
+                        return upload.name()+"="+total;
+                      }
+                    });
+                  }
+                  return upload.asObservable().lift(RxSupport.aggregateBuffers(Long.MAX_VALUE)).map(new Func1<Buffer,String>() {
+                    public String call(Buffer body) {
+                      return upload.name()+":"+body;
+                    }
+                  });
+                }
+              })
+              .toSortedList()
+              .subscribe(new Action1<List<String>>() {
+                public void call(List<String> res) {
+                  req.response().end(res.toString());
+                }
+              },new Action1<Throwable>() {
+                public void call(Throwable t) {
+                  // Already rejected
+                }
+              });
+          }
+        });
+
+    server.coreHttpServer().listen(8084,"localhost");
+
+    char[] block=new char[600];
+    Arrays.fill(block,'x');
+    final String content=new String(block);
+
+    assertSequenceThenComplete(
+      Observable.concat(Observable.from(Arrays.asList(
+        post(new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8084)),"/upload","multipart/form-data; boundary=XyZ",-1,multipart("file",content,"text","hello")),
+        post(new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8084)),"/upload","multipart/form-data; boundary=XyZ",-1,multipart("text",content+content)),
+        post(new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8084)),"/upload","multipart/form-data; boundary=XyZ",10000,multipart("text","hello"))
+      ))).doOnCompleted(new Action0() {
+        public void call() {
+          try {
+            assertEquals(content,new String(Files.readAllBytes(new File(dir,"file.txt").toPath()),StandardCharsets.UTF_8));
+          }
+          catch(IOException e) {
+            fail(e.getMessage());
+          }
+        }
+      }),
+      "200|[file=600, text:hello]",
+      "413|",
+      "413|");
+  }
+
+  @Test
+  public void testAdmissionControl() {
+
+    final RxAdmissionControl admission=new RxAdmissionControl(1,1).setRetryAfter(5);
+
+    RxHttpServer server=new RxVertx(vertx).createHttpServer();
+
+    server
+      .http()
+      .lift(admission)
+        .subscribe(new Action1<RxHttpServerRequest>() {
+          public void call(final RxHttpServerRequest req) {
+            vertx.setTimer(200,new Handler<Long>() {
+              public void handle(Long id) {
+                req.response().end("ok");
+              }
+            });
+          }
+        });
+
+    server.coreHttpServer().listen(8085,"localhost");
+
+    RxHttpClient client=new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8085).setMaxPoolSize(3));
+
+    Func1<RxHttpClientResponse,String> status=new Func1<RxHttpClientResponse,String>() {
+      public String call(RxHttpClientResponse resp) {
+        return resp.statusCode()+"|"+resp.headers().get("Retry-After");
+      }
+    };
+
+    assertSequenceThenComplete(
+      Observable.merge(client.getNow("/a").map(status),client.getNow("/b").map(status),client.getNow("/c").map(status))
+        .toSortedList()
+        .map(new Func1<List<String>,String>() {
+          public String call(List<String> res) {
+            return res+" accepted="+admission.accepted()+",queued="+admission.queued()+",shed="+admission.shed()+",inFlight="+admission.inFlight();
+          }
+        }),
+      "[200|null, 200|null, 503|5] accepted=2,queued=1,shed=1,inFlight=0");
+  }
+
+  /** Send method to uri and return "status|Content-Length|Allow|body" */
+  protected static Observable<String> head(final RxHttpClient client, final String method, final String uri) {
+    return Observable.defer(new Func0<Observable<String>>() {
+      public Observable<String> call() {
+        return client.request(method,uri,new Action1<HttpClientRequest>() {
+          public void call(HttpClientRequest req) {
+            req.end();
+          }
+        }).flatMap(new Func1<RxHttpClientResponse,Observable<String>>() {
+          public Observable<String> call(final RxHttpClientResponse resp) {
+            return resp.asObservable().lift(RxSupport.aggregateBuffers(Long.MAX_VALUE)).map(new Func1<Buffer,String>() {
+              public String call(Buffer body) {
+                return resp.statusCode()+"|"+resp.headers().get("Content-Length")+"|"+resp.headers().get("Allow")+"|"+body;
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  /** Return handler that ends the response with the given params */
+  protected static Action1<RxHttpServerRequest> reply(final String... params) {
+    return new Action1<RxHttpServerRequest>() {
+      public void call(RxHttpServerRequest req) {
+        StringBuilder sb=new StringBuilder(req.method());
+        for (String param : params)
+          sb.append(":").append(req.params().get(param));
+        req.response().end(sb.toString());
+      }
+    };
+  }
+
+  @Test
+  public void testRouter() {
+
+    RxHttpServer server=new RxVertx(vertx).createHttpServer();
+
+    RxRouter router=new RxRouter(server.http());
+    router.get("/users/:id").subscribe(reply("id"));
+    router.get("/users/me").subscribe(reply());
+    router.get("/users/:id/posts/:post").subscribe(reply("id","post"));
+    router.route(null,"/files/*path").subscribe(reply("path"));
+    router.put("/users/:id").subscribe(reply("id"));
+    router.get("/items/new").subscribe(reply());
+    router.post("/items/:id").subscribe(reply("id"));
+
+    server.coreHttpServer().listen(8086,"localhost");
+
+    RxHttpClient client=new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8086));
+
+    assertSequenceThenComplete(
+      Observable.concat(Observable.from(Arrays.asList(
+        fetch(client,"/users/42",null,null),
+        fetch(client,"/users/me/",null,null),
+        fetch(client,"/users/a%20b/posts/7?x=1",null,null),
+        fetch(client,"/files/a/b/c.txt",null,null),
+        fetch(client,"/files",null,null),
+        post(client,"/users/42","text/plain",-1,"x"),
+        // The literal only has GET so the capture takes the POST
+        post(client,"/items/new","text/plain",-1,"x"),
+        fetch(client,"/items/new",null,null),
+        fetch(client,"/nothing",null,null),
+        // HEAD is answered by the GET route without the body (and the connection stays usable)
+        head(client,"HEAD","/users/42"),
+        fetch(client,"/users/42",null,null),
+        head(client,"DELETE","/items/new")
+      ))),
+      "200|null|GET:42",
+      "200|null|GET",
+      "200|null|GET:a b:7",
+      "200|null|GET:a/b/c.txt",
+      "200|null|GET:",
+      "405|",
+      "200|POST:new",
+      "200|null|GET",
+      "404|null|",
+      "200|7|null|",
+      "200|null|GET:42",
+      "405|0|GET, HEAD, POST|");
+  }
+
+  /** Fetch uri with Accept-Encoding and return "Content-Encoding|Vary|decoded body" */
+  protected static Observable<String> fetchEncoded(final RxHttpClient client, final String uri, final String acceptEncoding) {
+    return Observable.defer(new Func0<Observable<String>>() {
+      public Observable<String> call() {
+        return client.get(uri,new Action1<HttpClientRequest>() {
+          public void call(HttpClientRequest req) {
+            req.putHeader("Accept-Encoding",acceptEncoding);
+            req.end();
+          }
+        }).flatMap(new Func1<RxHttpClientResponse,Observable<String>>() {
+          public Observable<String> call(final RxHttpClientResponse resp) {
+            return resp.asDecodedObservable().lift(RxSupport.aggregateBuffers(Long.MAX_VALUE)).map(new Func1<Buffer,String>() {
+              public String call(Buffer body) {
+                return resp.headers().get("Content-Encoding")+"|"+resp.headers().get("Vary")+"|"+body;
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  @Test
+  public void testCompression() {
+
+    StringBuilder sb=new StringBuilder();
+    for (int i=0;i<200;i++)
+      sb.append("{\"id\":").append(i).append("}\n");
+    final String big=sb.toString();
+    final RxCompression compression=new RxCompression().setMinSize(100);
+
+    RxHttpServer server=new RxVertx(vertx).createHttpServer();
+
+    server
+      .http()
+      .lift(compression)
+        .subscribe(new Action1<RxHttpServerRequest>() {
+          public void call(RxHttpServerRequest req) {
+            req.response().putHeader("Content-Type",req.path().equals("/image")?"image/png":"application/x-ndjson");
+            if (req.path().equals("/static")) {
+              compression.respond(req,"static",new Buffer(big));
+              return;
+            }
+            String body=req.path().equals("/small")?"{}":big;
+            req.respond(Observable.from(Arrays.asList(new Buffer(body.substring(0,body.length()/2)),new Buffer(body.substring(body.length()/2)))));
+          }
+        });
+
+    server.coreHttpServer().listen(8087,"localhost");
+
+    RxHttpClient client=new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8087));
+
+    assertSequenceThenComplete(
+      Observable.concat(Observable.from(Arrays.asList(
+        fetchEncoded(client,"/big","gzip"),
+        fetchEncoded(client,"/big","gzip;q=0.5, deflate"),
+        fetchEncoded(client,"/big","identity"),
+        // * does not override codings refused explicitly
+        fetchEncoded(client,"/big","gzip;q=0, *"),
+        fetchEncoded(client,"/big","deflate;q=0, gzip;q=0, *;q=0.5"),
+        fetchEncoded(client,"/small","gzip"),
+        fetchEncoded(client,"/image","gzip"),
+        fetchEncoded(client,"/static","gzip"),
+        fetchEncoded(client,"/static","gzip")
+      ))),
+      "gzip|Accept-Encoding|"+big,
+      "deflate|Accept-Encoding|"+big,
+      "null|Accept-Encoding|"+big,
+      "deflate|Accept-Encoding|"+big,
+      "null|Accept-Encoding|"+big,
+      "null|Accept-Encoding|{}",
+      "null|null|"+big,
+      "gzip|Accept-Encoding|"+big,
+      "gzip|Accept-Encoding|"+big);
+  }
+
+  @Test
+  public void testSse() {
+
+    RxHttpServer server=new RxVertx(vertx).createHttpServer();
+    final BufferPool pool=BufferPool.forContext(vertx);
+    // Too big to coalesce so written as is
+    StringBuilder sb=new StringBuilder();
+    for (int i=0;i<10000;i++)
+      sb.append('x');
+    final String large=sb.toString();
+
+    server
+      .http()
+        .subscribe(new Action1<RxHttpServerRequest>() {
+          public void call(RxHttpServerRequest req) {
+            // Events then silence (so only heartbeats follow)
+            Observable<String> events=Observable.concat(Observable.from(Arrays.asList("a","b\nc","\u00e9",large)),Observable.<String>never());
+            req.respondSse(events,new Func1<String,String>() {
+              public String call(String s) {
+                return s;
+              }
+            },1000,30000);
+          }
+        });
+
+    server.coreHttpServer().listen(8088,"localhost");
+
+    RxHttpClient client=new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8088));
+
+    final String expected=":\n\ndata: a\n\ndata: b\ndata: c\n\ndata: \u00e9\n\ndata: "+large+"\n\n:\n\n";
+    assertSequenceThenComplete(
+      client.getNow("/events").flatMap(new Func1<RxHttpClientResponse,Observable<String>>() {
+        public Observable<String> call(final RxHttpClientResponse resp) {
+          final Buffer all=new Buffer();
+          return resp.asObservable()
+            .map(new Func1<Buffer,String>() {
+              public String call(Buffer buf) {
+                all.appendBuffer(buf);
+                // Every pooled frame has been returned
+                return resp.headers().get("Content-Type")+"|"+(pool.acquired()-pool.released())+"|"+all.toString("UTF-8");
+              }
+            })
+            .first(new Func1<String,Boolean>() {
+              public Boolean call(String s) {
+                // Until the first heartbeat after the events
+                return s.endsWith("\n\n:\n\n");
+              }
+            });
+        }
+      }),
+      "text/event-stream; charset=utf-8|0|"+expected);
+  }
+
+  /** GET uri through the cache and return "status|body" */
+  protected static Observable<String> cached(final RxHttpCache cache, final String uri) {
+    return Observable.defer(new Func0<Observable<String>>() {
+      public Observable<String> call() {
+        return cache.getNow(uri).flatMap(statusAndBody());
+      }
+    });
+  }
+
+  @Test
+  public void testHttpCache() {
+
+    final Map<String,Integer> served=new HashMap<>();
+    StringBuilder sb=new StringBuilder();
+    for (int i=0;i<100;i++)
+      sb.append('x');
+    final String chunk=sb.toString();
+    RxHttpServer server=new RxVertx(vertx).createHttpServer();
+
+    server
+      .http()
+        .subscribe(new Action1<RxHttpServerRequest>() {
+          public void call(RxHttpServerRequest req) {
+            Integer count=served.get(req.path());
+            served.put(req.path(),(count==null)?1:count+1);
+            if (req.path().equals("/config")) {
+              req.response().putHeader("Cache-Control","max-age=60").end("config");
+            }
+            else if (req.path().equals("/etag")) {
+              req.response().putHeader("Cache-Control","no-cache").putHeader("ETag","\"v1\"");
+              // The 304 adds a header that is merged into the entry
+              if ("\"v1\"".equals(req.headers().get("If-None-Match")))
+                req.response().putHeader("Expires","Thu, 01 Jan 1970 00:00:00 GMT").setStatusCode(304).end();
+              else
+                req.response().end("etag");
+            }
+            else if (req.path().equals("/large")) {
+              // Chunked so the size is only known once read
+              req.response().putHeader("Cache-Control","max-age=60").setChunked(true);
+              req.response().write(chunk).write(chunk).end(chunk);
+            }
+            else {
+              req.response().putHeader("Cache-Control","no-store").end("private");
+            }
+          }
+        });
+
+    server.coreHttpServer().listen(8089,"localhost");
+
+    final RxHttpCache cache=new RxHttpCache(new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8089)),1024*1024).setMaxEntrySize(250);
+    final long[] bytes={0};
+
+    assertSequenceThenComplete(
+      Observable.concat(Observable.from(Arrays.asList(
+        cached(cache,"/config"),
+        cached(cache,"/config"),
+        cached(cache,"/etag"),
+        Observable.defer(new Func0<Observable<String>>() {
+          public Observable<String> call() {
+            bytes[0]=cache.bytes();
+            return Observable.empty();
+          }
+        }),
+        cached(cache,"/etag"),
+        Observable.defer(new Func0<Observable<String>>() {
+          public Observable<String> call() {
+            // The merged header is accounted for
+            return Observable.just(Long.toString(cache.bytes()-bytes[0]));
+          }
+        }),
+        cached(cache,"/private"),
+        cached(cache,"/private"),
+        cached(cache,"/large"),
+        cached(cache,"/large"),
+        Observable.defer(new Func0<Observable<String>>() {
+          public Observable<String> call() {
+            return Observable.just(cache.hits()+"|"+cache.misses()+"|"+cache.revalidations()+"|"+cache.notModified()+"|"+cache.size()+"|"+served.get("/config")+","+served.get("/etag")+","+served.get("/private")+","+served.get("/large"));
+          }
+        })
+      ))),
+      "200|config",
+      "200|config",
+      "200|etag",
+      "200|etag",
+      Integer.toString("Expires".length()+"Thu, 01 Jan 1970 00:00:00 GMT".length()),
+      "200|private",
+      "200|private",
+      "200|"+chunk+chunk+chunk,
+      "200|"+chunk+chunk+chunk,
+      "1|6|1|1|2|1,2,2,2");
+  }
+
+  @Test
+  public void testCoalescing() {
+
+    final int[] served={0};
+    RxHttpServer server=new RxVertx(vertx).createHttpServer();
+
+    server
+      .http()
+        .subscribe(new Action1<RxHttpServerRequest>() {
+          public void call(final RxHttpServerRequest req) {
+            served[0]++;
+            // Slow enough for the requests to overlap
+            vertx.setTimer(100,new Handler<Long>() {
+              public void handle(Long id) {
+                req.response().end("slow:"+req.headers().get("Accept"));
+              }
+            });
+          }
+        });
+
+    server.coreHttpServer().listen(8091,"localhost");
+
+    final RxHttpCoalescer coalescer=new RxHttpCoalescer(new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8091)));
+
+    List<Observable<String>> gets=new ArrayList<>();
+    for (int i=0;i<6;i++) {
+      final String accept=(i<5)?"text/a":"text/b";
+      gets.add(Observable.defer(new Func0<Observable<String>>() {
+        public Observable<String> call() {
+          CaseInsensitiveMultiMap headers=new CaseInsensitiveMultiMap();
+          headers.add("Accept",accept);
+          return coalescer.getNow("/slow",headers).flatMap(statusAndBody());
+        }
+      }));
+    }
+
+    assertSequenceThenComplete(
+      Observable.merge(Observable.from(gets)).toSortedList().map(new Func1<List<String>,String>() {
+        public String call(List<String> bodies) {
+          return bodies+"|"+served[0]+"|"+coalescer.requests()+"|"+coalescer.coalesced()+"|"+coalescer.inFlight();
+        }
+      }),
+      "[200|slow:text/a, 200|slow:text/a, 200|slow:text/a, 200|slow:text/a, 200|slow:text/a, 200|slow:text/b]|2|2|4|0");
+  }
+
+  @Test
+  public void testLoadBalancing() {
+
+    RxVertx rx=new RxVertx(vertx);
+    for (final int port : new int[] {8092,8093}) {
+      RxHttpServer server=rx.createHttpServer();
+      server
+        .http()
+          .subscribe(new Action1<RxHttpServerRequest>() {
+            public void call(RxHttpServerRequest req) {
+              req.response().setStatusCode((port==8092)?200:503).end();
+            }
+          });
+      server.coreHttpServer().listen(port,"localhost");
+    }
+
+    final RxBalancedHttpClient client=new RxBalancedHttpClient(
+        vertx.createHttpClient().setHost("localhost").setPort(8092),
+        vertx.createHttpClient().setHost("localhost").setPort(8093))
+      .setStrategy(RxBalancedHttpClient.Strategy.LEAST_OUTSTANDING)
+      .setMaxFailures(2);
+
+    List<Observable<String>> gets=new ArrayList<>();
+    for (int i=0;i<8;i++) {
+      gets.add(Observable.defer(new Func0<Observable<String>>() {
+        public Observable<String> call() {
+          return client.getNow("/").map(new Func1<RxHttpClientResponse,String>() {
+            public String call(RxHttpClientResponse resp) {
+              return Integer.toString(resp.statusCode());
+            }
+          });
+        }
+      }));
+    }
+    gets.add(Observable.defer(new Func0<Observable<String>>() {
+      public Observable<String> call() {
+        RxBalancedHttpClient.Backend good=client.backends().get(0), bad=client.backends().get(1);
+        return Observable.just(good.requests()+"|"+bad.requests()+"|"+bad.failures()+"|"+bad.ejections()+"|"+bad.isEjected()+"|"+(good.latency()>0));
+      }
+    }));
+
+    // Each retry chooses again so the 503 is retried on the other backend
+    final RxBalancedHttpClient retrying=new RxBalancedHttpClient(vertx,
+        vertx.createHttpClient().setHost("localhost").setPort(8092),
+        vertx.createHttpClient().setHost("localhost").setPort(8093))
+      .setStrategy(RxBalancedHttpClient.Strategy.LEAST_OUTSTANDING)
+      .setDeadlines(new HttpDeadlines().setTotal(5000));
+    final RetryPolicy policy=new RetryPolicy(rx.contextScheduler()).setMaxRetries(1).setBackoff(10,10).retryOnStatus(503);
+    for (int i=0;i<2;i++) {
+      gets.add(policy.apply(retrying.getNow("/")).map(new Func1<RxHttpClientResponse,String>() {
+        public String call(RxHttpClientResponse resp) {
+          return Integer.toString(resp.statusCode());
+        }
+      }));
+    }
+    gets.add(Observable.defer(new Func0<Observable<String>>() {
+      public Observable<String> call() {
+        return Observable.just(retrying.backends().get(0).requests()+"|"+retrying.backends().get(1).requests()+"|"+policy.retries());
+      }
+    }));
+
+    // Turns alternate until the failing backend is ejected
+    assertSequenceThenComplete(
+      Observable.concat(Observable.from(gets)),
+      "200","503","200","503","200","200","200","200",
+      "6|2|2|1|true|true",
+      "200","200",
+      "2|1|1");
+  }
+
+  @Test
+  public void testDeadlines() {
+
+    RxHttpServer server=new RxVertx(vertx).createHttpServer();
+
+    server
+      .http()
+        .subscribe(new Action1<RxHttpServerRequest>() {
+          public void call(RxHttpServerRequest req) {
+            if (req.path().equals("/fast"))
+              req.response().end("ok");
+            else if (req.path().equals("/body"))
+              req.response().setChunked(true).write("partial");
+            // Otherwise hang
+          }
+        });
+
+    server.coreHttpServer().listen(8094,"localhost");
+
+    final RxHttpClient client=new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8094).setMaxPoolSize(1),vertx)
+      .setDeadlines(new HttpDeadlines().setConnect(1000).setFirstByte(200).setTotal(500));
+
+    List<Observable<String>> gets=new ArrayList<>();
+    for (final String uri : new String[] {"/fast","/hang","/body","/fast"}) {
+      gets.add(Observable.defer(new Func0<Observable<String>>() {
+        public Observable<String> call() {
+          return client.getNow(uri)
+            .flatMap(statusAndBody())
+            .onErrorReturn(new Func1<Throwable,String>() {
+              public String call(Throwable t) {
+                return (t instanceof HttpTimeoutException)?"timeout|"+((HttpTimeoutException)t).phase():t.toString();
+              }
+            });
+        }
+      }));
+    }
+
+    // Deadlines cannot be kept off a Context so the request fails rather than throwing
+    gets.add(Observable.defer(new Func0<Observable<String>>() {
+      public Observable<String> call() {
+        return client.getNow("/fast").map(new Func1<RxHttpClientResponse,String>() {
+          public String call(RxHttpClientResponse resp) {
+            return Integer.toString(resp.statusCode());
+          }
+        })
+        .onErrorReturn(new Func1<Throwable,String>() {
+          public String call(Throwable t) {
+            return t.getClass().getSimpleName();
+          }
+        });
+      }
+    }).subscribeOn(Schedulers.newThread()));
+
+    // The timed out connections are closed so the single pooled connection is free again
+    assertSequenceThenComplete(
+      Observable.concat(Observable.from(gets)),
+      "200|ok",
+      "timeout|FIRST_BYTE",
+      "timeout|TOTAL",
+      "200|ok",
+      "IllegalStateException");
+  }
+
+  @Test
+  public void testRetry() {
+
+    final int[] served={0};
+    RxVertx rx=new RxVertx(vertx);
+    RxHttpServer server=rx.createHttpServer();
+
+    server
+      .http()
+        .subscribe(new Action1<RxHttpServerRequest>() {
+          public void call(RxHttpServerRequest req) {
+            served[0]++;
+            // Fails twice before recovering
+            if (req.path().equals("/flaky") && (served[0]>2))
+              req.response().end("ok");
+            else
+              req.response().setStatusCode(503).end("down");
+          }
+        });
+
+    server.coreHttpServer().listen(8095,"localhost");
+
+    RxHttpClient client=new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8095),vertx);
+    final RetryPolicy policy=new RetryPolicy(rx.contextScheduler()).setBackoff(10,50).retryOnStatus(503);
+    final RetryPolicy budgeted=new RetryPolicy(rx.contextScheduler()).setBackoff(10,50).retryOnStatus(503).setBudget(new RetryBudget(0,0));
+
+    assertSequenceThenComplete(
+      Observable.concat(Observable.from(Arrays.asList(
+        policy.apply(client.observeGetNow("/flaky")).flatMap(statusAndBody()),
+        policy.apply(client.observeGetNow("/down")).flatMap(statusAndBody()),
+        budgeted.apply(client.observeGetNow("/down")).flatMap(statusAndBody()),
+        Observable.defer(new Func0<Observable<String>>() {
+          public Observable<String> call() {
+            return Observable.just(served[0]+"|"+policy.retries()+"|"+budgeted.retries()+"|"+budgeted.denied());
+          }
+        })
+      ))),
+      "200|ok",
+      "503|down",
+      "503|down",
+      "8|5|0|1");
+  }
+
+  @Test
+  public void testPoolWarmUp() {
+
+    RxVertx rx=new RxVertx(vertx);
+    RxHttpServer server=rx.createHttpServer();
+
+    server
+      .http()
+        .subscribe(new Action1<RxHttpServerRequest>() {
+          public void call(RxHttpServerRequest req) {
+            req.response().end("ok");
+          }
+        });
+
+    server.coreHttpServer().listen(8096,"localhost");
+
+    final RxHttpClient client=new RxHttpClient(vertx.createHttpClient().setHost("localhost").setPort(8096).setMaxPoolSize(4),vertx)
+      .monitorPool();
+
+    // Connections return to the pool once the response has ended so wait for them to be idle
+    Func1<HttpPoolStats,Boolean> settled=new Func1<HttpPoolStats,Boolean>() {
+      public Boolean call(HttpPoolStats stats) {
+        return (stats.inUse()==0);
+      }
+    };
+    Func1<HttpPoolStats,String> gauges=new Func1<HttpPoolStats,String>() {
+      public String call(HttpPoolStats stats) {
+        return stats.connections()+"|"+stats.idle()+"|"+stats.waiting()+"|"+stats.connects()+"|"+(stats.connectPercentile(100)>0);
+      }
+    };
+
+    assertSequenceThenComplete(
+      Observable.concat(Observable.from(Arrays.asList(
+        Observable.defer(new Func0<Observable<String>>() {
+          public Observable<String> call() {
+            return client.warmUp(3,"/").map(new Func1<HttpPoolStats,String>() {
+              public String call(HttpPoolStats stats) {
+                return stats.connections()+"|"+stats.connects();
+              }
+            });
+          }
+        }),
+        Observable.defer(new Func0<Observable<String>>() {
+          public Observable<String> call() {
+            return client.getNow("/").map(new Func1<RxHttpClientResponse,String>() {
+              public String call(RxHttpClientResponse resp) {
+                return Integer.toString(resp.statusCode());
+              }
+            });
+          }
+        }),
+        client.observePoolStats(20).first(settled).map(gauges)
+      ))),
+      "3|3",
+      "200",
+      "3|3|0|3|true");
+  }
+
   @Test
   public void testWebSocket() {
 
@@ -89,11 +89,23 @@ public class RatedWriteStream implements WriteStream<RatedWriteStream> {
     }
     // If limit reached, automatically set a timer
     else if (this.counter.count==this.wps) {
-      this.vertx.setTimer(this.counter.remaining(),new Handler<Long>() { public void handle(Long value) { drainHandler.handle(null); } });
+      scheduleDrain();
     }
     return this;
   }
 
+  /** Signal drain once the current second has passed (re-arm if the timer fires early) */
+  protected void scheduleDrain() {
+    this.vertx.setTimer(this.counter.remaining(),new Handler<Long>() {
+      public void handle(Long value) {
+        if (writeQueueFull())
+          scheduleDrain();
+        else
+          drainHandler.handle(null);
+      }
+    });
+  }
+
   /** Set the WriteQueueMaxSize */
   public RatedWriteStream setWriteQueueMaxSize(int maxSize) {
     // Ignored
@@ -102,7 +114,9 @@ public class RatedWriteStream implements WriteStream<RatedWriteStream> {
 
   /** Return true if the queue is full */
   public boolean writeQueueFull() {
-    return this.counter.count==this.wps;
+    // Roll over to the current second before checking
+    this.counter.add(0);
+    return this.counter.count>=this.wps;
   }
 
   /** Set a handler for drainage */
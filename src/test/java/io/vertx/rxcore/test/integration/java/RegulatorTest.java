@@ -0,0 +1,188 @@
+package io.vertx.rxcore.test.integration.java;
+
+import io.vertx.rxcore.java.RxVertx;
+import io.vertx.rxcore.java.impl.Regulator;
+import io.vertx.rxcore.java.impl.SpillQueue;
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.streams.WriteStream;
+import org.vertx.testtools.TestVerticle;
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.vertx.rxcore.test.integration.java.RxAssert.assertCountThenComplete;
+import static org.vertx.testtools.VertxAssert.*;
+
+/** Unit-test for Regulator */
+public class RegulatorTest extends TestVerticle {
+
+  /** Test SpillQueue keeps order across memory and disk */
+  @Test
+  public void testSpillQueue() {
+
+    // 64 bytes in memory, 100 byte segments so records span segments
+    SpillQueue queue=new SpillQueue(64,100);
+
+    for (int i=0; i<50; i++) {
+      queue.add(new Buffer("record-"+i));
+    }
+
+    assertTrue(queue.memoryBytes()<=64);
+    assertTrue(queue.spilledBytes()>0);
+    assertEquals(50,queue.size());
+
+    // Iterate across memory and disk without removing
+    int n=0;
+    for (Buffer buf : queue) {
+      assertEquals("record-"+n++,buf.toString());
+    }
+    assertEquals(50,n);
+    assertEquals(50,queue.size());
+    assertTrue(queue.contains(new Buffer("record-49")));
+
+    // Interleave reads and writes
+    for (int i=0; i<25; i++) {
+      assertEquals("record-"+i,queue.poll().toString());
+    }
+    for (int i=50; i<60; i++) {
+      queue.add(new Buffer("record-"+i));
+    }
+    n=25;
+    for (Buffer buf : queue) {
+      assertEquals("record-"+n++,buf.toString());
+    }
+    assertEquals(60,n);
+    for (int i=25; i<60; i++) {
+      assertEquals("record-"+i,queue.poll().toString());
+      assertTrue(queue.memoryBytes()<=64);
+    }
+
+    assertNull(queue.poll());
+    assertEquals(0,queue.spilledBytes());
+
+    // A steady backlog keeps the file bounded
+    for (int i=0; i<50; i++) {
+      queue.add(new Buffer("record-"+i));
+    }
+    for (int i=0; i<2000; i++) {
+      assertEquals("record-"+i,queue.poll().toString());
+      queue.add(new Buffer("record-"+(i+50)));
+      assertTrue(queue.fileSize()<2000);
+    }
+    assertEquals(50,queue.size());
+    queue.close();
+
+    testComplete();
+  }
+
+  /** Test stream to a slow WriteStream spills instead of holding everything on the heap */
+  @Test
+  public void testStreamSpill() {
+
+    final Regulator<Buffer> regulator=new Regulator<>();
+    final AtomicLong maxSpilled=new AtomicLong();
+
+    // Emit on the next tick so the progress is subscribed first
+    Observable<Buffer> src=Observable.range(0,300)
+      .subscribeOn(new RxVertx(vertx).contextScheduler())
+      .map(new Func1<Integer, Buffer>() {
+        public Buffer call(Integer i) {
+          return new Buffer("buffer-"+i);
+        }
+      });
+
+    Observable<Long> progress=regulator.stream(src,(WriteStream)new RatedWriteStream(vertx,100),256)
+      .doOnNext(new Action1<Long>() {
+        public void call(Long total) {
+          maxSpilled.set(Math.max(maxSpilled.get(),regulator.spilledBytes()));
+        }
+      })
+      .doOnCompleted(new Action0() {
+        public void call() {
+          assertTrue(maxSpilled.get()>0);
+          assertEquals(0,regulator.inFlightBytes());
+        }
+      });
+
+    assertCountThenComplete(progress,300);
+  }
+
+  /** Test the gate closes and re-opens while the excess of a bounded stream is spilled */
+  @Test
+  public void testGateSpill() {
+
+    // Hold the source once 1KB is waiting for the target, of which 256 bytes on the heap
+    final Regulator<Integer> regulator=new Regulator<>(256,1024);
+    final AtomicLong maxSpilled=new AtomicLong();
+    final AtomicLong restricted=new AtomicLong();
+
+    Observable<Buffer> src=Observable.range(0,300)
+      .subscribeOn(new RxVertx(vertx).contextScheduler())
+      .lift(regulator)
+      .map(new Func1<Integer, Buffer>() {
+        public Buffer call(Integer i) {
+          return new Buffer("buffer-"+i);
+        }
+      });
+
+    Observable<Long> progress=regulator.stream(src,(WriteStream)new RatedWriteStream(vertx,100),256)
+      .doOnNext(new Action1<Long>() {
+        public void call(Long total) {
+          maxSpilled.set(Math.max(maxSpilled.get(),regulator.spilledBytes()));
+          if (regulator.isRestricted())
+            restricted.incrementAndGet();
+          // Budget plus the buffer that closed the gate
+          assertTrue(regulator.inFlightBytes()<1024+16);
+        }
+      })
+      .doOnCompleted(new Action0() {
+        public void call() {
+          assertTrue(maxSpilled.get()>0);
+          assertTrue(restricted.get()>0);
+          assertEquals(0,regulator.inFlightBytes());
+        }
+      });
+
+    assertCountThenComplete(progress,300);
+  }
+
+  /** Test a restriction made while the gate flushes keeps it closed */
+  @Test
+  public void testGateRestrictedWhileFlushing() {
+
+    final List<Integer> received=new ArrayList<>();
+    final AtomicReference<Regulator<Integer>.Gate<Integer>> gate=new AtomicReference<>();
+
+    gate.set(new Regulator<Integer>().new Gate<Integer>(new Subscriber<Integer>() {
+      public void onNext(Integer i) {
+        received.add(i);
+        // Downstream fills up on the last queued value
+        if (i==2)
+          gate.get().handle(true);
+      }
+      public void onCompleted() {
+      }
+      public void onError(Throwable e) {
+        fail("unexpected failure "+e);
+      }
+    }));
+
+    gate.get().handle(true);
+    gate.get().onNext(1);
+    gate.get().onNext(2);
+    gate.get().handle(false);
+    gate.get().onNext(3);
+
+    assertEquals(Arrays.asList(1,2),received);
+    testComplete();
+  }
+}
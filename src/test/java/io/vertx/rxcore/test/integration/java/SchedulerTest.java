@@ -1,16 +1,28 @@
 package io.vertx.rxcore.test.integration.java;
 
 import io.vertx.rxcore.java.RxVertx;
+import io.vertx.rxcore.java.impl.BlockingScheduler;
+import io.vertx.rxcore.java.impl.ContextPoolScheduler;
 import org.junit.Test;
 import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
 import org.vertx.testtools.TestVerticle;
 import rx.Observable;
 import rx.Observer;
+import rx.Scheduler;
+import rx.functions.Action0;
 import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func1;
 import rx.functions.Func2;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static org.vertx.testtools.VertxAssert.*;
@@ -90,4 +102,211 @@ public class SchedulerTest extends TestVerticle {
         }
       });
   }
+
+  /** Test parallel() over a pool of event loops */
+  @Test
+  public void testEventLoopScheduler() {
+
+    RxVertx rx=new RxVertx(vertx);
+
+    final Context initCtx=vertx.currentContext();
+    final Set<String> threads=Collections.synchronizedSet(new HashSet<String>());
+
+    Observable.range(0,100)
+      .parallel(new Func1<Observable<Integer>, Observable<Integer>>() {
+        public Observable<Integer> call(Observable<Integer> rail) {
+          return rail.map(new Func1<Integer, Integer>() {
+            public Integer call(Integer value) {
+              assertTrue(vertx.currentContext()!=initCtx);
+              threads.add(Thread.currentThread().getName());
+              return value*2;
+            }
+          });
+        }
+      },rx.createEventLoopScheduler(4, ContextPoolScheduler.Strategy.LEAST_LOADED))
+      .observeOn(rx.contextScheduler())
+      .reduce(0,new Func2<Integer, Integer, Integer>() {
+        public Integer call(Integer total, Integer value) {
+          assertEquals(initCtx, vertx.currentContext());
+          return total+value;
+        }
+      })
+      .subscribe(new Observer<Integer>() {
+        public void onCompleted() {
+          System.out.println("parallel threads="+threads);
+          assertTrue(threads.size()>1);
+          testComplete();
+        }
+
+        public void onError(Throwable e) {
+          fail("unexpected failure "+e);
+        }
+
+        public void onNext(Integer total) {
+          assertEquals(9900,total.intValue());
+          assertEquals(initCtx, vertx.currentContext());
+        }
+      });
+  }
+
+  /** Test blocking calls are offloaded and return to the context */
+  @Test
+  public void testBlockingScheduler() {
+
+    RxVertx rx=new RxVertx(vertx);
+
+    final Context initCtx=vertx.currentContext();
+    final BlockingScheduler scheduler=rx.createBlockingScheduler(2,10);
+
+    Observable<String> call=scheduler.execute(new Func0<String>() {
+      public String call() {
+        assertFalse(vertx.isEventLoop());
+        try {
+          Thread.sleep(50);
+        }
+        catch(InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        return Thread.currentThread().getName();
+      }
+    });
+
+    Observable.merge(call,call,call,call)
+      .toList()
+      .subscribe(new Observer<List<String>>() {
+        public void onCompleted() {
+          assertEquals(4,scheduler.offloadedCount());
+          // Results are delivered before the pool thread records completion so allow it to catch up
+          vertx.setTimer(100,new Handler<Long>() {
+            public void handle(Long id) {
+              assertEquals(4,scheduler.completedCount());
+              assertEquals(0,scheduler.activeCount());
+              assertEquals(0,scheduler.queueDepth());
+              scheduler.close();
+              testComplete();
+            }
+          });
+        }
+
+        public void onError(Throwable e) {
+          fail("unexpected failure "+e);
+        }
+
+        public void onNext(List<String> threads) {
+          System.out.println("blocking threads="+threads+" virtual="+scheduler.isVirtualThreads());
+          assertEquals(4,threads.size());
+          assertEquals(initCtx, vertx.currentContext());
+          // Only 2 run concurrently so the rest must wait in the queue
+          assertTrue(scheduler.queueDepth()<=2);
+        }
+      });
+  }
+
+  /** Test executeBlocking uses the RxVertx pool until it is closed */
+  @Test
+  public void testExecuteBlocking() {
+
+    final RxVertx rx=new RxVertx(vertx);
+    final Context initCtx=vertx.currentContext();
+    final BlockingScheduler scheduler=rx.blockingScheduler();
+
+    rx.executeBlocking(new Func0<String>() {
+      public String call() {
+        assertFalse(vertx.isEventLoop());
+        return "ok";
+      }
+    }).subscribe(new Action1<String>() {
+      public void call(String res) {
+        assertEquals("ok",res);
+        assertEquals(initCtx,vertx.currentContext());
+        assertEquals(1,scheduler.offloadedCount());
+        rx.close();
+        // A closed pool is replaced on next use
+        assertNotSame(scheduler,rx.blockingScheduler());
+        rx.close();
+        testComplete();
+      }
+    });
+  }
+
+  /** Test an action that throws does not stop the worker */
+  @Test
+  public void testBlockingWorkerError() {
+
+    final BlockingScheduler scheduler=new RxVertx(vertx).createBlockingScheduler(1,10);
+    Scheduler.Worker worker=scheduler.createWorker();
+
+    worker.schedule(new Action0() {
+      public void call() {
+        throw new IllegalStateException("expected");
+      }
+    });
+    worker.schedule(new Action0() {
+      public void call() {
+        scheduler.close();
+        testComplete();
+      }
+    });
+  }
+
+  /** Test a worker whose action was rejected can still run later actions */
+  @Test
+  public void testBlockingWorkerRejected() {
+
+    final BlockingScheduler scheduler=new RxVertx(vertx).createBlockingScheduler(1,0);
+    final CountDownLatch busy=new CountDownLatch(1);
+
+    // Hold the only thread
+    scheduler.createWorker().schedule(new Action0() {
+      public void call() {
+        try {
+          busy.await();
+        }
+        catch(InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+
+    Scheduler.Worker worker=scheduler.createWorker();
+    try {
+      worker.schedule(new Action0() {
+        public void call() {
+          fail("rejected action ran");
+        }
+      });
+      fail("action was not rejected");
+    }
+    catch(RejectedExecutionException e) {
+      assertEquals(1,scheduler.rejectedCount());
+    }
+
+    // Once the thread is free the worker runs again
+    busy.countDown();
+    final Scheduler.Worker retry=worker;
+    vertx.setTimer(50,new Handler<Long>() {
+      public void handle(Long id) {
+        retry.schedule(new Action0() {
+          public void call() {
+            scheduler.close();
+            testComplete();
+          }
+        });
+      }
+    });
+  }
+
+  /** Test a delay under 1ms runs on the context (Vert.x timers must be at least 1ms) */
+  @Test
+  public void testZeroDelay() {
+
+    final Context initCtx=vertx.currentContext();
+
+    new RxVertx(vertx).contextScheduler().createWorker().schedule(new Action0() {
+      public void call() {
+        assertEquals(initCtx, vertx.currentContext());
+        testComplete();
+      }
+    },0,TimeUnit.MILLISECONDS);
+  }
 }